@@ -32,6 +32,12 @@ android {
         buildConfigField("String", "AWS_SECRET_KEY", "\"${localProperties.getProperty("AWS_SECRET_KEY", "")}\"")
         buildConfigField("String", "AWS_REGION", "\"${localProperties.getProperty("AWS_REGION", "")}\"")
         buildConfigField("String", "AWS_BOOKS_BUCKET_NAME", "\"${localProperties.getProperty("AWS_BOOKS_BUCKET_NAME", "")}\"")
+        // OFF, SAMPLES or FRAMES, recordings are replayed on desktop with the :replay module
+        buildConfigField("String", "GAZE_RECORDING_MODE", "\"${localProperties.getProperty("GAZE_RECORDING_MODE", "OFF")}\"")
+        // CASCADE or GEOMETRIC, compare both on a recording with the :replay module before switching
+        buildConfigField("String", "EYE_LOCATOR", "\"${localProperties.getProperty("EYE_LOCATOR", "CASCADE")}\"")
+        // CONTOUR or INTEGRAL, the contour locator stays the accuracy reference
+        buildConfigField("String", "PUPIL_LOCATOR", "\"${localProperties.getProperty("PUPIL_LOCATOR", "CONTOUR")}\"")
     }
 
     buildTypes {
@@ -0,0 +1,204 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.os.Debug;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.CascadeClassifier;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** Runs the pipeline long enough for leaked native Mats to show up in the native heap. **/
+@RunWith(AndroidJUnit4.class)
+public class MatLifecycleTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int FRAMES_COUNT = 300;
+    private static final int WARMUP_FRAMES_COUNT = 30;
+    // Unsigned byte of a neutral chroma sample
+    private static final byte NEUTRAL_CHROMA = (byte) 128;
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 500;
+    // Released Mats still keep their small headers until finalized, a leaked eye frame alone would exceed this
+    private static final long MAX_NATIVE_HEAP_GROWTH_BYTES = 2 * 1024 * 1024;
+    private static CascadeClassifier faceCascade;
+    private static CascadeClassifier eyesCascade;
+
+    @BeforeClass
+    public static void loadCascades() throws IOException {
+        assertTrue(OpenCVLoader.initLocal());
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        faceCascade = loadCascade(context, "haarcascade_frontalface_default.xml");
+        eyesCascade = loadCascade(context, "haarcascade_eye.xml");
+    }
+
+    @Test
+    public void processFrame_releasesEveryFrameMat() {
+        byte[] faceLuma = createSyntheticFaceLuma();
+        for (FrameProcessingService.PipelineMode pipelineMode : FrameProcessingService.PipelineMode.values()) {
+            EyeTrackingConfig config = new EyeTrackingConfig();
+            config.setPipelineMode(pipelineMode);
+            FrameProcessingService frameProcessingService = createFrameProcessingService(config);
+            FrameBufferPool frameBufferPool = new FrameBufferPool();
+
+            long nativeHeapBefore = 0;
+            int framesWithEyesCount = 0;
+            for (int i = 0; i < FRAMES_COUNT; i++) {
+                if (i == WARMUP_FRAMES_COUNT) {
+                    nativeHeapBefore = Debug.getNativeHeapAllocatedSize();
+                }
+                this.processFaceFrame(frameProcessingService, frameBufferPool, faceLuma);
+
+                GazeSample sample = frameProcessingService.getLastFrameGazeSample();
+                if (sample.getFaceWidth() > 0 && sample.getEyesCount() > 0) {
+                    framesWithEyesCount++;
+                }
+            }
+            long nativeHeapGrowth = Debug.getNativeHeapAllocatedSize() - nativeHeapBefore;
+
+            // Mats of the face, eyes and pupils are only made when they are found, searches around the tracked face
+            // miss it now and then but most frames must go through the whole pipeline
+            assertTrue(pipelineMode + " found a face with eyes on " + framesWithEyesCount + " frames",
+                    framesWithEyesCount >= FRAMES_COUNT / 2);
+            assertTrue(pipelineMode + " native heap grew by " + nativeHeapGrowth + " bytes", nativeHeapGrowth < MAX_NATIVE_HEAP_GROWTH_BYTES);
+
+            frameProcessingService.shutdown();
+            frameBufferPool.clear();
+        }
+    }
+
+    @Test
+    public void eyesAndPupilsDetection_doNotGrowNativeHeap() {
+        PupilsDetectionService pupilsDetectionService = new PupilsDetectionService(faceCascade, eyesCascade);
+        PupilLocator[] pupilLocators = {new ContourPupilLocator(pupilsDetectionService), new IntegralPupilLocator()};
+        Mat faceFrame = new Mat(240, 240, CvType.CV_8UC1);
+        Core.randu(faceFrame, 0, 255);
+        Rect eye = new Rect(0, 0, 60, 40);
+        Mat eyeFrame = createSyntheticEye(eye);
+        MatArena arena = new MatArena();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            detectEyesAndPupils(pupilsDetectionService, pupilLocators, faceFrame, eyeFrame, eye, arena);
+        }
+        long nativeHeapBefore = Debug.getNativeHeapAllocatedSize();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            detectEyesAndPupils(pupilsDetectionService, pupilLocators, faceFrame, eyeFrame, eye, arena);
+        }
+        long nativeHeapGrowth = Debug.getNativeHeapAllocatedSize() - nativeHeapBefore;
+
+        assertTrue("Native heap grew by " + nativeHeapGrowth + " bytes", nativeHeapGrowth < MAX_NATIVE_HEAP_GROWTH_BYTES);
+        for (PupilLocator pupilLocator : pupilLocators) {
+            pupilLocator.release();
+        }
+        eyeFrame.release();
+        faceFrame.release();
+    }
+
+    private void processFaceFrame(FrameProcessingService frameProcessingService, FrameBufferPool frameBufferPool, byte[] faceLuma) {
+        FrameBuffer frameBuffer = frameBufferPool.acquire(WIDTH, HEIGHT);
+        byte[] yuvData = frameBuffer.getYuvData();
+        System.arraycopy(faceLuma, 0, yuvData, 0, faceLuma.length);
+        Arrays.fill(yuvData, faceLuma.length, yuvData.length, NEUTRAL_CHROMA);
+        ByteBuffer lumaBuffer = frameBuffer.getLumaBuffer();
+        lumaBuffer.clear();
+        lumaBuffer.put(faceLuma);
+        lumaBuffer.flip();
+
+        CvCameraFrameWrapper frameWrapper = frameProcessingService.wrapFrame(frameBuffer);
+        try {
+            frameProcessingService.processFrame(frameWrapper);
+        } finally {
+            frameWrapper.release();
+            frameBuffer.release();
+        }
+    }
+
+    private static void detectEyesAndPupils(PupilsDetectionService pupilsDetectionService, PupilLocator[] pupilLocators,
+                                            Mat faceFrame, Mat eyeFrame, Rect eye, MatArena arena) {
+        pupilsDetectionService.detectEyes(faceFrame);
+        for (PupilLocator pupilLocator : pupilLocators) {
+            MatOfKeyPoint pupils = arena.track(pupilLocator.locatePupil(eyeFrame, eye));
+            assertEquals(1, pupils.rows());
+        }
+        arena.releaseAll();
+    }
+
+    private static FrameProcessingService createFrameProcessingService(EyeTrackingConfig config) {
+        PupilsDetectionService pupilsDetectionService = new PupilsDetectionService(faceCascade, eyesCascade, config);
+        return new FrameProcessingService(pupilsDetectionService, new CommunicationService(GazeEventBus.getInstance()), config);
+    }
+
+    /** Front facing drawing the Haar cascades take for a face with two eyes, laid out as the sensor delivers it **/
+    private static byte[] createSyntheticFaceLuma() {
+        // Upright as the pipeline sees it once rotated
+        Mat face = new Mat(WIDTH, HEIGHT, CvType.CV_8UC1, new Scalar(60));
+        Point center = new Point(HEIGHT / 2.0, WIDTH / 2.0);
+        Imgproc.ellipse(face, center, new Size(110, 140), 0, 0, 360, new Scalar(190), -1);
+        for (int side = -1; side <= 1; side += 2) {
+            Point eye = new Point(center.x + side * 55, center.y - 25);
+            Imgproc.line(face, new Point(eye.x - 25, eye.y - 28), new Point(eye.x + 25, eye.y - 30), new Scalar(50), 7);
+            Imgproc.ellipse(face, eye, new Size(18, 14), 0, 0, 360, new Scalar(235), -1);
+            Imgproc.circle(face, eye, 10, new Scalar(30), -1);
+        }
+        Imgproc.line(face, new Point(center.x, center.y - 15), new Point(center.x, center.y + 35), new Scalar(150), 5);
+        Imgproc.ellipse(face, new Point(center.x, center.y + 50), new Size(20, 8), 0, 0, 360, new Scalar(120), -1);
+        Imgproc.ellipse(face, new Point(center.x, center.y + 80), new Size(40, 10), 0, 0, 360, new Scalar(80), -1);
+        Imgproc.GaussianBlur(face, face, new Size(5, 5), 0);
+
+        // The pipeline rotates frames counterclockwise, so the sensor holds the face rotated clockwise
+        Mat sensorFrame = new Mat();
+        Core.rotate(face, sensorFrame, Core.ROTATE_90_CLOCKWISE);
+        byte[] luma = new byte[WIDTH * HEIGHT];
+        sensorFrame.get(0, 0, luma);
+        sensorFrame.release();
+        face.release();
+        return luma;
+    }
+
+    private static Mat createSyntheticEye(Rect eye) {
+        Mat eyeFrame = new Mat(eye.height, eye.width, CvType.CV_8UC1, new Scalar(200));
+        Imgproc.circle(eyeFrame, new Point(eye.width / 2.0, eye.height / 2.0), 7, new Scalar(20), -1);
+        return eyeFrame;
+    }
+
+    private static CascadeClassifier loadCascade(Context context, String cascadeFileName) throws IOException {
+        File cascadeFile = new File(context.getCacheDir(), cascadeFileName);
+        try (InputStream input = context.getAssets().open(cascadeFileName);
+             OutputStream output = new FileOutputStream(cascadeFile)) {
+            byte[] buffer = new byte[4096];
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+        }
+
+        CascadeClassifier cascade = new CascadeClassifier(cascadeFile.getAbsolutePath());
+        assertFalse(cascade.empty());
+        return cascade;
+    }
+}
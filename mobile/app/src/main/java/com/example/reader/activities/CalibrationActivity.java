@@ -0,0 +1,161 @@
+package com.example.reader.activities;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.Gravity;
+import android.view.View;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+import android.widget.ImageButton;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.reader.R;
+import com.example.reader.services.CalibrationProfile;
+import com.example.reader.services.CalibrationProfileStore;
+import com.example.reader.services.CameraForegroundService;
+import com.example.reader.services.GazeCalibrator;
+import com.example.reader.services.GazeEventBus;
+import com.example.reader.services.GazeSample;
+import com.example.reader.services.GazeSampleRingBuffer;
+import com.example.reader.services.IoExecutor;
+import com.example.reader.services.ReaderServices;
+
+import java.io.IOException;
+
+/** Short calibration flow: the reader follows a target in the middle, at the top and at the bottom of the screen
+ * while {@link GazeCalibrator} measures their gaze, the resulting profile is then saved for the reading screen.
+ **/
+public class CalibrationActivity extends AppCompatActivity {
+    private static final String TAG = "CalibrationActivity";
+    private final GazeCalibrator gazeCalibrator = new GazeCalibrator();
+    private final GazeSample gazeSample = new GazeSample();
+    private long nextGazeSequence = 0;
+    private View calibrationTarget;
+    private TextView calibrationInstruction;
+    private ProgressBar calibrationProgress;
+
+    private final Choreographer.FrameCallback gazeFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (readGazeSamples()) {
+                showPhase();
+            }
+            calibrationProgress.setProgress(Math.round(gazeCalibrator.getPhaseProgress() * calibrationProgress.getMax()));
+            if (gazeCalibrator.getPhase() == GazeCalibrator.Phase.FINISHED) {
+                finishCalibration();
+                return;
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_calibration);
+
+        calibrationTarget = findViewById(R.id.calibrationTarget);
+        calibrationInstruction = findViewById(R.id.calibrationInstruction);
+        calibrationProgress = findViewById(R.id.calibrationProgress);
+        ImageButton backButton = findViewById(R.id.back_button);
+        backButton.setOnClickListener(v -> finish());
+        showPhase();
+
+        getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+        Intent serviceIntent = new Intent(this, CameraForegroundService.class);
+        startForegroundService(serviceIntent);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // An interrupted calibration starts over, the reader may have moved meanwhile
+        gazeCalibrator.reset();
+        showPhase();
+        nextGazeSequence = GazeEventBus.getInstance().getSamplesHistory().getWriteSequence();
+        Choreographer.getInstance().postFrameCallback(gazeFrameCallback);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        Choreographer.getInstance().removeFrameCallback(gazeFrameCallback);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        Choreographer.getInstance().removeFrameCallback(gazeFrameCallback);
+        getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+    }
+
+    /** Returns true when a phase was completed by the new samples **/
+    private boolean readGazeSamples() {
+        GazeSampleRingBuffer samplesHistory = GazeEventBus.getInstance().getSamplesHistory();
+        long writeSequence = samplesHistory.getWriteSequence();
+        nextGazeSequence = Math.max(nextGazeSequence, samplesHistory.getOldestSequence());
+
+        boolean isPhaseCompleted = false;
+        for (; nextGazeSequence < writeSequence; nextGazeSequence++) {
+            if (samplesHistory.read(nextGazeSequence, gazeSample)) {
+                isPhaseCompleted |= gazeCalibrator.onGazeSample(gazeSample);
+            }
+        }
+        return isPhaseCompleted;
+    }
+
+    private void showPhase() {
+        FrameLayout.LayoutParams targetLayoutParams = (FrameLayout.LayoutParams) calibrationTarget.getLayoutParams();
+        switch (gazeCalibrator.getPhase()) {
+            case NEUTRAL:
+                targetLayoutParams.gravity = Gravity.CENTER;
+                calibrationInstruction.setText("Hold the phone as you read and look at the dot");
+                break;
+            case TOP:
+                targetLayoutParams.gravity = Gravity.TOP | Gravity.CENTER_HORIZONTAL;
+                calibrationInstruction.setText("Now look at the dot at the top");
+                break;
+            case BOTTOM:
+                targetLayoutParams.gravity = Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL;
+                calibrationInstruction.setText("Now look at the dot at the bottom");
+                break;
+            default:
+                calibrationTarget.setVisibility(View.GONE);
+                calibrationInstruction.setText("Saving...");
+                break;
+        }
+        calibrationTarget.setLayoutParams(targetLayoutParams);
+    }
+
+    private void finishCalibration() {
+        CalibrationProfile calibrationProfile = gazeCalibrator.getProfile();
+        if (calibrationProfile == null) {
+            Toast.makeText(this, "Looks up and down were not clear enough, please try again", Toast.LENGTH_LONG).show();
+            gazeCalibrator.reset();
+            showPhase();
+            Choreographer.getInstance().postFrameCallback(gazeFrameCallback);
+            return;
+        }
+
+        CalibrationProfileStore calibrationProfileStore = new CalibrationProfileStore(getApplicationContext());
+        // Not tied to this screen, a finished calibration is saved even if the reader leaves right away
+        ReaderServices.getInstance(this).getIoExecutor().submit(IoExecutor.Priority.INTERACTIVE, () -> {
+            try {
+                calibrationProfileStore.save(calibrationProfile);
+                runOnUiThread(() -> {
+                    Toast.makeText(this, "Calibration saved", Toast.LENGTH_SHORT).show();
+                    finish();
+                });
+            } catch (IOException error) {
+                Log.e(TAG, "Can not save the calibration profile", error);
+                runOnUiThread(() -> Toast.makeText(this, "Calibration could not be saved", Toast.LENGTH_LONG).show());
+            }
+        });
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.reader.activities;
 
 import android.Manifest;
+import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.res.ColorStateList;
 import android.graphics.Rect;
@@ -22,11 +23,15 @@ import com.example.reader.adapters.BookAdapter;
 import com.example.reader.R;
 import com.example.reader.entities.Book;
 import com.example.reader.services.BooksService;
+import com.example.reader.services.IoExecutor;
+import com.example.reader.services.ReaderServices;
+import com.example.reader.services.ReadProgressService;
 import com.google.android.material.button.MaterialButton;
 
 import org.opencv.android.OpenCVLoader;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -34,6 +39,8 @@ public class MainActivity extends AppCompatActivity {
     private static final int CAMERA_PERMISSION_CODE = 100;
     private boolean areMyBooksSelected = false;
     private BooksService booksService;
+    private ReadProgressService readProgressService;
+    private IoExecutor.Scope ioScope;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -56,10 +63,15 @@ public class MainActivity extends AppCompatActivity {
             Log.d("CameraActivity", "Camera permission already granted");
         }
 
-        this.booksService = new BooksService(this);
+        ReaderServices readerServices = ReaderServices.getInstance(this);
+        this.booksService = readerServices.getBooksService();
+        this.readProgressService = readerServices.getReadProgressService();
+        // Catalog and disk work of this screen is dropped once it is destroyed
+        this.ioScope = readerServices.getIoExecutor().newScope();
 
         setContentView(R.layout.activity_main);
         this.initMyBooksFiltersButton();
+        this.initCalibrateButton();
         this.displayAllBooks();
     }
 
@@ -75,6 +87,14 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (this.ioScope != null) {
+            this.ioScope.cancel();
+        }
+    }
+
     private void initAllBooksLayout(List<Book> books) {
         RecyclerView recyclerView = findViewById(R.id.recyclerView);
 
@@ -119,7 +139,7 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        BookAdapter adapter = new BookAdapter(books);
+        BookAdapter adapter = new BookAdapter(books, this.booksService, this.readProgressService, this.ioScope);
         adapter.setRectangleDimensions(rectangleWidth, rectangleHeight);
 
         recyclerView.setAdapter(adapter);
@@ -142,20 +162,45 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    private void initCalibrateButton() {
+        MaterialButton calibrateButton = findViewById(R.id.calibrate_button);
+        calibrateButton.setOnClickListener(event -> startActivity(new Intent(this, CalibrationActivity.class)));
+    }
+
     private void displayAllBooks() {
-        new Thread(() -> {
-            List<Book> allBooks = this.booksService.getAllBooks();
-            List<Book> downloadedBooks = this.booksService.getDownloadedBooks();
-            List<Book> booksToDisplay = allBooks.stream().filter(book -> !downloadedBooks.contains(book)).collect(Collectors.toList());
-            runOnUiThread(() -> this.initAllBooksLayout(booksToDisplay));
-        }).start();
+        // The local catalog is shown right away, the bucket listing refreshes it when anything changed
+        this.ioScope.submit(IoExecutor.Priority.VISIBLE, this::showAllBooks);
+        this.ioScope.submit(IoExecutor.Priority.BACKGROUND, () -> {
+            try {
+                if (this.booksService.syncCatalog(false)) {
+                    this.showAllBooks();
+                }
+            } catch (IOException error) {
+                Log.w("MainActivity", "Catalog sync failed, showing the local catalog", error);
+            }
+        });
+    }
+
+    private void showAllBooks() {
+        List<Book> allBooks = this.booksService.getAllBooks();
+        // Lists the downloads directory on first use only, the rows then check the index in memory
+        this.booksService.loadDownloadedBooks();
+        List<Book> booksToDisplay = allBooks.stream()
+                .filter(book -> !this.booksService.isBookDownloaded(book.getFileName()))
+                .collect(Collectors.toList());
+        runOnUiThread(() -> {
+            // The shelf may have been selected while the catalog was loading
+            if (!this.areMyBooksSelected) {
+                this.initAllBooksLayout(booksToDisplay);
+            }
+        });
     }
 
     private void displayMyBooks() {
-        new Thread(() -> {
+        this.ioScope.submit(IoExecutor.Priority.VISIBLE, () -> {
             List<Book> books = this.booksService.getDownloadedBooks();
             runOnUiThread(() -> this.initAllBooksLayout(books));
-        }).start();
+        });
     }
 
     private void clearPrivateDownloads() {
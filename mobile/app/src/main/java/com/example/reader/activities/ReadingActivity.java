@@ -1,63 +1,74 @@
 package com.example.reader.activities;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.graphics.Rect;
+import android.content.res.Configuration;
 import android.os.Bundle;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.WindowManager;
-import android.view.WindowMetrics;
 import android.widget.ImageButton;
 import android.widget.ImageView;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.example.reader.R;
+import com.example.reader.services.BookDownloader;
+import com.example.reader.services.CalibrationProfile;
+import com.example.reader.services.CalibrationProfileStore;
 import com.example.reader.services.CameraForegroundService;
-import com.example.reader.services.CommunicationService;
+import com.example.reader.services.GazeController;
+import com.example.reader.services.GazeEventBus;
+import com.example.reader.services.GazeListener;
+import com.example.reader.services.GazeSample;
+import com.example.reader.services.GazeSampleRingBuffer;
+import com.example.reader.services.IoExecutor;
+import com.example.reader.services.OneEuroFilter;
+import com.example.reader.services.PipelineMetrics;
 import com.example.reader.services.ReadProgressService;
+import com.example.reader.services.ReaderServices;
+import com.example.reader.services.ScrollTarget;
+import com.example.reader.services.StreamingDocumentSource;
 import com.github.barteksc.pdfviewer.PDFView;
 
 import java.io.File;
 
 public class ReadingActivity extends AppCompatActivity {
-    private float previousEyeY = 0;
-    private float previousPupilY = 0;
+    private static final long METRICS_OVERLAY_INTERVAL_NANOS = 500_000_000L;
     private PDFView pdfView;
+    private ImageView eyeIcon;
+    private TextView metricsOverlay;
+    private long lastMetricsOverlayNanos = 0;
     private ReadProgressService readProgressService;
+    private IoExecutor.Scope ioScope;
 
-    private final BroadcastReceiver pupilMovementReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            float pupilY = intent.getFloatExtra(CommunicationService.PUPIL_ORDINATE_PARAMETER_NAME, 0);
-            float eyeLineY = intent.getFloatExtra(CommunicationService.EYE_CENTER_ORDINATE_PARAMETER_NAME, 0);
+    private final GazeSample gazeSample = new GazeSample();
+    private long nextGazeSequence = 0;
+    private GazeController gazeController;
 
-            // Scroll the PDF based on detected pupil movement
-            scrollPdf(pupilY, eyeLineY);
+    private final GazeListener gazeListener = new GazeListener() {
+        @Override
+        public void onGazeSample(GazeSample sample) {
+            // Samples are read from the history on every display frame instead
         }
-    };
 
-    private final BroadcastReceiver pupilPresenceReceiver = new BroadcastReceiver() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            boolean isPupilPresent = intent.getBooleanExtra(CommunicationService.PUPIL_PRESENCE_PARAMETER_NAME, false);
-
-            this.displayEyeIconOnDetectedPupil(isPupilPresent);
+        public void onPupilPresenceChanged(boolean isPupilPresent) {
+            eyeIcon.setVisibility(isPupilPresent ? View.VISIBLE : View.GONE);
         }
+    };
 
-        private void displayEyeIconOnDetectedPupil(boolean isPupilPresent) {
-            ImageView eyeIcon = findViewById(R.id.eyeIcon);
-            runOnUiThread(() -> {
-                if (isPupilPresent) {
-                    eyeIcon.setVisibility(View.VISIBLE);
-                } else {
-                    eyeIcon.setVisibility(View.GONE);
-                }
-            });
+    private final Choreographer.FrameCallback gazeFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            readGazeSamples();
+            gazeController.doFrame(frameTimeNanos);
+            if (PipelineMetrics.ENABLED) {
+                updateMetricsOverlay(frameTimeNanos);
+            }
+            Choreographer.getInstance().postFrameCallback(this);
         }
     };
 
@@ -67,15 +78,50 @@ public class ReadingActivity extends AppCompatActivity {
         setContentView(R.layout.activity_pdf_viewer);
 
         pdfView = findViewById(R.id.pdfView);
+        eyeIcon = findViewById(R.id.eyeIcon);
+        metricsOverlay = findViewById(R.id.metricsOverlay);
+        if (PipelineMetrics.ENABLED) {
+            metricsOverlay.setVisibility(View.VISIBLE);
+        }
+        gazeController = new GazeController(new OneEuroFilter(), new ScrollTarget() {
+            @Override
+            public void scrollBy(float distance) {
+                pdfView.moveRelativeTo(0, distance);
+            }
+
+            @Override
+            public int getCurrentPageIndex() {
+                return pdfView.getPageAtPositionOffset(pdfView.getPositionOffset());
+            }
+
+            @Override
+            public void loadPages() {
+                pdfView.loadPages();
+            }
+        });
+        ReaderServices readerServices = ReaderServices.getInstance(this);
+        this.ioScope = readerServices.getIoExecutor().newScope();
+        this.updateViewportGeometry();
+        this.loadCalibrationProfile();
         Intent intent = getIntent();
         String filePath = intent.getStringExtra("filePath");
         File file = new File(filePath);
 
-        this.readProgressService = new ReadProgressService(this);
+        this.readProgressService = readerServices.getReadProgressService();
         int lastPage = this.readProgressService.getLastReadPage(filePath);
 
+        // A book still downloading is rendered from the chunks fetched so far, the pages read are fetched first
+        BookDownloader.Session bookDownload = readerServices.getBooksService().findActiveDownload(file);
+        if (bookDownload != null && bookDownload.isComplete()) {
+            bookDownload.release();
+            bookDownload = null;
+        }
+
         try {
-            pdfView.fromFile(file).defaultPage(lastPage).enableSwipe(true).enableDoubletap(true).onLoad(allPages -> {
+            PDFView.Configurator configurator = bookDownload != null
+                    ? pdfView.fromSource(new StreamingDocumentSource(bookDownload))
+                    : pdfView.fromFile(file);
+            configurator.defaultPage(lastPage).enableSwipe(true).enableDoubletap(true).onLoad(allPages -> {
                 this.readProgressService.saveAllPagesCount(filePath, allPages);
                 ImageButton backButton = findViewById(R.id.back_button);
                 backButton.setOnClickListener(v -> {
@@ -83,72 +129,86 @@ public class ReadingActivity extends AppCompatActivity {
                     this.readProgressService.saveLastReadPage(filePath, currentPage);
                     finish();
                 });
-            }).load();
+            }).onError(error -> Toast.makeText(this, "Error loading PDF", Toast.LENGTH_SHORT).show()).load();
         } catch (Exception e) {
             Toast.makeText(this, "Error loading PDF", Toast.LENGTH_SHORT).show();
         }
 
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
-        LocalBroadcastManager.getInstance(this).registerReceiver(pupilMovementReceiver, new IntentFilter(CommunicationService.PUPIL_MOVEMENT_INTENT_NAME));
-        LocalBroadcastManager.getInstance(this).registerReceiver(pupilPresenceReceiver, new IntentFilter(CommunicationService.PUPIL_DETECTION_INTENT_NAME));
         Intent serviceIntent = new Intent(this, CameraForegroundService.class);
         startForegroundService(serviceIntent);
     }
 
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // Declared in the manifest, so rotating keeps the open document and only the cached geometry changes
+        this.updateViewportGeometry();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
-        LocalBroadcastManager.getInstance(this).registerReceiver(pupilMovementReceiver, new IntentFilter(CommunicationService.PUPIL_MOVEMENT_INTENT_NAME));
-        LocalBroadcastManager.getInstance(this).registerReceiver(pupilPresenceReceiver, new IntentFilter(CommunicationService.PUPIL_DETECTION_INTENT_NAME));
+        // Gaze events are delivered on the main thread, coalesced to the latest sample
+        GazeEventBus gazeEventBus = GazeEventBus.getInstance();
+        gazeEventBus.register(gazeListener, getMainExecutor(), false);
+        // Samples captured while paused are stale, so reading starts from the latest one
+        nextGazeSequence = gazeEventBus.getSamplesHistory().getWriteSequence();
+        Choreographer.getInstance().postFrameCallback(gazeFrameCallback);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(pupilMovementReceiver);
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(pupilPresenceReceiver);
+        GazeEventBus.getInstance().unregister(gazeListener);
+        Choreographer.getInstance().removeFrameCallback(gazeFrameCallback);
+        gazeController.reset();
         getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(pupilMovementReceiver);
-        LocalBroadcastManager.getInstance(this).unregisterReceiver(pupilPresenceReceiver);
+        GazeEventBus.getInstance().unregister(gazeListener);
+        Choreographer.getInstance().removeFrameCallback(gazeFrameCallback);
         getWindow().clearFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+        ioScope.cancel();
     }
 
-    private void scrollPdf(float pupilY, float eyeY) {
-        float pupilYToUse = pupilY == 0 ? this.previousPupilY : pupilY;
-        float eyeYToUse = this.previousEyeY == 0 ? eyeY : (eyeY + this.previousEyeY) / 2;
-        if (pupilY == 0) {
-            eyeYToUse = this.previousEyeY;
-        }
-
-        float deltaByEyeLine = eyeYToUse - pupilYToUse;
+    private void updateViewportGeometry() {
+        // The document fills the window, looked up here instead of for every gaze sample
+        gazeController.setViewportHeight(getWindowManager().getCurrentWindowMetrics().getBounds().height());
+    }
 
-        this.previousPupilY = pupilYToUse;
-        this.previousEyeY = eyeYToUse;
+    private void loadCalibrationProfile() {
+        // Read off the main thread, gaze scrolls with the default thresholds until the profile is applied
+        CalibrationProfileStore calibrationProfileStore = new CalibrationProfileStore(getApplicationContext());
+        ioScope.submit(IoExecutor.Priority.VISIBLE, () -> {
+            CalibrationProfile calibrationProfile = calibrationProfileStore.load();
+            runOnUiThread(() -> gazeController.setCalibrationProfile(calibrationProfile));
+        });
+    }
 
-        //Toast.makeText(this, "DELTA " + deltaByEyeLine + " EYE " + eyeY + " PUPIL " + pupilY, Toast.LENGTH_SHORT).show();
+    private void readGazeSamples() {
+        GazeSampleRingBuffer samplesHistory = GazeEventBus.getInstance().getSamplesHistory();
+        long writeSequence = samplesHistory.getWriteSequence();
+        nextGazeSequence = Math.max(nextGazeSequence, samplesHistory.getOldestSequence());
 
-        WindowMetrics metrics = ((WindowManager) this.getSystemService(Context.WINDOW_SERVICE)).getCurrentWindowMetrics();
-        Rect bounds = metrics.getBounds();
-        float screenHeight = bounds.height();
+        for (; nextGazeSequence < writeSequence; nextGazeSequence++) {
+            if (!samplesHistory.read(nextGazeSequence, gazeSample)) {
+                continue;
+            }
 
-        float lowerBound = screenHeight / (float) -564.7;
-        // -3.4
-        if (deltaByEyeLine <= 0 && deltaByEyeLine >= -3) {
-            return;
+            gazeController.onGazeSample(gazeSample);
         }
+    }
 
-        float upperBound = screenHeight / 768;
-        // 2.5
-        if (deltaByEyeLine >= 0 && deltaByEyeLine <= 2.5) {
+    private void updateMetricsOverlay(long frameTimeNanos) {
+        if (frameTimeNanos - lastMetricsOverlayNanos < METRICS_OVERLAY_INTERVAL_NANOS) {
             return;
         }
 
-        pdfView.moveRelativeTo(0, -deltaByEyeLine * 2); // Adjust sensitivity factor
-        pdfView.post(() -> pdfView.loadPages());
+        lastMetricsOverlayNanos = frameTimeNanos;
+        metricsOverlay.setText(PipelineMetrics.getInstance().dump());
     }
 }
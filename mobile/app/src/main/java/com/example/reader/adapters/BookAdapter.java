@@ -3,7 +3,6 @@ package com.example.reader.adapters;
 import android.content.ActivityNotFoundException;
 import android.content.Context;
 import android.content.Intent;
-import android.os.Environment;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -18,7 +17,9 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.reader.R;
 import com.example.reader.activities.ReadingActivity;
 import com.example.reader.entities.Book;
+import com.example.reader.services.BookDownloader;
 import com.example.reader.services.BooksService;
+import com.example.reader.services.IoExecutor;
 import com.example.reader.services.ReadProgressService;
 
 import java.io.File;
@@ -27,11 +28,17 @@ import java.util.List;
 
 public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder> {
     private final List<Book> books;
+    private final BooksService booksService;
+    private final ReadProgressService readProgressService;
+    private final IoExecutor.Scope ioScope;
     private int rectangleWidth;
     private int rectangleHeight;
 
-    public BookAdapter(List<Book> books) {
+    public BookAdapter(List<Book> books, BooksService booksService, ReadProgressService readProgressService, IoExecutor.Scope ioScope) {
         this.books = books;
+        this.booksService = booksService;
+        this.readProgressService = readProgressService;
+        this.ioScope = ioScope;
     }
 
     @NonNull
@@ -51,18 +58,16 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder
     @Override
     public void onBindViewHolder(@NonNull BookViewHolder holder, int position) {
         Context context = holder.itemView.getContext();
-        BooksService booksService = new BooksService(context);
-        ReadProgressService readProgressService = new ReadProgressService(context);
         Book book = books.get(position);
         holder.name.setText(book.getName());
         holder.author.setText(book.getAuthor());
 
-        List<Book> downloadedBooks = booksService.getDownloadedBooks();
-        boolean isBookDownloaded = downloadedBooks.stream().anyMatch(bookItem -> book.getFileName().equals(bookItem.getFileName()));
+        // Answered from memory, the downloads directory is never listed while binding
+        boolean isBookDownloaded = booksService.isBookDownloaded(book.getFileName());
         if (isBookDownloaded) {
             holder.deleteButton.setVisibility(View.VISIBLE);
             holder.deleteButton.setOnClickListener(v -> {
-                booksService.deleteBookFromLocalStorage(book.getFileName());
+                ioScope.submit(IoExecutor.Priority.INTERACTIVE, () -> booksService.deleteBookFromLocalStorage(book.getFileName()));
                 books.remove(position);
                 notifyItemRemoved(position);
                 notifyItemRangeChanged(position, books.size());
@@ -72,8 +77,7 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder
             holder.deleteButton.setVisibility(View.GONE);
         }
 
-        File downloadsDir = context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
-        File bookFile = new File(downloadsDir, book.getFileName());
+        File bookFile = booksService.getBookFile(book.getFileName());
         int bookAllPagesCount = readProgressService.getAllPagesCount(bookFile.getPath());
         int lastReadPageIndex = readProgressService.getLastReadPage(bookFile.getPath());
         int readProgress = lastReadPageIndex == 0 || bookAllPagesCount == 0 ? 0 : (int) ((lastReadPageIndex / (float) bookAllPagesCount) * 100);
@@ -82,20 +86,31 @@ public class BookAdapter extends RecyclerView.Adapter<BookAdapter.BookViewHolder
             readProgressLabel.setText(String.format("%d%% read", readProgress));
         }
 
-        holder.itemView.setOnClickListener(event -> new Thread(() -> {
+        holder.itemView.setOnClickListener(event -> ioScope.submit(IoExecutor.Priority.INTERACTIVE, () -> {
+            BookDownloader.Session bookDownload;
             try {
-                String downloadedBookFilePath = booksService.getBookContent(book.getFileName());
+                // Only the size of the book is fetched before the reading screen opens, its pages stream in there
+                bookDownload = booksService.openBook(book.getFileName());
+            } catch (IOException e) {
+                Log.e("BookAdapter", "Can not open " + book.getFileName(), e);
+                holder.itemView.post(() -> Toast.makeText(context, "Book could not be opened", Toast.LENGTH_SHORT).show());
+                return;
+            }
+
+            try {
+                String bookFilePath = bookDownload.getTargetFile().getAbsolutePath();
                 Intent book_content_intent = new Intent(context, ReadingActivity.class);
-                book_content_intent.putExtra("filePath", downloadedBookFilePath);
+                book_content_intent.putExtra("filePath", bookFilePath);
                 context.startActivity(book_content_intent);
 
-                Log.i("Successfully loaded book", downloadedBookFilePath);
+                Log.i("Successfully opened book", bookFilePath);
             } catch (ActivityNotFoundException e) {
-                Toast.makeText(context, "No PDF viewer found!", Toast.LENGTH_SHORT).show();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+                holder.itemView.post(() -> Toast.makeText(context, "No PDF viewer found!", Toast.LENGTH_SHORT).show());
+            } finally {
+                // The reading screen retains the download itself while it is running
+                bookDownload.release();
             }
-        }).start());
+        }));
     }
 
     @Override
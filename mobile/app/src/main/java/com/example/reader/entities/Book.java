@@ -3,6 +3,7 @@ package com.example.reader.entities;
 import java.util.Objects;
 
 public class Book {
+    private static final String PDF_EXTENSION_PORTION = ".pdf";
     private final String name;
     private final String author;
     private final String bookFileName;
@@ -21,6 +22,27 @@ public class Book {
         return bookFileName;
     }
 
+    /** Books file names are represented in format <name>__<author>.
+     * If book name or author include 2+ words they are separated with _
+     **/
+    public static Book fromFileName(String rawFileName) {
+        String NAME_AUTHOR_SEPARATOR = "__";
+        char RAW_NAME_FRAGMENT_SEPARATOR = '_';
+        char NEW_NAME_FRAGMENT_SEPARATOR = ' ';
+        int nameIndex = 0;
+        int authorIndex = 1;
+
+        String fileNameWithoutExtension = rawFileName.replace(PDF_EXTENSION_PORTION, "");
+        String[] rawNameAndAuthor = fileNameWithoutExtension.split(NAME_AUTHOR_SEPARATOR);
+        String rawName = rawNameAndAuthor[nameIndex];
+        String rawAuthor = rawNameAndAuthor[authorIndex];
+
+        String name = rawName.replace(RAW_NAME_FRAGMENT_SEPARATOR, NEW_NAME_FRAGMENT_SEPARATOR);
+        String author = rawAuthor.replace(RAW_NAME_FRAGMENT_SEPARATOR, NEW_NAME_FRAGMENT_SEPARATOR);
+
+        return new Book(name, author, rawFileName);
+    }
+
     @Override
     public int hashCode() {
         return bookFileName != null ? bookFileName.hashCode() : 0;
@@ -0,0 +1,657 @@
+package com.example.reader.services;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/** Downloads books into the downloads directory. A local copy matching the object's ETag and size is reused,
+ * large objects are fetched as ranged chunks in parallel into a partial file whose completed chunks survive process death,
+ * and the result is verified before it is atomically moved into place.
+ * Partial files and the ETags of completed copies live in a hidden directory next to the books,
+ * so the final move never crosses file systems.
+ * A running download is a {@link Session} whose bytes can be read before it completes: a read waits only for the chunks
+ * it covers and moves them ahead of the others, so opening a book does not wait for the whole file.
+ **/
+public class BookDownloader {
+    /** Remote storage of the books **/
+    public interface ObjectSource {
+        ObjectInfo getObjectInfo(String key) throws IOException;
+
+        /** Opens the bytes from start to end, both included, of the object version with the given ETag.
+         * Throws {@link ObjectChangedException} once the object was replaced by another version.
+         **/
+        InputStream openRange(String key, String eTag, long start, long end) throws IOException;
+    }
+
+    /** The object no longer has the ETag its download started with, the chunks fetched so far are worthless **/
+    public static class ObjectChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ObjectChangedException(String key, Throwable cause) {
+            super(key + " changed while it was downloaded", cause);
+        }
+    }
+
+    /** Told about every book moved into place by a download **/
+    public interface DownloadListener {
+        void onDownloaded(File targetFile);
+    }
+
+    public static class ObjectInfo {
+        private final long sizeBytes;
+        private final String eTag;
+        public ObjectInfo(long sizeBytes, String eTag) {
+            this.sizeBytes = sizeBytes;
+            // Some clients keep the quotes of the HTTP header
+            this.eTag = eTag != null ? eTag.replace("\"", "") : "";
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    public static final String STATE_DIRECTORY_NAME = ".downloads";
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // Bumped whenever the serialized layout changes, older partial downloads then start over
+    private static final int STATE_FORMAT_VERSION = 1;
+    private final ObjectSource objectSource;
+    private final Executor chunkExecutor;
+    private final int chunkSize;
+    private final int parallelChunksCount;
+    private final ConcurrentHashMap<String, KeyLock> keyLocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Session> activeSessions = new ConcurrentHashMap<>();
+    private volatile DownloadListener downloadListener;
+    public BookDownloader(ObjectSource objectSource, Executor chunkExecutor, int chunkSize, int parallelChunksCount) {
+        if (chunkSize < COPY_BUFFER_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be at least " + COPY_BUFFER_SIZE);
+        }
+        if (parallelChunksCount < 1) {
+            throw new IllegalArgumentException("parallelChunksCount must be positive");
+        }
+
+        this.objectSource = objectSource;
+        this.chunkExecutor = chunkExecutor;
+        this.chunkSize = chunkSize;
+        this.parallelChunksCount = parallelChunksCount;
+    }
+
+    /** Returns the downloaded book, concurrent calls for the same book share one download.
+     * A book replaced in the bucket while it downloads fails with {@link ObjectChangedException},
+     * the next call then downloads the new version from scratch.
+     **/
+    public File download(String key, File targetFile) throws IOException {
+        Session session = this.open(key, targetFile);
+        try {
+            return session.awaitFile();
+        } finally {
+            session.release();
+        }
+    }
+
+    /** Starts the download of a book, or joins the running one, and returns once its size is known.
+     * The returned session must be released by the caller.
+     **/
+    public Session open(String key, File targetFile) throws IOException {
+        KeyLock keyLock = this.keyLocks.compute(key, (lockKey, lock) -> {
+            KeyLock usedLock = lock != null ? lock : new KeyLock();
+            usedLock.usersCount++;
+            return usedLock;
+        });
+        try {
+            synchronized (keyLock) {
+                return this.openLocked(key, targetFile);
+            }
+        } finally {
+            // Dropped once no call is opening the book, so only books being opened keep an entry
+            this.keyLocks.computeIfPresent(key, (lockKey, lock) -> --lock.usersCount == 0 ? null : lock);
+        }
+    }
+
+    private Session openLocked(String key, File targetFile) throws IOException {
+        Session activeSession = this.findActiveSession(key);
+        if (activeSession != null) {
+            return activeSession;
+        }
+
+        File stateDirectory = new File(targetFile.getParentFile(), STATE_DIRECTORY_NAME);
+        if (!stateDirectory.isDirectory() && !stateDirectory.mkdirs()) {
+            throw new IOException("Can not create " + stateDirectory);
+        }
+
+        ObjectInfo objectInfo;
+        try {
+            objectInfo = this.objectSource.getObjectInfo(key);
+        } catch (IOException error) {
+            // Offline, a book downloaded before is still readable
+            if (targetFile.isFile()) {
+                return new Session(key, targetFile);
+            }
+            throw error;
+        }
+
+        File eTagFile = new File(stateDirectory, targetFile.getName() + ".etag");
+        if (isValidLocalCopy(targetFile, eTagFile, objectInfo)) {
+            return new Session(key, targetFile);
+        }
+
+        File partFile = new File(stateDirectory, targetFile.getName() + ".part");
+        File stateFile = new File(stateDirectory, targetFile.getName() + ".state");
+        ChunksState chunksState = ChunksState.load(stateFile, objectInfo, this.chunkSize);
+        Session session = new Session(key, targetFile, objectInfo, partFile, stateFile, eTagFile, chunksState);
+        this.activeSessions.put(key, session);
+        session.start();
+        return session;
+    }
+
+    /** Returns the running download of a book, retained for the caller, or null once the book is complete on disk **/
+    public Session findActiveSession(String key) {
+        Session session = this.activeSessions.get(key);
+        return session != null && session.retain() ? session : null;
+    }
+
+    public void setDownloadListener(DownloadListener downloadListener) {
+        this.downloadListener = downloadListener;
+    }
+
+    /** Drops the partial download and the ETag kept for a book removed from the device **/
+    public void forget(File targetFile) {
+        File stateDirectory = new File(targetFile.getParentFile(), STATE_DIRECTORY_NAME);
+        String name = targetFile.getName();
+        deleteFiles(new File(stateDirectory, name + ".etag"), new File(stateDirectory, name + ".part"), new File(stateDirectory, name + ".state"));
+    }
+
+    private void downloadChunk(String key, FileChannel channel, ChunksState chunksState, int chunkIndex) throws IOException {
+        long start = (long) chunkIndex * chunksState.chunkSize;
+        long end = Math.min(start + chunksState.chunkSize, chunksState.sizeBytes) - 1;
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long position = start;
+        // Chunks of another version of the book must never be mixed into the file
+        try (InputStream input = this.objectSource.openRange(key, chunksState.eTag, start, end)) {
+            int bytesRead;
+            while (position <= end && (bytesRead = input.read(buffer, 0, (int) Math.min(buffer.length, end + 1 - position))) != -1) {
+                ByteBuffer data = ByteBuffer.wrap(buffer, 0, bytesRead);
+                while (data.hasRemaining()) {
+                    position += channel.write(data, position);
+                }
+            }
+        }
+        if (position != end + 1) {
+            throw new IOException("Chunk " + chunkIndex + " of " + key + " ended after " + (position - start) + " bytes");
+        }
+
+        // Marked complete only once its bytes are on disk
+        channel.force(false);
+    }
+
+    private static boolean isValidLocalCopy(File targetFile, File eTagFile, ObjectInfo objectInfo) throws IOException {
+        if (!targetFile.isFile() || targetFile.length() != objectInfo.getSizeBytes()) {
+            return false;
+        }
+        // Books downloaded before ETags were kept are trusted by their size, and adopted
+        if (!eTagFile.isFile()) {
+            Files.write(eTagFile.toPath(), objectInfo.getETag().getBytes(StandardCharsets.UTF_8));
+            return true;
+        }
+        return new String(Files.readAllBytes(eTagFile.toPath()), StandardCharsets.UTF_8).equals(objectInfo.getETag());
+    }
+
+    /** The ETag of an object uploaded in one part is the MD5 of its bytes, multipart ETags only allow a size check **/
+    private static boolean isIntact(File partFile, ObjectInfo objectInfo) throws IOException {
+        if (partFile.length() != objectInfo.getSizeBytes()) {
+            return false;
+        }
+        if (!objectInfo.getETag().matches("[0-9a-fA-F]{32}")) {
+            return true;
+        }
+
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException error) {
+            return true;
+        }
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream input = new FileInputStream(partFile)) {
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                md5.update(buffer, 0, bytesRead);
+            }
+        }
+
+        StringBuilder digest = new StringBuilder();
+        for (byte digestByte : md5.digest()) {
+            digest.append(String.format("%02x", digestByte));
+        }
+        return digest.toString().equalsIgnoreCase(objectInfo.getETag());
+    }
+
+    private static void deleteFiles(File... files) {
+        for (File file : files) {
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+    }
+
+    /** One book being downloaded, or already complete on disk, whose bytes can be read at any time.
+     * Chunks go out with the end of the file first, where a PDF keeps its trailer and cross-reference table,
+     * then the beginning, then in order, with the chunks readers wait for or ask for moved ahead.
+     **/
+    public class Session {
+        private final String key;
+        private final File targetFile;
+        private final long sizeBytes;
+        private final RandomAccessFile file;
+        private final FileChannel channel;
+        // Absent when the session was opened on a complete local copy
+        private final ObjectInfo objectInfo;
+        private final File partFile;
+        private final File stateFile;
+        private final File eTagFile;
+        private final ChunksState chunksState;
+        private final boolean[] startedChunks;
+        private final int[] chunksOrder;
+        private final ArrayDeque<Integer> requestedChunks = new ArrayDeque<>();
+        private int nextOrderIndex = 0;
+        private int runningWorkersCount = 0;
+        private int usersCount = 1;
+        private boolean isFinished;
+        private boolean isClosed = false;
+        private IOException failure;
+        private Session(String key, File targetFile) throws IOException {
+            this.key = key;
+            this.targetFile = targetFile;
+            this.file = new RandomAccessFile(targetFile, "r");
+            this.channel = this.file.getChannel();
+            this.sizeBytes = this.file.length();
+            this.objectInfo = null;
+            this.partFile = null;
+            this.stateFile = null;
+            this.eTagFile = null;
+            this.chunksState = null;
+            this.startedChunks = null;
+            this.chunksOrder = null;
+            this.isFinished = true;
+        }
+
+        private Session(String key, File targetFile, ObjectInfo objectInfo, File partFile, File stateFile, File eTagFile, ChunksState chunksState) throws IOException {
+            this.key = key;
+            this.targetFile = targetFile;
+            this.sizeBytes = chunksState.sizeBytes;
+            this.file = new RandomAccessFile(partFile, "rw");
+            this.file.setLength(this.sizeBytes);
+            this.channel = this.file.getChannel();
+            this.objectInfo = objectInfo;
+            this.partFile = partFile;
+            this.stateFile = stateFile;
+            this.eTagFile = eTagFile;
+            this.chunksState = chunksState;
+            this.startedChunks = chunksState.completedChunks.clone();
+            this.isFinished = false;
+
+            int chunksCount = chunksState.completedChunks.length;
+            this.chunksOrder = new int[chunksCount];
+            for (int orderIndex = 1; orderIndex < chunksCount; orderIndex++) {
+                this.chunksOrder[orderIndex] = orderIndex - 1;
+            }
+            if (chunksCount > 0) {
+                this.chunksOrder[0] = chunksCount - 1;
+            }
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public File getTargetFile() {
+            return targetFile;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        /** Whether the verified book is in place, its bytes are then read without waiting **/
+        public synchronized boolean isComplete() {
+            return this.isFinished && this.failure == null;
+        }
+
+        /** Reads up to length bytes at the position, waiting for the chunks they fall in, returns 0 past the end **/
+        public int read(long position, byte[] buffer, int length) throws IOException {
+            if (position >= this.sizeBytes || length <= 0) {
+                return 0;
+            }
+
+            int readLength = (int) Math.min(length, this.sizeBytes - position);
+            this.awaitRange(position, position + readLength - 1);
+            ByteBuffer data = ByteBuffer.wrap(buffer, 0, readLength);
+            // Positional reads leave the chunk writers undisturbed
+            while (data.hasRemaining()) {
+                if (this.channel.read(data, position + data.position()) == -1) {
+                    break;
+                }
+            }
+            return data.position();
+        }
+
+        /** Asks for the bytes from start to end, both included, ahead of the rest without waiting for them **/
+        public synchronized void prefetch(long start, long end) {
+            if (this.chunksState == null || start >= this.sizeBytes) {
+                return;
+            }
+
+            int lastChunkIndex = (int) (Math.min(end, this.sizeBytes - 1) / this.chunksState.chunkSize);
+            for (int chunkIndex = (int) (Math.max(start, 0) / this.chunksState.chunkSize); chunkIndex <= lastChunkIndex; chunkIndex++) {
+                if (!this.startedChunks[chunkIndex]) {
+                    this.requestedChunks.addLast(chunkIndex);
+                }
+            }
+        }
+
+        /** Waits for the whole book to be verified and moved into place **/
+        public synchronized File awaitFile() throws IOException {
+            while (!this.isFinished) {
+                this.waitForChunks();
+            }
+            if (this.failure != null) {
+                throw this.failure;
+            }
+            return this.targetFile;
+        }
+
+        /** Gives the session back, its file is closed once every user released it and the download is over **/
+        public synchronized void release() {
+            if (this.usersCount > 0) {
+                this.usersCount--;
+            }
+            this.closeIfUnused();
+        }
+
+        private synchronized boolean retain() {
+            if (this.isClosed) {
+                return false;
+            }
+
+            this.usersCount++;
+            return true;
+        }
+
+        private void start() {
+            int missingChunksCount = 0;
+            for (boolean isStarted : this.startedChunks) {
+                if (!isStarted) {
+                    missingChunksCount++;
+                }
+            }
+
+            // A process death between the last chunk and the move leaves nothing to download
+            if (missingChunksCount == 0) {
+                this.finish();
+                return;
+            }
+
+            int workersCount = Math.min(parallelChunksCount, missingChunksCount);
+            synchronized (this) {
+                this.runningWorkersCount = workersCount;
+            }
+            for (int workerIndex = 0; workerIndex < workersCount; workerIndex++) {
+                try {
+                    chunkExecutor.execute(this::downloadChunks);
+                } catch (RejectedExecutionException error) {
+                    this.failUnscheduledWorkers(workersCount - workerIndex, error);
+                    return;
+                }
+            }
+        }
+
+        /** Fails the session for workers the executor refused, the last worker to end then finishes it as usual **/
+        private void failUnscheduledWorkers(int unscheduledWorkersCount, RejectedExecutionException error) {
+            boolean isLastWorker;
+            synchronized (this) {
+                if (this.failure == null) {
+                    this.failure = new IOException("Chunk download of " + this.key + " could not be scheduled", error);
+                }
+                this.runningWorkersCount -= unscheduledWorkersCount;
+                isLastWorker = this.runningWorkersCount == 0;
+                this.notifyAll();
+            }
+            if (isLastWorker) {
+                this.finish();
+            }
+        }
+
+        /** Downloads one chunk, then goes back to the executor so the chunks of other books take turns with these **/
+        private void downloadChunks() {
+            int chunkIndex = this.takeNextChunk();
+            if (chunkIndex != -1) {
+                try {
+                    downloadChunk(this.key, this.channel, this.chunksState, chunkIndex);
+                    synchronized (this) {
+                        this.chunksState.complete(chunkIndex, this.stateFile);
+                        this.notifyAll();
+                    }
+                } catch (IOException | RuntimeException error) {
+                    // The other chunks still complete, so the next attempt resumes with less to fetch
+                    synchronized (this) {
+                        if (this.failure == null) {
+                            this.failure = error instanceof IOException
+                                    ? (IOException) error
+                                    : new IOException("Chunk download of " + this.key + " failed", error);
+                        }
+                        this.notifyAll();
+                    }
+                }
+
+                try {
+                    chunkExecutor.execute(this::downloadChunks);
+                } catch (RejectedExecutionException error) {
+                    this.failUnscheduledWorkers(1, error);
+                }
+                return;
+            }
+
+            boolean isLastWorker;
+            synchronized (this) {
+                isLastWorker = --this.runningWorkersCount == 0;
+            }
+            if (isLastWorker) {
+                this.finish();
+            }
+        }
+
+        private synchronized int takeNextChunk() {
+            if (this.failure instanceof ObjectChangedException) {
+                return -1;
+            }
+            while (!this.requestedChunks.isEmpty()) {
+                int chunkIndex = this.requestedChunks.pollFirst();
+                if (!this.startedChunks[chunkIndex]) {
+                    this.startedChunks[chunkIndex] = true;
+                    return chunkIndex;
+                }
+            }
+            while (this.nextOrderIndex < this.chunksOrder.length) {
+                int chunkIndex = this.chunksOrder[this.nextOrderIndex++];
+                if (!this.startedChunks[chunkIndex]) {
+                    this.startedChunks[chunkIndex] = true;
+                    return chunkIndex;
+                }
+            }
+            return -1;
+        }
+
+        private synchronized void awaitRange(long start, long end) throws IOException {
+            if (this.chunksState == null) {
+                return;
+            }
+
+            int firstChunkIndex = (int) (start / this.chunksState.chunkSize);
+            int lastChunkIndex = (int) (end / this.chunksState.chunkSize);
+            // The latest read is the one a reader waits for, so it goes before earlier requests
+            for (int chunkIndex = lastChunkIndex; chunkIndex >= firstChunkIndex; chunkIndex--) {
+                if (!this.startedChunks[chunkIndex]) {
+                    this.requestedChunks.addFirst(chunkIndex);
+                }
+            }
+            for (int chunkIndex = firstChunkIndex; chunkIndex <= lastChunkIndex; chunkIndex++) {
+                while (!this.chunksState.completedChunks[chunkIndex]) {
+                    if (this.failure != null) {
+                        throw new IOException("Download of " + this.key + " failed", this.failure);
+                    }
+                    this.waitForChunks();
+                }
+            }
+        }
+
+        private void waitForChunks() throws IOException {
+            try {
+                this.wait();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Download of " + this.key + " was interrupted", error);
+            }
+        }
+
+        /** Verifies the completed download and moves it into place, the file stays open for readers meanwhile **/
+        private void finish() {
+            IOException failure;
+            synchronized (this) {
+                failure = this.failure;
+            }
+            if (failure instanceof ObjectChangedException) {
+                // Completed chunks belong to the replaced version, so the next attempt starts from scratch
+                deleteFiles(this.partFile, this.stateFile);
+            } else if (failure == null) {
+                try {
+                    if (!isIntact(this.partFile, this.objectInfo)) {
+                        deleteFiles(this.partFile, this.stateFile);
+                        throw new IOException("Downloaded " + this.key + " does not match its ETag");
+                    }
+                    Files.move(this.partFile.toPath(), this.targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    Files.write(this.eTagFile.toPath(), this.objectInfo.getETag().getBytes(StandardCharsets.UTF_8));
+                    deleteFiles(this.stateFile);
+                } catch (IOException error) {
+                    failure = error;
+                }
+            }
+            DownloadListener listener = downloadListener;
+            if (failure == null && listener != null) {
+                listener.onDownloaded(this.targetFile);
+            }
+
+            activeSessions.remove(this.key, this);
+            synchronized (this) {
+                this.failure = failure;
+                this.isFinished = true;
+                this.notifyAll();
+                this.closeIfUnused();
+            }
+        }
+
+        private void closeIfUnused() {
+            if (!this.isFinished || this.usersCount > 0 || this.isClosed) {
+                return;
+            }
+
+            this.isClosed = true;
+            try {
+                this.file.close();
+            } catch (IOException error) {
+                // Nothing is left to read from it
+            }
+        }
+    }
+
+    /** Completed chunks of a partial download, saved after each chunk **/
+    private static class ChunksState {
+        private final String eTag;
+        private final long sizeBytes;
+        private final int chunkSize;
+        private final boolean[] completedChunks;
+        private ChunksState(String eTag, long sizeBytes, int chunkSize, boolean[] completedChunks) {
+            this.eTag = eTag;
+            this.sizeBytes = sizeBytes;
+            this.chunkSize = chunkSize;
+            this.completedChunks = completedChunks;
+        }
+
+        /** Resumes the saved state when it belongs to the same object version, starts over otherwise **/
+        private static ChunksState load(File stateFile, ObjectInfo objectInfo, int chunkSize) {
+            if (stateFile.isFile()) {
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+                    if (input.readUnsignedByte() == STATE_FORMAT_VERSION) {
+                        String eTag = input.readUTF();
+                        long sizeBytes = input.readLong();
+                        int savedChunkSize = input.readInt();
+                        boolean[] completedChunks = new boolean[input.readInt()];
+                        for (int chunkIndex = 0; chunkIndex < completedChunks.length; chunkIndex++) {
+                            completedChunks[chunkIndex] = input.readBoolean();
+                        }
+                        if (eTag.equals(objectInfo.getETag()) && sizeBytes == objectInfo.getSizeBytes()
+                                && completedChunks.length == chunksCount(sizeBytes, savedChunkSize)) {
+                            return new ChunksState(eTag, sizeBytes, savedChunkSize, completedChunks);
+                        }
+                    }
+                } catch (IOException error) {
+                    // Unreadable state, the download starts over
+                }
+            }
+
+            long sizeBytes = objectInfo.getSizeBytes();
+            return new ChunksState(objectInfo.getETag(), sizeBytes, chunkSize, new boolean[chunksCount(sizeBytes, chunkSize)]);
+        }
+
+        private static int chunksCount(long sizeBytes, int chunkSize) {
+            return (int) ((sizeBytes + chunkSize - 1) / chunkSize);
+        }
+
+        private synchronized void complete(int chunkIndex, File stateFile) throws IOException {
+            this.completedChunks[chunkIndex] = true;
+
+            // Written aside and renamed, so a process death never leaves a half written state
+            File temporaryFile = new File(stateFile.getPath() + ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                output.writeByte(STATE_FORMAT_VERSION);
+                output.writeUTF(this.eTag);
+                output.writeLong(this.sizeBytes);
+                output.writeInt(this.chunkSize);
+                output.writeInt(this.completedChunks.length);
+                for (boolean isCompleted : this.completedChunks) {
+                    output.writeBoolean(isCompleted);
+                }
+            }
+            if (!temporaryFile.renameTo(stateFile)) {
+                throw new IOException("Can not replace " + stateFile);
+            }
+        }
+    }
+
+    /** Guards the opening of one book, counting the calls holding or waiting for it **/
+    private static class KeyLock {
+        private int usersCount = 0;
+    }
+}
@@ -2,139 +2,196 @@ package com.example.reader.services;
 
 import android.content.Context;
 import android.os.Environment;
+import android.os.FileObserver;
 import android.util.Log;
 
-import com.amazonaws.auth.AWSCredentials;
-import com.amazonaws.auth.BasicAWSCredentials;
-import com.amazonaws.regions.Region;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ListObjectsV2Request;
 import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.example.reader.BuildConfig;
 import com.example.reader.entities.Book;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 public class BooksService {
     private static final String TAG = "MainActivity";
+    private static final String CATALOG_INDEX_FILE_NAME = "catalog-index.bin";
+    static final int PARALLEL_CHUNKS_COUNT = 4;
     private final String PDF_EXTENSION_PORTION = ".pdf";
     private final Context context;
     private final AmazonS3 s3Client;
     private final ReadProgressService readProgressService;
+    private final BookDownloader bookDownloader;
+    // Read from disk on first use, once per process since the service is shared through ReaderServices
+    private CatalogIndex catalogIndex;
+    private File downloadsDir;
+    private volatile DownloadedBooksIndex downloadedBooksIndex;
+    // Referenced for the whole process, an observer that is garbage collected stops watching
+    private FileObserver downloadsObserver;
 
-    public BooksService(Context context) {
+    public BooksService(Context context, AmazonS3 s3Client, ReadProgressService readProgressService, Executor chunkExecutor) {
         this.context = context;
-        this.readProgressService = new ReadProgressService(context);
-
-        // Load AWS credentials from local.properties
-        String accessKey = BuildConfig.AWS_ACCESS_KEY;
-        String secretKey = BuildConfig.AWS_SECRET_KEY;
-        String region = BuildConfig.AWS_REGION;
-
-        // Initialize S3 client
-        AWSCredentials awsCreds = new BasicAWSCredentials(accessKey, secretKey);
-        this.s3Client = new AmazonS3Client(awsCreds, Region.getRegion(region));
+        this.s3Client = s3Client;
+        this.readProgressService = readProgressService;
+        BookDownloader.ObjectSource objectSource = new S3ObjectSource(s3Client, BuildConfig.AWS_BOOKS_BUCKET_NAME);
+        this.bookDownloader = new BookDownloader(objectSource, chunkExecutor, BookDownloader.DEFAULT_CHUNK_SIZE, PARALLEL_CHUNKS_COUNT);
+        this.bookDownloader.setDownloadListener(targetFile -> {
+            DownloadedBooksIndex index = this.downloadedBooksIndex;
+            if (index != null) {
+                index.add(targetFile.getName());
+            }
+        });
     }
 
-    public String getBookContent(String bookFileName) throws IOException {
-        try {
+    /** Starts downloading a book, or joins its running download, and returns as soon as the size of the book is known.
+     * The page read last is asked for right after the trailer, so the reading screen shows it without waiting for the rest.
+     **/
+    public BookDownloader.Session openBook(String bookFileName) throws IOException {
+        File downloadsDir = this.getDownloadsDir();
+        if (downloadsDir == null) {
+            throw new IOException("Unable to access downloads directory.");
+        }
 
-            File downloadsDir = context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
-            if (downloadsDir == null) {
-                throw new IOException("Unable to access downloads directory.");
-            }
+        File bookFile = new File(downloadsDir, bookFileName);
+        BookDownloader.Session bookDownload = this.bookDownloader.open(bookFileName, bookFile);
+        int allPagesCount = this.readProgressService.getAllPagesCount(bookFile.getPath());
+        int lastReadPage = this.readProgressService.getLastReadPage(bookFile.getPath());
+        if (allPagesCount > 0 && lastReadPage > 0) {
+            // Only an estimate from the page position, the exact objects are read on demand anyway
+            long estimatedPosition = bookDownload.getSizeBytes() * lastReadPage / allPagesCount;
+            bookDownload.prefetch(estimatedPosition, estimatedPosition);
+        }
+        return bookDownload;
+    }
 
-            File pdfFile = new File(downloadsDir, bookFileName);
-            String bucketName = BuildConfig.AWS_BOOKS_BUCKET_NAME;
-            S3Object s3Object = this.s3Client.getObject(new GetObjectRequest(bucketName, bookFileName));
-            InputStream inputStreamS3 = s3Object.getObjectContent();
+    /** The running download of a book retained for the caller, null when the book is complete on disk **/
+    public BookDownloader.Session findActiveDownload(File bookFile) {
+        return this.bookDownloader.findActiveSession(bookFile.getName());
+    }
 
-            try (FileOutputStream outputStream = new FileOutputStream(pdfFile)) {
-                byte[] buffer = new byte[4096];
-                int bytesRead;
-                while ((bytesRead = inputStreamS3.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                }
-            }
+    /** Books of the last synced listing, read from local storage without waiting for the network **/
+    public List<Book> getAllBooks() {
+        return this.getCatalogIndex().getBooks();
+    }
 
-            Log.i(TAG, "Downloaded book from S3: " + pdfFile.getAbsolutePath());
-            return pdfFile.getAbsolutePath();
-        } catch (Exception e) {
-            Log.e(TAG, "Error fetching book from S3", e);
-            throw e;
+    /** Lists the whole bucket page by page and applies it to the local catalog, returns whether any book changed.
+     * Skipped when the catalog was synced recently, unless forced.
+     **/
+    public boolean syncCatalog(boolean isForced) throws IOException {
+        CatalogIndex index = this.getCatalogIndex();
+        if (!isForced && !index.isSyncDue(System.currentTimeMillis())) {
+            return false;
         }
-    }
 
-    public List<Book> getAllBooks() {
         String bucketName = BuildConfig.AWS_BOOKS_BUCKET_NAME;
         ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucketName);
-
-        ListObjectsV2Result result = this.s3Client.listObjectsV2(request);
-        List<S3ObjectSummary> objects = result.getObjectSummaries();
-        List<Book> books = new ArrayList<>();
-
-        for (S3ObjectSummary summary : objects) {
-            String objectName = summary.getKey();
-            if (objectName.endsWith(this.PDF_EXTENSION_PORTION)) {
-                books.add(this.getBookFromFileName(objectName));
+        List<CatalogIndex.Entry> listedEntries = new ArrayList<>(index.size());
+        ListObjectsV2Result result;
+        do {
+            // A single call returns at most 1000 keys, the rest is behind the continuation token
+            try {
+                result = this.s3Client.listObjectsV2(request);
+            } catch (AmazonClientException error) {
+                throw new IOException("Can not list the books bucket", error);
             }
-        }
+            for (S3ObjectSummary summary : result.getObjectSummaries()) {
+                String objectName = summary.getKey();
+                if (objectName.endsWith(this.PDF_EXTENSION_PORTION)) {
+                    long lastModifiedMillis = summary.getLastModified() != null ? summary.getLastModified().getTime() : 0;
+                    listedEntries.add(new CatalogIndex.Entry(objectName, summary.getETag(), lastModifiedMillis, summary.getSize()));
+                }
+            }
+            request.setContinuationToken(result.getNextContinuationToken());
+        } while (result.isTruncated());
 
-        return books;
+        boolean isChanged = index.applyListing(listedEntries, System.currentTimeMillis());
+        Log.d(TAG, "Catalog synced: " + listedEntries.size() + " books, changed: " + isChanged);
+        return isChanged;
     }
 
-    /** Books file names are represented in format <name>__<author>.
-     * If book name or author include 2+ words they are separated with _
-     **/
     public Book getBookFromFileName(String rawFileName) {
-        String NAME_AUTHOR_SEPARATOR = "__";
-        char RAW_NAME_FRAGMENT_SEPARATOR = '_';
-        char NEW_NAME_FRAGMENT_SEPARATOR = ' ';
-        int nameIndex = 0;
-        int authorIndex = 1;
+        return Book.fromFileName(rawFileName);
+    }
 
-        String fileNameWithoutExtension = rawFileName.replace(this.PDF_EXTENSION_PORTION, "");
-        String[] rawNameAndAuthor = fileNameWithoutExtension.split(NAME_AUTHOR_SEPARATOR);
-        String rawName = rawNameAndAuthor[nameIndex];
-        String rawAuthor = rawNameAndAuthor[authorIndex];
+    /** Books on the device, the downloads directory is listed on first call only and followed by its observer since **/
+    public List<Book> getDownloadedBooks() {
+        return this.getDownloadedBooksIndex().getFileNames().stream()
+                .map(this::getBookFromFileName)
+                .collect(Collectors.toList());
+    }
 
-        String name = rawName.replace(RAW_NAME_FRAGMENT_SEPARATOR, NEW_NAME_FRAGMENT_SEPARATOR);
-        String author = rawAuthor.replace(RAW_NAME_FRAGMENT_SEPARATOR, NEW_NAME_FRAGMENT_SEPARATOR);
+    /** Lists the downloads directory unless done already, to be called off the main thread before showing the catalog **/
+    public void loadDownloadedBooks() {
+        this.getDownloadedBooksIndex();
+    }
 
-        return new Book(name, author, rawFileName);
+    /** Answered from memory for every catalog row, false until the downloaded books were first listed **/
+    public boolean isBookDownloaded(String bookFileName) {
+        DownloadedBooksIndex index = this.downloadedBooksIndex;
+        return index != null && index.contains(bookFileName);
     }
 
-    public List<Book> getDownloadedBooks() {
-        File downloadsDir = this.context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+    /** Where the book is or will be downloaded, the directory is looked up once **/
+    public File getBookFile(String bookFileName) {
+        File downloadsDir = this.getDownloadsDir();
         if (downloadsDir == null) {
             throw new IllegalArgumentException("Downloads dir is absent");
         }
+        return new File(downloadsDir, bookFileName);
+    }
 
-        File[] downloadedBooksFiles = downloadsDir.listFiles();
-        if (downloadedBooksFiles == null) {
-            throw new IllegalArgumentException("Downloaded books are absent");
+    private synchronized File getDownloadsDir() {
+        if (this.downloadsDir == null) {
+            this.downloadsDir = this.context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
         }
+        return this.downloadsDir;
+    }
 
-        for (File file: downloadedBooksFiles) {
-            Log.d("DOWNLOADED BOOK", file.getName());
+    private synchronized DownloadedBooksIndex getDownloadedBooksIndex() {
+        if (this.downloadedBooksIndex == null) {
+            File downloadsDir = this.getDownloadsDir();
+            if (downloadsDir == null) {
+                throw new IllegalArgumentException("Downloads dir is absent");
+            }
+
+            DownloadedBooksIndex index = new DownloadedBooksIndex(downloadsDir);
+            // Watched before the first listing, so a book landing meanwhile is not missed
+            this.downloadsObserver = new FileObserver(downloadsDir, FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.MOVED_FROM | FileObserver.DELETE) {
+                @Override
+                public void onEvent(int event, String path) {
+                    index.refresh(path);
+                }
+            };
+            this.downloadsObserver.startWatching();
+            index.load();
+            this.downloadedBooksIndex = index;
         }
+        return this.downloadedBooksIndex;
+    }
 
-        return Arrays.stream(downloadedBooksFiles).map(file -> this.getBookFromFileName(file.getName())).collect(Collectors.toList());
+    private synchronized CatalogIndex getCatalogIndex() {
+        if (this.catalogIndex == null) {
+            File indexFile = new File(this.context.getFilesDir(), CATALOG_INDEX_FILE_NAME);
+            this.catalogIndex = CatalogIndex.load(indexFile, CatalogIndex.DEFAULT_MIN_SYNC_INTERVAL_MILLIS);
+        }
+        return this.catalogIndex;
     }
 
     public void deleteBookFromLocalStorage(String bookFileName) {
-        File downloadsDir = this.context.getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS);
+        File downloadsDir = this.getDownloadsDir();
         if (downloadsDir == null) {
             Log.e("DeleteBook", "Downloads directory is not accessible.");
             return;
@@ -143,6 +200,11 @@ public class BooksService {
         File bookFile = new File(downloadsDir, bookFileName);
         if (bookFile.exists()) {
             boolean deleted = bookFile.delete();
+            DownloadedBooksIndex index = this.downloadedBooksIndex;
+            if (deleted && index != null) {
+                index.remove(bookFileName);
+            }
+            this.bookDownloader.forget(bookFile);
             this.readProgressService.removeReadProgressInfo(bookFile.getPath());
             this.readProgressService.removeAllPagesCount(bookFile.getPath());
             Log.d("DeleteBook", "Deleted " + bookFileName + ": " + deleted);
@@ -150,4 +212,47 @@ public class BooksService {
             Log.w("DeleteBook", "Book file not found: " + bookFileName);
         }
     }
-}
\ No newline at end of file
+
+    /** Ranged reads of the books bucket **/
+    private static class S3ObjectSource implements BookDownloader.ObjectSource {
+        private final AmazonS3 s3Client;
+        private final String bucketName;
+        private S3ObjectSource(AmazonS3 s3Client, String bucketName) {
+            this.s3Client = s3Client;
+            this.bucketName = bucketName;
+        }
+
+        @Override
+        public BookDownloader.ObjectInfo getObjectInfo(String key) throws IOException {
+            try {
+                ObjectMetadata metadata = this.s3Client.getObjectMetadata(this.bucketName, key);
+                return new BookDownloader.ObjectInfo(metadata.getContentLength(), metadata.getETag());
+            } catch (AmazonClientException error) {
+                throw new IOException("Can not read the metadata of " + key, error);
+            }
+        }
+
+        @Override
+        public InputStream openRange(String key, String eTag, long start, long end) throws IOException {
+            GetObjectRequest request = new GetObjectRequest(this.bucketName, key).withRange(start, end)
+                    .withMatchingETagConstraint(eTag);
+            S3Object s3Object;
+            try {
+                s3Object = this.s3Client.getObject(request);
+            } catch (AmazonServiceException error) {
+                if (error.getStatusCode() == HttpURLConnection.HTTP_PRECONDITION_FAILED) {
+                    throw new BookDownloader.ObjectChangedException(key, error);
+                }
+                throw new IOException("Can not read " + key + " bytes " + start + "-" + end, error);
+            } catch (AmazonClientException error) {
+                throw new IOException("Can not read " + key + " bytes " + start + "-" + end, error);
+            }
+
+            // The client answers a failed ETag constraint with no object rather than with the 412 error
+            if (s3Object == null) {
+                throw new BookDownloader.ObjectChangedException(key, null);
+            }
+            return s3Object.getObjectContent();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.reader.services;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/** Gaze thresholds of one reader on one device, measured by {@link GazeCalibrator}:
+ * the gaze delta while reading the middle of the page, the dead zone around it, the scroll sensitivity and the gaze jitter.
+ * The default profile keeps the thresholds used before calibration existed.
+ **/
+public class CalibrationProfile {
+    public static final float DEFAULT_SCROLL_SENSITIVITY = 4;
+    public static final CalibrationProfile DEFAULT = new CalibrationProfile(0, -3, 2.5f, DEFAULT_SCROLL_SENSITIVITY, 0);
+    // Bumped whenever the serialized layout changes, older profiles are then ignored
+    private static final int FORMAT_VERSION = 1;
+    private final float neutralGazeDelta;
+    private final float deadZoneLowerBound;
+    private final float deadZoneUpperBound;
+    private final float scrollSensitivity;
+    private final float gazeJitter;
+    public CalibrationProfile(float neutralGazeDelta, float deadZoneLowerBound, float deadZoneUpperBound,
+                              float scrollSensitivity, float gazeJitter) {
+        if (!(deadZoneLowerBound <= neutralGazeDelta && neutralGazeDelta <= deadZoneUpperBound)) {
+            throw new IllegalArgumentException("The dead zone must contain the neutral gaze delta");
+        }
+        if (!(scrollSensitivity > 0)) {
+            throw new IllegalArgumentException("scrollSensitivity must be positive");
+        }
+        if (!(gazeJitter >= 0)) {
+            throw new IllegalArgumentException("gazeJitter can not be negative");
+        }
+
+        this.neutralGazeDelta = neutralGazeDelta;
+        this.deadZoneLowerBound = deadZoneLowerBound;
+        this.deadZoneUpperBound = deadZoneUpperBound;
+        this.scrollSensitivity = scrollSensitivity;
+        this.gazeJitter = gazeJitter;
+    }
+
+    public float getNeutralGazeDelta() {
+        return neutralGazeDelta;
+    }
+
+    public float getDeadZoneLowerBound() {
+        return deadZoneLowerBound;
+    }
+
+    public float getDeadZoneUpperBound() {
+        return deadZoneUpperBound;
+    }
+
+    public float getScrollSensitivity() {
+        return scrollSensitivity;
+    }
+
+    public float getGazeJitter() {
+        return gazeJitter;
+    }
+
+    /** Gaze deltas inside the dead zone are reading, not looking up or down **/
+    public boolean isInDeadZone(float gazeDelta) {
+        return gazeDelta >= this.deadZoneLowerBound && gazeDelta <= this.deadZoneUpperBound;
+    }
+
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeByte(FORMAT_VERSION);
+        output.writeFloat(this.neutralGazeDelta);
+        output.writeFloat(this.deadZoneLowerBound);
+        output.writeFloat(this.deadZoneUpperBound);
+        output.writeFloat(this.scrollSensitivity);
+        output.writeFloat(this.gazeJitter);
+    }
+
+    public static CalibrationProfile readFrom(DataInput input) throws IOException {
+        int formatVersion = input.readUnsignedByte();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported calibration profile version " + formatVersion);
+        }
+
+        float neutralGazeDelta = input.readFloat();
+        float deadZoneLowerBound = input.readFloat();
+        float deadZoneUpperBound = input.readFloat();
+        float scrollSensitivity = input.readFloat();
+        float gazeJitter = input.readFloat();
+        try {
+            return new CalibrationProfile(neutralGazeDelta, deadZoneLowerBound, deadZoneUpperBound, scrollSensitivity, gazeJitter);
+        } catch (IllegalArgumentException error) {
+            throw new IOException("Corrupted calibration profile", error);
+        }
+    }
+}
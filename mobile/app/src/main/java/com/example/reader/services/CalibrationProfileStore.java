@@ -0,0 +1,63 @@
+package com.example.reader.services;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/** Keeps the calibration profile in the app's private files, which Android already separates per user.
+ * The file is named after the device model, so a profile restored from a backup of another device is not applied.
+ * Reads and writes touch the disk, call them off the main thread.
+ **/
+public class CalibrationProfileStore {
+    private static final String TAG = "CalibrationProfileStore";
+    private static final String PROFILE_FILE_PREFIX = "gaze-calibration-";
+    private final File profileFile;
+    public CalibrationProfileStore(Context context) {
+        String deviceKey = (Build.MANUFACTURER + "-" + Build.MODEL).replaceAll("[^A-Za-z0-9_-]", "_");
+        this.profileFile = new File(context.getFilesDir(), PROFILE_FILE_PREFIX + deviceKey + ".bin");
+    }
+
+    public boolean hasProfile() {
+        return this.profileFile.isFile();
+    }
+
+    /** Returns the saved profile, or the default one when none was saved or it can not be read **/
+    public CalibrationProfile load() {
+        if (!this.hasProfile()) {
+            return CalibrationProfile.DEFAULT;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.profileFile)))) {
+            return CalibrationProfile.readFrom(input);
+        } catch (IOException error) {
+            Log.w(TAG, "Ignoring unreadable calibration profile", error);
+            return CalibrationProfile.DEFAULT;
+        }
+    }
+
+    public void save(CalibrationProfile profile) throws IOException {
+        // Written aside and renamed, so a reader never sees a half written profile
+        File temporaryFile = new File(this.profileFile.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+            profile.writeTo(output);
+        }
+        if (!temporaryFile.renameTo(this.profileFile)) {
+            throw new IOException("Can not replace " + this.profileFile);
+        }
+    }
+
+    public void delete() {
+        if (this.profileFile.exists() && !this.profileFile.delete()) {
+            Log.w(TAG, "Can not delete " + this.profileFile);
+        }
+    }
+}
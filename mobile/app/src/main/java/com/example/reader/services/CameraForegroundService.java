@@ -3,6 +3,7 @@ package com.example.reader.services;
 import static android.graphics.ImageFormat.YUV_420_888;
 
 import android.Manifest;
+import android.app.ActivityManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -18,29 +19,42 @@ import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CaptureRequest;
 import android.media.Image;
 import android.media.ImageReader;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
 import android.util.Log;
+import android.util.Range;
 
 import androidx.annotation.NonNull;
 
+import com.example.reader.BuildConfig;
 import com.example.reader.R;
 
-import org.opencv.android.CameraBridgeViewBase;
-import org.opencv.core.Mat;
-import org.opencv.imgproc.Imgproc;
 import org.opencv.objdetect.CascadeClassifier;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 
 public class CameraForegroundService extends Service {
     private static final String TAG = "FaceDetectionService";
+    private static final int TRACKING_STATS_LOG_INTERVAL_FRAMES = 300;
+    // onDestroy runs on the main thread, so waiting for the frame in progress must stay well under the ANR timeout
+    private static final long PROCESSING_THREAD_JOIN_TIMEOUT_MILLIS = 500;
     private FrameProcessingService frameProcessingService;
+    private FrameCaptureService frameCaptureService;
+    private FrameQueue frameQueue;
+    private Thread processingThread;
+    private FrameRateGovernor frameRateGovernor;
+    private GazeRecorder gazeRecorder;
+    private Range<Integer>[] availableFpsRanges;
+    private CameraCaptureSession captureSession;
+    private CaptureRequest.Builder previewRequestBuilder;
+    private final FrameBufferPool frameBufferPool = new FrameBufferPool();
     private CameraManager cameraManager;
     private CameraDevice cameraDevice;
     private Handler backgroundHandler;
@@ -59,13 +73,19 @@ public class CameraForegroundService extends Service {
 
             CascadeClassifier faceCascade = loadCascade(context, "haarcascade_frontalface_default.xml");
             CascadeClassifier eyesCascade = loadCascade(context, "haarcascade_eye.xml");
-            PupilsDetectionService pupilsDetectionService = new PupilsDetectionService(faceCascade, eyesCascade);
+            EyeTrackingConfig eyeTrackingConfig = this.createEyeTrackingConfig();
+            PupilsDetectionService pupilsDetectionService = new PupilsDetectionService(faceCascade, eyesCascade, eyeTrackingConfig);
 
-            CommunicationService communicationService = new CommunicationService(this);
-            this.frameProcessingService = new FrameProcessingService(pupilsDetectionService, communicationService);
+            CommunicationService communicationService = new CommunicationService(GazeEventBus.getInstance());
+            this.frameProcessingService = new FrameProcessingService(pupilsDetectionService, communicationService, eyeTrackingConfig);
+            this.frameCaptureService = new FrameCaptureService(this.frameBufferPool, eyeTrackingConfig.getPipelineMode());
+            this.frameRateGovernor = new FrameRateGovernor(eyeTrackingConfig);
+            this.frameQueue = new FrameQueue(eyeTrackingConfig.getFrameQueueCapacity(), eyeTrackingConfig.getFrameDropPolicy());
+            this.startGazeRecording(eyeTrackingConfig.getRecordingMode());
 
             startForegroundService();
             startBackgroundThread();
+            startProcessingThread();
             openFrontCamera();
         } catch (IOException error) {
             Log.e(TAG, "Error loading detectors", error);
@@ -74,6 +94,30 @@ public class CameraForegroundService extends Service {
         }
     }
 
+    private EyeTrackingConfig createEyeTrackingConfig() {
+        EyeTrackingConfig config = new EyeTrackingConfig();
+        config.applyDeviceClass(this.getDeviceClass());
+        config.setRecordingMode(GazeRecorder.RecordingMode.valueOf(BuildConfig.GAZE_RECORDING_MODE));
+        config.setEyeLocatorStrategy(EyeLocator.Strategy.valueOf(BuildConfig.EYE_LOCATOR));
+        config.setPupilLocatorStrategy(PupilLocator.Strategy.valueOf(BuildConfig.PUPIL_LOCATOR));
+        return config;
+    }
+
+    private EyeTrackingConfig.DeviceClass getDeviceClass() {
+        ActivityManager activityManager = getSystemService(ActivityManager.class);
+        int processorsCount = Runtime.getRuntime().availableProcessors();
+        if (activityManager.isLowRamDevice() || processorsCount <= 4) {
+            return EyeTrackingConfig.DeviceClass.LOW_END;
+        }
+
+        int highEndMemoryClassMb = 256;
+        if (activityManager.getMemoryClass() >= highEndMemoryClassMb && processorsCount >= 8) {
+            return EyeTrackingConfig.DeviceClass.HIGH_END;
+        }
+
+        return EyeTrackingConfig.DeviceClass.MID_RANGE;
+    }
+
     private void startForegroundService() {
         String notificationChannelId = "eye_tracking";
         String notificationChannelName = "Eye Tracking";
@@ -99,6 +143,12 @@ public class CameraForegroundService extends Service {
         backgroundHandler = new Handler(backgroundThread.getLooper());
     }
 
+    private void startProcessingThread() {
+        String processingThreadName = "FrameProcessing";
+        processingThread = new Thread(this::processFrames, processingThreadName);
+        processingThread.start();
+    }
+
     private void openFrontCamera() throws CameraAccessException {
         cameraManager = (CameraManager) getSystemService(Context.CAMERA_SERVICE);
         if (checkSelfPermission(Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
@@ -106,8 +156,11 @@ public class CameraForegroundService extends Service {
         }
 
         String frontCameraId = getFrontCameraId();
+        if (frontCameraId != null) {
+            availableFpsRanges = cameraManager.getCameraCharacteristics(frontCameraId).get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        }
         imageReader = ImageReader.newInstance(640, 480, YUV_420_888, 2);
-        imageReader.setOnImageAvailableListener(this::processFrame, backgroundHandler);
+        imageReader.setOnImageAvailableListener(this::captureFrame, backgroundHandler);
 
         if (frontCameraId == null) {
             throw new IllegalArgumentException("frontCameraId can not be null!");
@@ -145,17 +198,14 @@ public class CameraForegroundService extends Service {
 
     private void startCameraPreview() {
         try {
-            CaptureRequest.Builder previewRequestBuilder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            previewRequestBuilder = cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
             previewRequestBuilder.addTarget(imageReader.getSurface());
 
             cameraDevice.createCaptureSession(Collections.singletonList(imageReader.getSurface()), new CameraCaptureSession.StateCallback() {
                 @Override
                 public void onConfigured(@NonNull CameraCaptureSession session) {
-                    try {
-                        session.setRepeatingRequest(previewRequestBuilder.build(), null, backgroundHandler);
-                    } catch (CameraAccessException e) {
-                        Log.e(TAG, "Failed to build preview");
-                    }
+                    captureSession = session;
+                    applyCaptureFrameRate(frameRateGovernor.getMode());
                 }
 
                 @Override
@@ -166,22 +216,213 @@ public class CameraForegroundService extends Service {
         }
     }
 
-    private void processFrame(ImageReader reader) {
+    // Runs on the camera thread, the repeating request is rebuilt with the fps range closest to the mode
+    private void applyCaptureFrameRate(FrameRateGovernor.Mode mode) {
+        if (captureSession == null || previewRequestBuilder == null) {
+            return;
+        }
+
+        Range<Integer> fpsRange = this.selectFpsRange(mode.getTargetFps());
+        if (fpsRange != null) {
+            previewRequestBuilder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, fpsRange);
+        }
+
+        try {
+            captureSession.setRepeatingRequest(previewRequestBuilder.build(), null, backgroundHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Failed to build preview", e);
+        }
+
+        Log.i(TAG, String.format("Frame rate governor: %s mode, capture range %s, processing %d fps, measured %.1f fps, %d frames skipped",
+                mode, fpsRange, mode.getTargetFps(), frameRateGovernor.getMeasuredFps(), frameRateGovernor.getSkippedFramesCount()));
+    }
+
+    // Lowest range still reaching the target, so the sensor can slow down as much as possible
+    private Range<Integer> selectFpsRange(int targetFps) {
+        if (availableFpsRanges == null || availableFpsRanges.length == 0) {
+            return null;
+        }
+
+        Range<Integer> bestRange = null;
+        for (Range<Integer> range : availableFpsRanges) {
+            if (range.getUpper() < targetFps) {
+                continue;
+            }
+            if (bestRange == null
+                    || range.getUpper() < bestRange.getUpper()
+                    || (range.getUpper().equals(bestRange.getUpper()) && range.getLower() < bestRange.getLower())) {
+                bestRange = range;
+            }
+        }
+
+        if (bestRange != null) {
+            return bestRange;
+        }
+
+        // Nothing reaches the target, so the fastest range is used
+        Range<Integer> fastestRange = availableFpsRanges[0];
+        for (Range<Integer> range : availableFpsRanges) {
+            if (range.getUpper() > fastestRange.getUpper()) {
+                fastestRange = range;
+            }
+        }
+        return fastestRange;
+    }
+
+    private void captureFrame(ImageReader reader) {
         Image image = reader.acquireLatestImage();
         if (image == null) return;
 
-        Mat mat = this.frameProcessingService.convertYUVtoMat(image);
+        // Copy the frame out and free the Image at once, so slow processing never stalls the camera
+        long captureStartNanos = PipelineMetrics.ENABLED ? System.nanoTime() : 0;
+        FrameBuffer frameBuffer = this.frameCaptureService.captureFrame(image);
         image.close();
+        if (PipelineMetrics.ENABLED) {
+            PipelineMetrics.getInstance().record(PipelineMetrics.Stage.CAPTURE, captureStartNanos);
+            frameBuffer.setCapturedNanos(System.nanoTime());
+        }
+
+        try {
+            this.frameQueue.offer(frameBuffer);
+        } catch (InterruptedException e) {
+            frameBuffer.release();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processFrames() {
+        try {
+            FrameBuffer frameBuffer;
+            while ((frameBuffer = this.frameQueue.take()) != null) {
+                this.processFrame(frameBuffer);
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Frame processing interrupted");
+        } finally {
+            // The processing thread tears down what it uses, so nothing is freed while a frame is still in flight
+            this.releaseProcessingResources();
+        }
+    }
+
+    private void releaseProcessingResources() {
+        if (this.frameProcessingService != null) {
+            this.frameProcessingService.shutdown();
+        }
+        this.stopGazeRecording();
+        this.frameBufferPool.clear();
+    }
+
+    private void processFrame(FrameBuffer frameBuffer) {
+        long timestampNanos = frameBuffer.getTimestampNanos();
+        if (PipelineMetrics.ENABLED) {
+            PipelineMetrics.getInstance().record(PipelineMetrics.Stage.QUEUE_WAIT, frameBuffer.getCapturedNanos());
+        }
+        if (!this.frameRateGovernor.shouldProcessFrame(timestampNanos)) {
+            frameBuffer.release();
+            return;
+        }
 
         // Wrap it into a CvCameraViewFrame
-        CvCameraFrameWrapper frameWrapper = new CvCameraFrameWrapper(mat);
+        CvCameraFrameWrapper frameWrapper = this.frameProcessingService.wrapFrame(frameBuffer);
 
-        this.frameProcessingService.processFrame(frameWrapper);
-        image.close();
+        try {
+            this.frameProcessingService.processFrame(frameWrapper, timestampNanos);
+            this.recordFrame(frameBuffer, timestampNanos);
+        } finally {
+            frameWrapper.release();
+            // The Mat is owned by the pool, so it is handed back instead of being released
+            frameBuffer.release();
+            this.frameQueue.onFrameProcessed();
+        }
+
+        boolean isModeChanged = this.frameRateGovernor.onFrameProcessed(timestampNanos,
+                this.frameProcessingService.isLastFramePupilPresent(), this.frameProcessingService.getLastFrameGazeDelta());
+        if (isModeChanged) {
+            FrameRateGovernor.Mode mode = this.frameRateGovernor.getMode();
+            this.backgroundHandler.post(() -> this.applyCaptureFrameRate(mode));
+        }
+
+        this.logTrackingStats();
+    }
+
+    private void startGazeRecording(GazeRecorder.RecordingMode recordingMode) {
+        if (recordingMode == GazeRecorder.RecordingMode.OFF) {
+            return;
+        }
+
+        File recordingsDir = getExternalFilesDir("recordings");
+        File recordingFile = new File(recordingsDir, "gaze-" + System.currentTimeMillis() + ".rec");
+        try {
+            this.gazeRecorder = new GazeRecorder(recordingFile, recordingMode);
+            Log.i(TAG, "Recording gaze session (" + recordingMode + ") to " + recordingFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Can not create gaze recording", e);
+        }
+    }
+
+    private void recordFrame(FrameBuffer frameBuffer, long timestampNanos) {
+        if (this.gazeRecorder == null) {
+            return;
+        }
+
+        try {
+            // In RGB mode the Y plane is the head of the staged YUV data
+            ByteBuffer luma = this.frameProcessingService.getPipelineMode() == FrameProcessingService.PipelineMode.LUMA
+                    ? frameBuffer.getLumaBuffer()
+                    : ByteBuffer.wrap(frameBuffer.getYuvData());
+            this.gazeRecorder.recordFrame(timestampNanos, frameBuffer.getWidth(), frameBuffer.getHeight(), luma);
+            this.gazeRecorder.recordSample(this.frameProcessingService.getLastFrameGazeSample());
+        } catch (IOException e) {
+            Log.e(TAG, "Gaze recording stopped", e);
+            this.stopGazeRecording();
+        }
+    }
+
+    private void stopGazeRecording() {
+        if (this.gazeRecorder == null) {
+            return;
+        }
+
+        try {
+            this.gazeRecorder.close();
+            Log.i(TAG, String.format("Gaze recording closed: %d frames, %d samples",
+                    this.gazeRecorder.getFramesCount(), this.gazeRecorder.getSamplesCount()));
+        } catch (IOException e) {
+            Log.e(TAG, "Can not close gaze recording", e);
+        }
+        this.gazeRecorder = null;
+    }
+
+    private void logTrackingStats() {
+        FaceTracker faceTracker = this.frameProcessingService.getFaceTracker();
+        if (faceTracker.getFramesCount() % TRACKING_STATS_LOG_INTERVAL_FRAMES != 0) {
+            return;
+        }
+
+        Log.d(TAG, String.format("Face tracking: %d frames, %d keyframes, %d re-acquisitions (%.1f%%), %d reader switches",
+                faceTracker.getFramesCount(), faceTracker.getKeyframesCount(),
+                faceTracker.getReacquisitionsCount(), faceTracker.getReacquisitionRate() * 100,
+                this.frameProcessingService.getPrimaryReaderLock().getReaderSwitchesCount()));
+        PupilsDetectionExecutor pupilsDetectionExecutor = this.frameProcessingService.getPupilsDetectionExecutor();
+        Log.d(TAG, String.format("Pupils detection (%s, %s): %.0f us per face",
+                pupilsDetectionExecutor.getPupilLocatorStrategy(),
+                pupilsDetectionExecutor.isParallel() ? "parallel" : "sequential",
+                pupilsDetectionExecutor.getAverageLatencyMicros()));
+        Log.d(TAG, String.format("Frame queue: %d captured, %d processed, %d dropped",
+                this.frameQueue.getCapturedFramesCount(), this.frameQueue.getProcessedFramesCount(),
+                this.frameQueue.getDroppedFramesCount()));
+        if (PipelineMetrics.ENABLED) {
+            Log.d(TAG, "Pipeline latencies: " + PipelineMetrics.getInstance().dump());
+            Log.d(TAG, String.format("Native heap: %d KiB allocated", Debug.getNativeHeapAllocatedSize() / 1024));
+        }
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        // Every start re-reads the profile, so a calibration made while the service was running is picked up
+        if (this.backgroundHandler != null && this.frameRateGovernor != null) {
+            this.backgroundHandler.post(() -> this.frameRateGovernor.setCalibrationProfile(new CalibrationProfileStore(this).load()));
+        }
         return START_STICKY;
     }
 
@@ -198,6 +439,23 @@ public class CameraForegroundService extends Service {
         if (backgroundThread != null) {
             backgroundThread.quitSafely();
         }
+        if (frameQueue != null) {
+            frameQueue.close();
+        }
+        if (processingThread != null) {
+            processingThread.interrupt();
+            try {
+                processingThread.join(PROCESSING_THREAD_JOIN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (processingThread.isAlive()) {
+                Log.w(TAG, "Frame processing did not stop within " + PROCESSING_THREAD_JOIN_TIMEOUT_MILLIS
+                        + " ms, it releases its resources once the current frame is done");
+            }
+        } else {
+            releaseProcessingResources();
+        }
         super.onDestroy();
     }
     private CascadeClassifier loadCascade(Context context, String cascadeFileName) throws IOException {
@@ -225,30 +483,3 @@ public class CameraForegroundService extends Service {
         return loadedCascade;
     }
 }
-
-class CvCameraFrameWrapper implements CameraBridgeViewBase.CvCameraViewFrame {
-    private final Mat rgbaMat;
-
-    public CvCameraFrameWrapper(Mat mat) {
-        this.rgbaMat = mat;
-    }
-
-    @Override
-    public Mat rgba() {
-        return rgbaMat;
-    }
-
-    @Override
-    public Mat gray() {
-        Mat grayMat = new Mat();
-        Imgproc.cvtColor(rgbaMat, grayMat, Imgproc.COLOR_RGBA2GRAY);
-        return grayMat;
-    }
-
-    @Override
-    public void release() {
-        if (rgbaMat != null) {
-            rgbaMat.release();
-        }
-    }
-}
\ No newline at end of file
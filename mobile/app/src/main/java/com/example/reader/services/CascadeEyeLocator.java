@@ -0,0 +1,38 @@
+package com.example.reader.services;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/** Runs the eye cascade around the eyes the face tracker saw last, or on the whole upper face when they are unknown. **/
+public class CascadeEyeLocator implements EyeLocator {
+    private final PupilsDetectionService pupilsDetectionService;
+    private final FaceTracker faceTracker;
+    private long cascadeRunsCount = 0;
+    public CascadeEyeLocator(PupilsDetectionService pupilsDetectionService, FaceTracker faceTracker) {
+        this.pupilsDetectionService = pupilsDetectionService;
+        this.faceTracker = faceTracker;
+    }
+
+    @Override
+    public Rect[] locateEyes(int faceIndex, Rect face, Mat faceFrame) {
+        Rect eyesSearchRegion = this.faceTracker.getEyesSearchRegion(faceIndex, face);
+        this.cascadeRunsCount++;
+        Rect[] eyes = eyesSearchRegion == null
+                ? this.pupilsDetectionService.detectEyes(faceFrame)
+                : this.pupilsDetectionService.detectEyesInRegion(faceFrame, eyesSearchRegion);
+
+        if (eyesSearchRegion != null && eyes.length < 2) {
+            // Tracking lost at least one eye, so the whole upper face is searched and the next frame is a keyframe
+            this.cascadeRunsCount++;
+            eyes = this.pupilsDetectionService.detectEyes(faceFrame);
+            this.faceTracker.reportLowConfidence();
+        }
+
+        this.faceTracker.updateEyes(faceIndex, eyes);
+        return eyes;
+    }
+
+    public long getCascadeRunsCount() {
+        return this.cascadeRunsCount;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.reader.services;
+
+import com.example.reader.entities.Book;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Local copy of the books bucket listing, persisted in a compact binary file so the catalog is shown without
+ * waiting for the network. Each full listing is applied incrementally: objects whose ETag and last modification
+ * did not change keep their parsed book, and the file is rewritten only when something changed.
+ **/
+public class CatalogIndex {
+    public static final long DEFAULT_MIN_SYNC_INTERVAL_MILLIS = 30_000;
+    // Bumped whenever the serialized layout changes, older indexes are then rebuilt from the next listing
+    private static final int FORMAT_VERSION = 1;
+    private final File indexFile;
+    private final long minSyncIntervalMillis;
+    private Map<String, Entry> entries = new LinkedHashMap<>();
+    // Kept in memory only, so every process start refreshes the saved listing once
+    private long lastSyncMillis = Long.MIN_VALUE;
+    private CatalogIndex(File indexFile, long minSyncIntervalMillis) {
+        this.indexFile = indexFile;
+        this.minSyncIntervalMillis = minSyncIntervalMillis;
+    }
+
+    /** Reads the index saved in the file, an absent or unreadable file gives an empty index **/
+    public static CatalogIndex load(File indexFile, long minSyncIntervalMillis) {
+        CatalogIndex index = new CatalogIndex(indexFile, minSyncIntervalMillis);
+        if (!indexFile.isFile()) {
+            return index;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            index.readFrom(input);
+        } catch (IOException | RuntimeException error) {
+            // Rebuilt from the next listing
+            index.entries = new LinkedHashMap<>();
+        }
+        return index;
+    }
+
+    public synchronized List<Book> getBooks() {
+        List<Book> books = new ArrayList<>(this.entries.size());
+        for (Entry entry : this.entries.values()) {
+            books.add(entry.book);
+        }
+        return books;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /** Repeated screen visits and filter taps do not list the bucket again within the minimal interval **/
+    public synchronized boolean isSyncDue(long nowMillis) {
+        return this.lastSyncMillis == Long.MIN_VALUE || nowMillis - this.lastSyncMillis >= this.minSyncIntervalMillis;
+    }
+
+    /** Replaces the index with a complete listing of the bucket, returns whether any book was added, changed or removed **/
+    public synchronized boolean applyListing(List<Entry> listedEntries, long nowMillis) throws IOException {
+        Map<String, Entry> syncedEntries = new LinkedHashMap<>();
+        boolean isChanged = false;
+        for (Entry listedEntry : listedEntries) {
+            Entry knownEntry = this.entries.get(listedEntry.key);
+            if (knownEntry != null && knownEntry.isSameObject(listedEntry)) {
+                syncedEntries.put(knownEntry.key, knownEntry);
+                continue;
+            }
+
+            listedEntry.book = Book.fromFileName(listedEntry.key);
+            syncedEntries.put(listedEntry.key, listedEntry);
+            isChanged = true;
+        }
+        isChanged |= syncedEntries.size() != this.entries.size();
+
+        this.lastSyncMillis = nowMillis;
+        if (isChanged) {
+            this.entries = syncedEntries;
+            this.save();
+        }
+        return isChanged;
+    }
+
+    private void save() throws IOException {
+        // Written aside and renamed, so a crash never leaves a half written index
+        File temporaryFile = new File(this.indexFile.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+            output.writeByte(FORMAT_VERSION);
+            output.writeInt(this.entries.size());
+            for (Entry entry : this.entries.values()) {
+                output.writeUTF(entry.key);
+                output.writeUTF(entry.eTag);
+                output.writeLong(entry.lastModifiedMillis);
+                output.writeLong(entry.sizeBytes);
+                output.writeUTF(entry.book.getName());
+                output.writeUTF(entry.book.getAuthor());
+            }
+        }
+        if (!temporaryFile.renameTo(this.indexFile)) {
+            throw new IOException("Can not replace " + this.indexFile);
+        }
+    }
+
+    private void readFrom(DataInputStream input) throws IOException {
+        int formatVersion = input.readUnsignedByte();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported catalog index version " + formatVersion);
+        }
+
+        int entriesCount = input.readInt();
+        for (int entryIndex = 0; entryIndex < entriesCount; entryIndex++) {
+            Entry entry = new Entry(input.readUTF(), input.readUTF(), input.readLong(), input.readLong());
+            entry.book = new Book(input.readUTF(), input.readUTF(), entry.key);
+            this.entries.put(entry.key, entry);
+        }
+    }
+
+    /** One object of the bucket listing **/
+    public static class Entry {
+        private final String key;
+        private final String eTag;
+        private final long lastModifiedMillis;
+        private final long sizeBytes;
+        private Book book;
+        public Entry(String key, String eTag, long lastModifiedMillis, long sizeBytes) {
+            this.key = key;
+            this.eTag = eTag != null ? eTag : "";
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.sizeBytes = sizeBytes;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public long getLastModifiedMillis() {
+            return lastModifiedMillis;
+        }
+
+        public long getSizeBytes() {
+            return sizeBytes;
+        }
+
+        private boolean isSameObject(Entry other) {
+            return this.eTag.equals(other.eTag) && this.lastModifiedMillis == other.lastModifiedMillis;
+        }
+    }
+}
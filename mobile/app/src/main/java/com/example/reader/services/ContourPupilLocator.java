@@ -0,0 +1,24 @@
+package com.example.reader.services;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.Rect;
+
+/** Reference pupil locator: blur, Otsu threshold and the most circular contour, see {@link PupilsDetectionService#detectPupils(Mat, Rect)}. **/
+public class ContourPupilLocator implements PupilLocator {
+    private final PupilsDetectionService pupilsDetectionService;
+    private final PupilsDetectionService.Scratch scratch = new PupilsDetectionService.Scratch();
+    public ContourPupilLocator(PupilsDetectionService pupilsDetectionService) {
+        this.pupilsDetectionService = pupilsDetectionService;
+    }
+
+    @Override
+    public MatOfKeyPoint locatePupil(Mat eyeFrame, Rect eye) {
+        return this.pupilsDetectionService.detectPupils(eyeFrame, eye, this.scratch);
+    }
+
+    @Override
+    public void release() {
+        this.scratch.release();
+    }
+}
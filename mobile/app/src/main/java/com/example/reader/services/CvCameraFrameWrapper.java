@@ -0,0 +1,52 @@
+package com.example.reader.services;
+
+import org.opencv.android.CameraBridgeViewBase;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/** Mats passed to the constructor are owned by the caller (usually a pooled frame buffer),
+ * only the ones converted lazily here are released by {@link #release()}.
+ **/
+public class CvCameraFrameWrapper implements CameraBridgeViewBase.CvCameraViewFrame {
+    private Mat rgbaMat;
+    private Mat grayMat;
+    private Mat convertedMat;
+
+    public CvCameraFrameWrapper(Mat mat) {
+        this(mat, null);
+    }
+
+    public CvCameraFrameWrapper(Mat rgbaMat, Mat grayMat) {
+        this.rgbaMat = rgbaMat;
+        this.grayMat = grayMat;
+    }
+
+    @Override
+    public Mat rgba() {
+        if (rgbaMat == null) {
+            rgbaMat = new Mat();
+            Imgproc.cvtColor(grayMat, rgbaMat, Imgproc.COLOR_GRAY2RGBA);
+            convertedMat = rgbaMat;
+        }
+        return rgbaMat;
+    }
+
+    @Override
+    public Mat gray() {
+        if (grayMat == null) {
+            grayMat = new Mat();
+            int conversionCode = rgbaMat.channels() == 4 ? Imgproc.COLOR_RGBA2GRAY : Imgproc.COLOR_RGB2GRAY;
+            Imgproc.cvtColor(rgbaMat, grayMat, conversionCode);
+            convertedMat = grayMat;
+        }
+        return grayMat;
+    }
+
+    @Override
+    public void release() {
+        if (convertedMat != null) {
+            convertedMat.release();
+            convertedMat = null;
+        }
+    }
+}
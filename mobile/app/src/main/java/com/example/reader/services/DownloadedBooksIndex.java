@@ -0,0 +1,78 @@
+package com.example.reader.services;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** In-memory set of the books on the device keyed by file name, so the catalog tells downloaded books apart
+ * without listing the downloads directory for every row. Filled by one scan of the directory, then kept current
+ * by the download and delete paths and by the observer of the directory.
+ **/
+public class DownloadedBooksIndex {
+    private static final String PDF_EXTENSION = ".pdf";
+    private final File downloadsDir;
+    private final Set<String> fileNames = ConcurrentHashMap.newKeySet();
+    private volatile boolean isLoaded = false;
+    public DownloadedBooksIndex(File downloadsDir) {
+        this.downloadsDir = downloadsDir;
+    }
+
+    /** Lists the directory on first call, later calls return at once **/
+    public synchronized void load() {
+        if (this.isLoaded) {
+            return;
+        }
+
+        File[] files = this.downloadsDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                // Partial downloads are kept aside in a hidden directory
+                if (file.isFile() && file.getName().endsWith(PDF_EXTENSION)) {
+                    this.fileNames.add(file.getName());
+                }
+            }
+        }
+        this.isLoaded = true;
+    }
+
+    public boolean isLoaded() {
+        return this.isLoaded;
+    }
+
+    public boolean contains(String fileName) {
+        return this.fileNames.contains(fileName);
+    }
+
+    /** File names of the downloaded books, sorted so the shelf keeps its order between visits **/
+    public List<String> getFileNames() {
+        List<String> sortedFileNames = new ArrayList<>(this.fileNames);
+        Collections.sort(sortedFileNames);
+        return sortedFileNames;
+    }
+
+    public void add(String fileName) {
+        if (fileName.endsWith(PDF_EXTENSION)) {
+            this.fileNames.add(fileName);
+        }
+    }
+
+    public void remove(String fileName) {
+        this.fileNames.remove(fileName);
+    }
+
+    /** Checks one file again after the directory observer reported a change to it **/
+    public void refresh(String fileName) {
+        if (fileName == null || !fileName.endsWith(PDF_EXTENSION)) {
+            return;
+        }
+
+        if (new File(this.downloadsDir, fileName).isFile()) {
+            this.fileNames.add(fileName);
+        } else {
+            this.fileNames.remove(fileName);
+        }
+    }
+}
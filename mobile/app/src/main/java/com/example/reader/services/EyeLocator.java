@@ -0,0 +1,25 @@
+package com.example.reader.services;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/** Finds the eye regions of a detected face, returned rects are in face coordinates
+ * and may be reused by the locator on its next call.
+ **/
+public interface EyeLocator {
+    /** CASCADE runs the Haar eye cascade on every face, GEOMETRIC derives the eyes from the face rect **/
+    enum Strategy {
+        CASCADE,
+        GEOMETRIC
+    }
+
+    Rect[] locateEyes(int faceIndex, Rect face, Mat faceFrame);
+
+    /** Pupils found on the eyes returned last for the face, locators use it as their confidence **/
+    default void reportPupilsFound(int faceIndex, int eyesCount, int pupilsFoundCount) {
+    }
+
+    /** Another person now has the given face index, what was learnt about the previous one is dropped **/
+    default void forgetFace(int faceIndex) {
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.reader.services;
+
+/** Tunables of the eye-tracking pipeline. Defaults are the values used on device. **/
+public class EyeTrackingConfig {
+    /** Face search scales per device class: downscale applied before the face cascade and its scale step **/
+    public enum DeviceClass {
+        LOW_END(0.25, 1.1),
+        MID_RANGE(0.35, 1.08),
+        HIGH_END(0.5, 1.05);
+
+        private final double faceDetectionScale;
+        private final double faceCascadeScaleFactor;
+
+        DeviceClass(double faceDetectionScale, double faceCascadeScaleFactor) {
+            this.faceDetectionScale = faceDetectionScale;
+            this.faceCascadeScaleFactor = faceCascadeScaleFactor;
+        }
+
+        public double getFaceDetectionScale() {
+            return faceDetectionScale;
+        }
+
+        public double getFaceCascadeScaleFactor() {
+            return faceCascadeScaleFactor;
+        }
+    }
+
+    private FrameProcessingService.PipelineMode pipelineMode = FrameProcessingService.PipelineMode.LUMA;
+    // Full-frame face detection runs once per this many frames, 1 disables tracking
+    private int faceKeyframeInterval = 10;
+    // Fraction of the last face/eyes size added on each side of the tracking search window
+    private double roiPadding = 0.25;
+    // Faces are searched on a frame downscaled by this factor, 1 searches at camera resolution
+    private double faceDetectionScale = DeviceClass.MID_RANGE.getFaceDetectionScale();
+    private double faceCascadeScaleFactor = DeviceClass.MID_RANGE.getFaceCascadeScaleFactor();
+    // Captured frames waiting for the processing worker
+    private int frameQueueCapacity = 2;
+    private FrameQueue.DropPolicy frameDropPolicy = FrameQueue.DropPolicy.LATEST_WINS;
+    // Detect pupils of both eyes at the same time on a small worker pool
+    private boolean isParallelPupilsDetectionEnabled = Runtime.getRuntime().availableProcessors() > 2;
+    // Frame rate drops once the gaze has not triggered a scroll, or no pupil was seen, for this long
+    private long steadyGazeAfterMillis = 2000;
+    private long probeAfterMillis = 3000;
+    // Another face becomes the reader only once the locked one was not seen for this long
+    private long readerLockTimeoutMillis = 1500;
+    // Sessions are recorded for offline replay only when asked for
+    private GazeRecorder.RecordingMode recordingMode = GazeRecorder.RecordingMode.OFF;
+    private EyeLocator.Strategy eyeLocatorStrategy = EyeLocator.Strategy.CASCADE;
+    private PupilLocator.Strategy pupilLocatorStrategy = PupilLocator.Strategy.CONTOUR;
+
+    public void applyDeviceClass(DeviceClass deviceClass) {
+        this.setFaceDetectionScale(deviceClass.getFaceDetectionScale());
+        this.setFaceCascadeScaleFactor(deviceClass.getFaceCascadeScaleFactor());
+    }
+
+    public FrameProcessingService.PipelineMode getPipelineMode() {
+        return pipelineMode;
+    }
+
+    public void setPipelineMode(FrameProcessingService.PipelineMode pipelineMode) {
+        this.pipelineMode = pipelineMode;
+    }
+
+    public int getFaceKeyframeInterval() {
+        return faceKeyframeInterval;
+    }
+
+    public void setFaceKeyframeInterval(int faceKeyframeInterval) {
+        if (faceKeyframeInterval < 1) {
+            throw new IllegalArgumentException("faceKeyframeInterval must be at least 1");
+        }
+        this.faceKeyframeInterval = faceKeyframeInterval;
+    }
+
+    public double getRoiPadding() {
+        return roiPadding;
+    }
+
+    public void setRoiPadding(double roiPadding) {
+        if (roiPadding < 0) {
+            throw new IllegalArgumentException("roiPadding can not be negative");
+        }
+        this.roiPadding = roiPadding;
+    }
+
+    public double getFaceDetectionScale() {
+        return faceDetectionScale;
+    }
+
+    public void setFaceDetectionScale(double faceDetectionScale) {
+        if (faceDetectionScale <= 0 || faceDetectionScale > 1) {
+            throw new IllegalArgumentException("faceDetectionScale must be in (0, 1]");
+        }
+        this.faceDetectionScale = faceDetectionScale;
+    }
+
+    public double getFaceCascadeScaleFactor() {
+        return faceCascadeScaleFactor;
+    }
+
+    public void setFaceCascadeScaleFactor(double faceCascadeScaleFactor) {
+        if (faceCascadeScaleFactor <= 1) {
+            throw new IllegalArgumentException("faceCascadeScaleFactor must be greater than 1");
+        }
+        this.faceCascadeScaleFactor = faceCascadeScaleFactor;
+    }
+
+    public int getFrameQueueCapacity() {
+        return frameQueueCapacity;
+    }
+
+    public void setFrameQueueCapacity(int frameQueueCapacity) {
+        if (frameQueueCapacity < 1) {
+            throw new IllegalArgumentException("frameQueueCapacity must be at least 1");
+        }
+        this.frameQueueCapacity = frameQueueCapacity;
+    }
+
+    public FrameQueue.DropPolicy getFrameDropPolicy() {
+        return frameDropPolicy;
+    }
+
+    public void setFrameDropPolicy(FrameQueue.DropPolicy frameDropPolicy) {
+        this.frameDropPolicy = frameDropPolicy;
+    }
+
+    public boolean isParallelPupilsDetectionEnabled() {
+        return isParallelPupilsDetectionEnabled;
+    }
+
+    public void setParallelPupilsDetectionEnabled(boolean isParallelPupilsDetectionEnabled) {
+        this.isParallelPupilsDetectionEnabled = isParallelPupilsDetectionEnabled;
+    }
+
+    public long getSteadyGazeAfterMillis() {
+        return steadyGazeAfterMillis;
+    }
+
+    public void setSteadyGazeAfterMillis(long steadyGazeAfterMillis) {
+        this.steadyGazeAfterMillis = steadyGazeAfterMillis;
+    }
+
+    public long getProbeAfterMillis() {
+        return probeAfterMillis;
+    }
+
+    public void setProbeAfterMillis(long probeAfterMillis) {
+        this.probeAfterMillis = probeAfterMillis;
+    }
+
+    public long getReaderLockTimeoutMillis() {
+        return readerLockTimeoutMillis;
+    }
+
+    public void setReaderLockTimeoutMillis(long readerLockTimeoutMillis) {
+        if (readerLockTimeoutMillis < 0) {
+            throw new IllegalArgumentException("readerLockTimeoutMillis can not be negative");
+        }
+        this.readerLockTimeoutMillis = readerLockTimeoutMillis;
+    }
+
+    public GazeRecorder.RecordingMode getRecordingMode() {
+        return recordingMode;
+    }
+
+    public void setRecordingMode(GazeRecorder.RecordingMode recordingMode) {
+        this.recordingMode = recordingMode;
+    }
+
+    public EyeLocator.Strategy getEyeLocatorStrategy() {
+        return eyeLocatorStrategy;
+    }
+
+    public void setEyeLocatorStrategy(EyeLocator.Strategy eyeLocatorStrategy) {
+        this.eyeLocatorStrategy = eyeLocatorStrategy;
+    }
+
+    public PupilLocator.Strategy getPupilLocatorStrategy() {
+        return pupilLocatorStrategy;
+    }
+
+    public void setPupilLocatorStrategy(PupilLocator.Strategy pupilLocatorStrategy) {
+        this.pupilLocatorStrategy = pupilLocatorStrategy;
+    }
+}
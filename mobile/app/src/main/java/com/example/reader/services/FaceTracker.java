@@ -0,0 +1,166 @@
+package com.example.reader.services;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/** Runs full-frame face detection only on keyframes and searches padded windows
+ * around the last known faces and eyes in between.
+ * A keyframe is forced whenever a tracked face is lost or the caller reports low confidence.
+ **/
+public class FaceTracker {
+    private static final double MIN_TRACKED_FACE_OVERLAP = 0.3;
+    private final PupilsDetectionService pupilsDetectionService;
+    private final int keyframeInterval;
+    private final double roiPadding;
+    private Rect[] trackedFaces = new Rect[0];
+    private Rect[][] trackedEyes = new Rect[0][];
+    private int framesSinceKeyframe = 0;
+    private boolean isConfidenceLow = true;
+    private long framesCount = 0;
+    private long keyframesCount = 0;
+    private long reacquisitionsCount = 0;
+
+    public FaceTracker(PupilsDetectionService pupilsDetectionService, EyeTrackingConfig config) {
+        this.pupilsDetectionService = pupilsDetectionService;
+        this.keyframeInterval = config.getFaceKeyframeInterval();
+        this.roiPadding = config.getRoiPadding();
+    }
+
+    public Rect[] detectFaces(Mat frame) {
+        this.framesCount++;
+        if (this.isKeyframeDue()) {
+            return this.detectOnKeyframe(frame);
+        }
+
+        Rect frameBounds = new Rect(0, 0, frame.cols(), frame.rows());
+        Rect[] faces = new Rect[this.trackedFaces.length];
+        for (int i = 0; i < this.trackedFaces.length; i++) {
+            Rect searchRegion = padRect(this.trackedFaces[i], this.roiPadding, frameBounds);
+            Rect[] candidates = this.pupilsDetectionService.detectFacesInRegion(frame, searchRegion);
+            Rect face = this.findBestOverlap(candidates, this.trackedFaces[i]);
+
+            // The face left its window, so it is searched in the whole frame again
+            if (face == null) {
+                this.reacquisitionsCount++;
+                return this.detectOnKeyframe(frame);
+            }
+
+            faces[i] = face;
+        }
+
+        this.framesSinceKeyframe++;
+        this.trackedFaces = faces;
+        return faces;
+    }
+
+    /** Search region for the eyes of the given face in face coordinates, null when eyes are unknown. **/
+    public Rect getEyesSearchRegion(int faceIndex, Rect face) {
+        if (faceIndex >= this.trackedEyes.length || this.trackedEyes[faceIndex] == null || this.trackedEyes[faceIndex].length == 0) {
+            return null;
+        }
+
+        Rect[] eyes = this.trackedEyes[faceIndex];
+        int left = eyes[0].x;
+        int top = eyes[0].y;
+        int right = eyes[0].x + eyes[0].width;
+        int bottom = eyes[0].y + eyes[0].height;
+        for (int i = 1; i < eyes.length; i++) {
+            left = Math.min(left, eyes[i].x);
+            top = Math.min(top, eyes[i].y);
+            right = Math.max(right, eyes[i].x + eyes[i].width);
+            bottom = Math.max(bottom, eyes[i].y + eyes[i].height);
+        }
+
+        Rect upperFaceBounds = new Rect(0, 0, face.width, face.height / 2);
+        Rect region = padRect(new Rect(left, top, right - left, bottom - top), this.roiPadding, upperFaceBounds);
+        return region.width > 0 && region.height > 0 ? region : null;
+    }
+
+    /** Keeps tracking only the given face, the others are looked for again on the next keyframe **/
+    public void retainFace(int faceIndex) {
+        if (this.trackedFaces.length <= 1 || faceIndex >= this.trackedFaces.length) {
+            return;
+        }
+
+        this.trackedFaces = new Rect[]{this.trackedFaces[faceIndex]};
+        this.trackedEyes = new Rect[][]{this.trackedEyes[faceIndex]};
+    }
+
+    public void updateEyes(int faceIndex, Rect[] eyes) {
+        if (faceIndex < this.trackedEyes.length) {
+            this.trackedEyes[faceIndex] = eyes;
+        }
+    }
+
+    public void reportLowConfidence() {
+        this.isConfidenceLow = true;
+    }
+
+    public long getFramesCount() {
+        return framesCount;
+    }
+
+    public long getKeyframesCount() {
+        return keyframesCount;
+    }
+
+    public long getReacquisitionsCount() {
+        return reacquisitionsCount;
+    }
+
+    /** Share of tracked frames on which the face had to be searched in the whole frame again. **/
+    public double getReacquisitionRate() {
+        return this.framesCount == 0 ? 0 : this.reacquisitionsCount / (double) this.framesCount;
+    }
+
+    public static double intersectionOverUnion(Rect first, Rect second) {
+        int left = Math.max(first.x, second.x);
+        int top = Math.max(first.y, second.y);
+        int right = Math.min(first.x + first.width, second.x + second.width);
+        int bottom = Math.min(first.y + first.height, second.y + second.height);
+        if (right <= left || bottom <= top) {
+            return 0;
+        }
+
+        double intersection = (double) (right - left) * (bottom - top);
+        double union = (double) first.width * first.height + (double) second.width * second.height - intersection;
+        return intersection / union;
+    }
+
+    static Rect padRect(Rect rect, double padding, Rect bounds) {
+        int paddingX = (int) (rect.width * padding);
+        int paddingY = (int) (rect.height * padding);
+        int left = Math.max(bounds.x, rect.x - paddingX);
+        int top = Math.max(bounds.y, rect.y - paddingY);
+        int right = Math.min(bounds.x + bounds.width, rect.x + rect.width + paddingX);
+        int bottom = Math.min(bounds.y + bounds.height, rect.y + rect.height + paddingY);
+        return new Rect(left, top, Math.max(0, right - left), Math.max(0, bottom - top));
+    }
+
+    private boolean isKeyframeDue() {
+        return this.isConfidenceLow || this.trackedFaces.length == 0 || this.framesSinceKeyframe + 1 >= this.keyframeInterval;
+    }
+
+    private Rect[] detectOnKeyframe(Mat frame) {
+        Rect[] faces = this.pupilsDetectionService.detectFaces(frame);
+        this.keyframesCount++;
+        this.framesSinceKeyframe = 0;
+        this.isConfidenceLow = false;
+        this.trackedFaces = faces;
+        this.trackedEyes = new Rect[faces.length][];
+        return faces;
+    }
+
+    private Rect findBestOverlap(Rect[] candidates, Rect previousFace) {
+        Rect bestFace = null;
+        double bestOverlap = MIN_TRACKED_FACE_OVERLAP;
+        for (Rect candidate : candidates) {
+            double overlap = intersectionOverUnion(candidate, previousFace);
+            if (overlap >= bestOverlap) {
+                bestOverlap = overlap;
+                bestFace = candidate;
+            }
+        }
+        return bestFace;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.reader.services;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.nio.ByteBuffer;
+
+/** Reusable native Mats and staging arrays for a single camera frame of a fixed resolution.
+ * Obtained from {@link FrameBufferPool#acquire(int, int)} and handed back with {@link #release()}.
+ **/
+public class FrameBuffer {
+    private final FrameBufferPool pool;
+    private final int width;
+    private final int height;
+    private final byte[] yuvData;
+    private final byte[] uRow;
+    private final byte[] vRow;
+    private final ByteBuffer lumaBuffer;
+    private final Mat lumaMat;
+    private final Mat yuvMat;
+    private final Mat rgbMat;
+    private final Mat rotatedMat;
+    private final Mat rotatedLumaMat;
+    private long timestampNanos;
+    // System.nanoTime() once the frame was copied out of the camera image
+    private long capturedNanos;
+
+    FrameBuffer(FrameBufferPool pool, int width, int height) {
+        this.pool = pool;
+        this.width = width;
+        this.height = height;
+        this.yuvData = new byte[(height + height / 2) * width];
+        this.uRow = new byte[width / 2];
+        this.vRow = new byte[width / 2];
+        this.lumaBuffer = ByteBuffer.allocateDirect(width * height);
+        // Wraps the direct buffer, so copying luma into it fills the Mat without another copy
+        this.lumaMat = new Mat(height, width, CvType.CV_8UC1, this.lumaBuffer);
+        this.yuvMat = new Mat(height + height / 2, width, CvType.CV_8UC1);
+        this.rgbMat = new Mat(height, width, CvType.CV_8UC3);
+        this.rotatedMat = new Mat(width, height, CvType.CV_8UC3);
+        this.rotatedLumaMat = new Mat(width, height, CvType.CV_8UC1);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public byte[] getYuvData() {
+        return yuvData;
+    }
+
+    public byte[] getURow() {
+        return uRow;
+    }
+
+    public byte[] getVRow() {
+        return vRow;
+    }
+
+    public ByteBuffer getLumaBuffer() {
+        return lumaBuffer;
+    }
+
+    public Mat getLumaMat() {
+        return lumaMat;
+    }
+
+    public Mat getYuvMat() {
+        return yuvMat;
+    }
+
+    public Mat getRgbMat() {
+        return rgbMat;
+    }
+
+    public Mat getRotatedMat() {
+        return rotatedMat;
+    }
+
+    public Mat getRotatedLumaMat() {
+        return rotatedLumaMat;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public void setTimestampNanos(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+    }
+
+    public long getCapturedNanos() {
+        return capturedNanos;
+    }
+
+    public void setCapturedNanos(long capturedNanos) {
+        this.capturedNanos = capturedNanos;
+    }
+
+    public boolean matches(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    public void release() {
+        this.pool.release(this);
+    }
+
+    void free() {
+        this.lumaMat.release();
+        this.yuvMat.release();
+        this.rgbMat.release();
+        this.rotatedMat.release();
+        this.rotatedLumaMat.release();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.reader.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Pool of frame buffers keyed by resolution.
+ * The camera delivers one or two resolutions at most, so buckets are looked up linearly
+ * to keep acquire/release free of allocations.
+ **/
+public class FrameBufferPool {
+    private static final int MAX_IDLE_BUFFERS_PER_RESOLUTION = 4;
+    private final List<Bucket> buckets = new ArrayList<>();
+    private int allocatedBuffersCount = 0;
+
+    public synchronized FrameBuffer acquire(int width, int height) {
+        Bucket bucket = this.getBucket(width, height);
+        FrameBuffer buffer = bucket.idleBuffers.pollFirst();
+        if (buffer != null) {
+            return buffer;
+        }
+
+        this.allocatedBuffersCount++;
+        return new FrameBuffer(this, width, height);
+    }
+
+    synchronized void release(FrameBuffer buffer) {
+        Bucket bucket = this.getBucket(buffer.getWidth(), buffer.getHeight());
+        if (bucket.idleBuffers.size() >= MAX_IDLE_BUFFERS_PER_RESOLUTION) {
+            buffer.free();
+            this.allocatedBuffersCount--;
+            return;
+        }
+
+        bucket.idleBuffers.addFirst(buffer);
+    }
+
+    public synchronized int getAllocatedBuffersCount() {
+        return this.allocatedBuffersCount;
+    }
+
+    public synchronized void clear() {
+        for (Bucket bucket : this.buckets) {
+            for (FrameBuffer buffer : bucket.idleBuffers) {
+                buffer.free();
+                this.allocatedBuffersCount--;
+            }
+            bucket.idleBuffers.clear();
+        }
+        this.buckets.clear();
+    }
+
+    private Bucket getBucket(int width, int height) {
+        for (int i = 0; i < this.buckets.size(); i++) {
+            Bucket bucket = this.buckets.get(i);
+            if (bucket.width == width && bucket.height == height) {
+                return bucket;
+            }
+        }
+
+        Bucket bucket = new Bucket(width, height);
+        this.buckets.add(bucket);
+        return bucket;
+    }
+
+    private static class Bucket {
+        private final int width;
+        private final int height;
+        private final ArrayDeque<FrameBuffer> idleBuffers = new ArrayDeque<>(MAX_IDLE_BUFFERS_PER_RESOLUTION);
+
+        private Bucket(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
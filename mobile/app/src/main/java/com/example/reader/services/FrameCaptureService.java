@@ -0,0 +1,69 @@
+package com.example.reader.services;
+
+import android.media.Image;
+
+import java.nio.ByteBuffer;
+
+/** Copies camera images into pooled frame buffers so the Image can be closed immediately. **/
+public class FrameCaptureService {
+    private final FrameBufferPool frameBufferPool;
+    private final FrameProcessingService.PipelineMode pipelineMode;
+    // Chroma layout of the current stream configuration, looked for again when the size or strides change
+    private YuvPlaneCopier.ChromaLayout chromaLayout = YuvPlaneCopier.ChromaLayout.UNKNOWN;
+    private int chromaLayoutWidth;
+    private int chromaLayoutHeight;
+    private int chromaLayoutRowStride;
+    private int chromaLayoutPixelStride;
+
+    public FrameCaptureService(FrameBufferPool frameBufferPool, FrameProcessingService.PipelineMode pipelineMode) {
+        this.frameBufferPool = frameBufferPool;
+        this.pipelineMode = pipelineMode;
+    }
+
+    public FrameBuffer captureFrame(Image image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        FrameBuffer frameBuffer = this.frameBufferPool.acquire(width, height);
+        frameBuffer.setTimestampNanos(image.getTimestamp());
+
+        Image.Plane yPlane = image.getPlanes()[0];
+        ByteBuffer yBuffer = yPlane.getBuffer();
+        int yRowStride = yPlane.getRowStride();
+
+        // The luma pipeline only needs the Y plane
+        if (this.pipelineMode == FrameProcessingService.PipelineMode.LUMA) {
+            YuvPlaneCopier.copyLumaPlane(yBuffer, yRowStride, width, height, frameBuffer.getLumaBuffer());
+            return frameBuffer;
+        }
+
+        Image.Plane uPlane = image.getPlanes()[1];
+        Image.Plane vPlane = image.getPlanes()[2];
+        ByteBuffer uBuffer = uPlane.getBuffer();
+        ByteBuffer vBuffer = vPlane.getBuffer();
+        int uvRowStride = uPlane.getRowStride();
+        int uvPixelStride = uPlane.getPixelStride();
+        byte[] yuvData = frameBuffer.getYuvData();
+        int pos = YuvPlaneCopier.copyLumaPlane(yBuffer, yRowStride, width, height, yuvData, 0);
+        YuvPlaneCopier.ChromaLayout chromaLayout = this.getChromaLayout(uBuffer, vBuffer, uvRowStride, uvPixelStride, width, height);
+        YuvPlaneCopier.copyChromaPlanes(uBuffer, vBuffer, uvRowStride, uvPixelStride, chromaLayout,
+                width, height, yuvData, pos, frameBuffer.getURow(), frameBuffer.getVRow());
+
+        return frameBuffer;
+    }
+
+    private YuvPlaneCopier.ChromaLayout getChromaLayout(ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                                                        int width, int height) {
+        if (width != this.chromaLayoutWidth || height != this.chromaLayoutHeight
+                || uvRowStride != this.chromaLayoutRowStride || uvPixelStride != this.chromaLayoutPixelStride) {
+            this.chromaLayout = YuvPlaneCopier.ChromaLayout.UNKNOWN;
+            this.chromaLayoutWidth = width;
+            this.chromaLayoutHeight = height;
+            this.chromaLayoutRowStride = uvRowStride;
+            this.chromaLayoutPixelStride = uvPixelStride;
+        }
+        if (this.chromaLayout == YuvPlaneCopier.ChromaLayout.UNKNOWN) {
+            this.chromaLayout = YuvPlaneCopier.detectChromaLayout(uBuffer, vBuffer, uvRowStride, uvPixelStride, width, height);
+        }
+        return this.chromaLayout;
+    }
+}
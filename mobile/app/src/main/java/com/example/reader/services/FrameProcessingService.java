@@ -1,10 +1,7 @@
 package com.example.reader.services;
 
-import android.media.Image;
-
 import org.opencv.android.CameraBridgeViewBase;
 import org.opencv.core.Core;
-import org.opencv.core.CvType;
 import org.opencv.core.KeyPoint;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfKeyPoint;
@@ -13,67 +10,119 @@ import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 
-import java.nio.ByteBuffer;
-
 public class FrameProcessingService {
-    private final PupilsDetectionService pupilsDetectionService;
+    /** RGB converts and rotates the whole colour frame, LUMA detects on the Y plane only. **/
+    public enum PipelineMode {
+        RGB,
+        LUMA
+    }
+
+    // The tracker keeps only the reader's face, so it always comes first
+    private static final int READER_FACE_INDEX = 0;
     private final CommunicationService communicationService;
+    private final PipelineMode pipelineMode;
+    private final FaceTracker faceTracker;
+    private final PrimaryReaderLock primaryReaderLock;
+    private final EyeLocator eyeLocator;
+    private final PupilsDetectionExecutor pupilsDetectionExecutor;
+    private final GazeSample gazeSample = new GazeSample();
+    // Every Mat made while a frame is processed, released when the frame ends
+    private final MatArena frameArena = new MatArena();
+    private final PipelineMetrics pipelineMetrics = PipelineMetrics.getInstance();
+    private boolean isLastFramePupilPresent = false;
+    private float lastFrameGazeDelta = 0;
     public FrameProcessingService(PupilsDetectionService pupilsDetectionService, CommunicationService communicationService) {
-        this.pupilsDetectionService = pupilsDetectionService;
+        this(pupilsDetectionService, communicationService, new EyeTrackingConfig());
+    }
+
+    public FrameProcessingService(PupilsDetectionService pupilsDetectionService, CommunicationService communicationService, EyeTrackingConfig config) {
         this.communicationService = communicationService;
+        this.pipelineMode = config.getPipelineMode();
+        this.faceTracker = new FaceTracker(pupilsDetectionService, config);
+        this.primaryReaderLock = new PrimaryReaderLock(config.getReaderLockTimeoutMillis());
+        this.eyeLocator = createEyeLocator(config.getEyeLocatorStrategy(), pupilsDetectionService, this.faceTracker);
+        this.pupilsDetectionExecutor = new PupilsDetectionExecutor(pupilsDetectionService, config.isParallelPupilsDetectionEnabled(),
+                config.getPupilLocatorStrategy());
     }
-    public Mat convertYUVtoMat(Image image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
 
-        Image.Plane yPlane = image.getPlanes()[0];
-        Image.Plane uPlane = image.getPlanes()[1];
-        Image.Plane vPlane = image.getPlanes()[2];
+    public PipelineMode getPipelineMode() {
+        return this.pipelineMode;
+    }
 
-        ByteBuffer yBuffer = yPlane.getBuffer();
-        ByteBuffer uBuffer = uPlane.getBuffer();
-        ByteBuffer vBuffer = vPlane.getBuffer();
+    public FaceTracker getFaceTracker() {
+        return this.faceTracker;
+    }
 
-        // Get row strides and pixel strides
-        int yRowStride = yPlane.getRowStride();
-        int uvRowStride = uPlane.getRowStride();
-        int uvPixelStride = uPlane.getPixelStride();
+    public PrimaryReaderLock getPrimaryReaderLock() {
+        return this.primaryReaderLock;
+    }
 
-        // Create a Mat for YUV
-        Mat yuvMat = new Mat(height + height / 2, width, CvType.CV_8UC1);
-        byte[] yuvData = new byte[yuvMat.rows() * yuvMat.cols()];
-        int pos = 0;
+    public EyeLocator getEyeLocator() {
+        return this.eyeLocator;
+    }
 
-        // Copy Y plane
-        for (int row = 0; row < height; row++) {
-            yBuffer.position(row * yRowStride);
-            yBuffer.get(yuvData, pos, width);
-            pos += width;
-        }
+    public PupilsDetectionExecutor getPupilsDetectionExecutor() {
+        return this.pupilsDetectionExecutor;
+    }
 
-        // Copy UV planes with proper handling of pixel stride
-        for (int row = 0; row < height / 2; row++) {
-            uBuffer.position(row * uvRowStride);
-            vBuffer.position(row * uvRowStride);
+    public boolean isLastFramePupilPresent() {
+        return this.isLastFramePupilPresent;
+    }
 
-            for (int col = 0; col < width / 2; col++) {
-                yuvData[pos++] = vBuffer.get(); // V
-                yuvData[pos++] = uBuffer.get(); // U
-            }
+    /** Eye line minus pupil ordinate of the first pupil found on the last frame **/
+    public float getLastFrameGazeDelta() {
+        return this.lastFrameGazeDelta;
+    }
+
+    /** Sample published for the last processed frame, reused on the next one **/
+    public GazeSample getLastFrameGazeSample() {
+        return this.gazeSample;
+    }
+
+    public void shutdown() {
+        this.pupilsDetectionExecutor.shutdown();
+    }
+
+    /** Converts a captured frame buffer into the frame the detectors run on. **/
+    public CvCameraFrameWrapper wrapFrame(FrameBuffer frameBuffer) {
+        long startNanos = PipelineMetrics.ENABLED ? System.nanoTime() : 0;
+        CvCameraFrameWrapper frameWrapper = this.pipelineMode == PipelineMode.LUMA
+                ? new CvCameraFrameWrapper(null, this.convertLumaToMat(frameBuffer))
+                : new CvCameraFrameWrapper(this.convertYUVtoMat(frameBuffer));
+        if (PipelineMetrics.ENABLED) {
+            this.pipelineMetrics.record(PipelineMetrics.Stage.CONVERSION, startNanos);
         }
+        return frameWrapper;
+    }
+
+    public Mat convertLumaToMat(FrameBuffer frameBuffer) {
+        // The Y plane already is a grayscale image, so it is used without colour conversion
+        Mat lumaMat = frameBuffer.getLumaMat();
 
-        // Put into Mat
-        yuvMat.put(0, 0, yuvData);
+        // Haar cascades expect upright faces, so the single luma channel still gets rotated
+        Mat rotatedLumaMat = frameBuffer.getRotatedLumaMat();
+        // For my phone
+        Core.rotate(lumaMat, rotatedLumaMat, Core.ROTATE_90_COUNTERCLOCKWISE);
+        // For usb web cam
+//        Core.rotate(lumaMat, rotatedLumaMat, Core.ROTATE_90_CLOCKWISE);
+
+        return rotatedLumaMat;
+    }
 
-        // Convert to RGBA
-        Mat rgbMat = new Mat();
+    public Mat convertYUVtoMat(FrameBuffer frameBuffer) {
+        // Put the planes staged at capture into Mat
+        Mat yuvMat = frameBuffer.getYuvMat();
+        yuvMat.put(0, 0, frameBuffer.getYuvData());
+
+        // Convert to RGB
+        Mat rgbMat = frameBuffer.getRgbMat();
         // For my phone
         Imgproc.cvtColor(yuvMat, rgbMat, Imgproc.COLOR_YUV2RGB_I420);
         // For usb web cam
 //        Imgproc.cvtColor(yuvMat, rgbMat, Imgproc.COLOR_YUV2RGBA_NV21);
 
         // Rotate to correct orientation
-        Mat rotatedMat = new Mat();
+        Mat rotatedMat = frameBuffer.getRotatedMat();
         // For my phone
         Core.rotate(rgbMat, rotatedMat, Core.ROTATE_90_COUNTERCLOCKWISE);
         // For usb web cam
@@ -83,42 +132,142 @@ public class FrameProcessingService {
     }
 
     public void processFrame(CameraBridgeViewBase.CvCameraViewFrame inputFrame) {
-        Mat frame = new Mat();
-        inputFrame.rgba().copyTo(frame);
+        this.processFrame(inputFrame, System.nanoTime());
+    }
 
-        Rect[] faces = this.pupilsDetectionService.detectFaces(frame);
+    /** Detects the gaze on the frame and publishes a single sample and presence update for it **/
+    public void processFrame(CameraBridgeViewBase.CvCameraViewFrame inputFrame, long timestampNanos) {
+        long frameStartNanos = PipelineMetrics.ENABLED ? System.nanoTime() : 0;
+        try {
+            this.detectGaze(inputFrame, timestampNanos, frameStartNanos);
+        } finally {
+            this.frameArena.releaseAll();
+        }
 
-        if (faces.length == 0) {
-            this.communicationService.sendPupilPresenceData(false);
+        this.recordGaze(this.gazeSample);
+        long dispatchStartNanos = PipelineMetrics.ENABLED ? System.nanoTime() : 0;
+        this.communicationService.sendGazeSample(this.gazeSample);
+        this.communicationService.sendPupilPresenceData(this.isLastFramePupilPresent);
+        if (PipelineMetrics.ENABLED) {
+            this.pipelineMetrics.record(PipelineMetrics.Stage.DISPATCH, dispatchStartNanos);
+            this.pipelineMetrics.record(PipelineMetrics.Stage.FRAME, frameStartNanos);
+            this.pipelineMetrics.onFrameProcessed(System.nanoTime());
+        }
+    }
+
+    private void detectGaze(CameraBridgeViewBase.CvCameraViewFrame inputFrame, long timestampNanos, long frameStartNanos) {
+        // The luma frame is shared with the camera wrapper, so it is neither copied nor annotated
+        boolean shouldAnnotate = this.pipelineMode == PipelineMode.RGB;
+        Mat frame;
+        if (shouldAnnotate) {
+            frame = this.frameArena.track(new Mat());
+            inputFrame.rgba().copyTo(frame);
+        } else {
+            frame = inputFrame.gray();
+        }
+
+        this.gazeSample.reset(timestampNanos);
+        Rect[] faces = this.faceTracker.detectFaces(frame);
+        if (PipelineMetrics.ENABLED) {
+            this.pipelineMetrics.record(PipelineMetrics.Stage.FACE_DETECTION, frameStartNanos);
+        }
+
+        // Only the locked reader is processed, other faces in view neither cost detection nor mix into the gaze
+        int readerIndex = this.primaryReaderLock.selectPrimaryFace(faces, timestampNanos);
+        if (readerIndex < 0) {
+            return;
+        }
+        this.faceTracker.retainFace(readerIndex);
+        if (this.primaryReaderLock.isNewReader()) {
+            this.eyeLocator.forgetFace(READER_FACE_INDEX);
         }
 
-        for (Rect face : faces) {
+        Rect face = faces[readerIndex];
+        if (shouldAnnotate) {
             Imgproc.rectangle(frame, face.tl(), face.br(), new Scalar(255, 0, 0), 2);
+        }
 
-            Mat faceFrame = frame.submat(face);
+        Mat faceFrame = this.frameArena.submat(frame, face);
 
-            // Detect eyes within the face
-            Rect[] eyes = this.pupilsDetectionService.detectEyes(faceFrame);
-            for (Rect eye : eyes) {
+        // Locate eyes within the face, around the previously found eyes when they are known
+        Rect[] eyes = this.locateEyes(READER_FACE_INDEX, face, faceFrame);
+        Mat[] eyesWithoutBrows = new Mat[eyes.length];
+        for (int eyeIndex = 0; eyeIndex < eyes.length; eyeIndex++) {
+            Rect eye = eyes[eyeIndex];
+            if (shouldAnnotate) {
                 Imgproc.rectangle(faceFrame, eye.tl(), eye.br(), new Scalar(0, 255, 0), 2);
+            }
 
-                Mat eyeFrame = faceFrame.submat(eye);
+            // Cut eyebrows before pupils are processed
+            Mat eyeFrame = this.frameArena.submat(faceFrame, eye);
+            eyesWithoutBrows[eyeIndex] = this.frameArena.track(cutEyebrows(eyeFrame));
+        }
 
-                // Cut eyebrows and process pupils
-                Mat eyeWithoutBrows = this.cutEyebrows(eyeFrame);
-                MatOfKeyPoint pupils = this.pupilsDetectionService.detectPupils(eyeWithoutBrows, eye);
-                this.communicationService.sendPupilData(pupils, eye, face);
-                this.communicationService.sendPupilPresenceData(pupils.toArray().length > 0);
+        // Both eyes are processed together
+        long pupilsStartNanos = PipelineMetrics.ENABLED ? System.nanoTime() : 0;
+        MatOfKeyPoint[] pupils = this.pupilsDetectionExecutor.detectPupils(eyesWithoutBrows, eyes);
+        for (MatOfKeyPoint eyePupils : pupils) {
+            this.frameArena.track(eyePupils);
+        }
+        if (PipelineMetrics.ENABLED) {
+            this.pipelineMetrics.record(PipelineMetrics.Stage.PUPILS_DETECTION, pupilsStartNanos);
+        }
+        this.eyeLocator.reportPupilsFound(READER_FACE_INDEX, eyes.length, countFound(pupils));
+        if (pupils.length > 0) {
+            this.gazeSample.setFace(face.x, face.y, face.width, face.height);
+        }
+        for (int eyeIndex = 0; eyeIndex < pupils.length; eyeIndex++) {
+            this.communicationService.addPupilData(this.gazeSample, pupils[eyeIndex], eyes[eyeIndex], face);
 
-                for (KeyPoint pupil : pupils.toArray()) {
+            if (shouldAnnotate) {
+                for (KeyPoint pupil : pupils[eyeIndex].toArray()) {
                     Point pupilCenter = new Point(pupil.pt.x, pupil.pt.y);
-                    Imgproc.circle(eyeWithoutBrows, pupilCenter, 10, new Scalar(0, 255, 0), 2);
+                    Imgproc.circle(eyesWithoutBrows[eyeIndex], pupilCenter, 10, new Scalar(0, 255, 0), 2);
                 }
             }
         }
     }
 
-    private Mat cutEyebrows(Mat eyeFrame) {
+    private void recordGaze(GazeSample sample) {
+        this.isLastFramePupilPresent = false;
+        for (int eyeIndex = 0; eyeIndex < sample.getEyesCount(); eyeIndex++) {
+            if (sample.isPupilFound(eyeIndex)) {
+                this.isLastFramePupilPresent = true;
+                this.lastFrameGazeDelta = sample.getEyeCenterY(eyeIndex) - sample.getPupilY(eyeIndex);
+                return;
+            }
+        }
+    }
+
+    private Rect[] locateEyes(int faceIndex, Rect face, Mat faceFrame) {
+        long startNanos = PipelineMetrics.ENABLED ? System.nanoTime() : 0;
+        Rect[] eyes = this.eyeLocator.locateEyes(faceIndex, face, faceFrame);
+        if (PipelineMetrics.ENABLED) {
+            this.pipelineMetrics.record(PipelineMetrics.Stage.EYES_DETECTION, startNanos);
+        }
+        return eyes;
+    }
+
+    private static int countFound(MatOfKeyPoint[] pupils) {
+        int foundCount = 0;
+        for (MatOfKeyPoint eyePupils : pupils) {
+            if (!eyePupils.empty()) {
+                foundCount++;
+            }
+        }
+        return foundCount;
+    }
+
+    private static EyeLocator createEyeLocator(EyeLocator.Strategy strategy, PupilsDetectionService pupilsDetectionService, FaceTracker faceTracker) {
+        CascadeEyeLocator cascadeEyeLocator = new CascadeEyeLocator(pupilsDetectionService, faceTracker);
+        if (strategy == EyeLocator.Strategy.GEOMETRIC) {
+            return new GeometricEyeLocator(cascadeEyeLocator);
+        }
+        return cascadeEyeLocator;
+    }
+
+    /** Upper quarter of an eye region holds the eyebrow, which the pupil threshold would pick up **/
+    public static Mat cutEyebrows(Mat eyeFrame) {
         int height = eyeFrame.rows();
         int eyebrowHeight = height / 4;
         return eyeFrame.submat(eyebrowHeight, height, 0, eyeFrame.cols());
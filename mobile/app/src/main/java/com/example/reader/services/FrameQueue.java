@@ -0,0 +1,107 @@
+package com.example.reader.services;
+
+import java.util.ArrayDeque;
+
+/** Bounded hand-off of captured frames from the camera thread to the processing worker.
+ * Frames dropped by the policy are returned to their pool straight away.
+ **/
+public class FrameQueue {
+    public enum DropPolicy {
+        // Only the newest frame is kept, anything still waiting is dropped
+        LATEST_WINS,
+        // The oldest waiting frame is dropped when the queue is full
+        DROP_OLDEST,
+        // The capture thread waits until the worker frees a slot
+        BLOCK
+    }
+
+    private final ArrayDeque<FrameBuffer> frames;
+    private final int capacity;
+    private final DropPolicy dropPolicy;
+    private boolean isClosed = false;
+    private long capturedFramesCount = 0;
+    private long processedFramesCount = 0;
+    private long droppedFramesCount = 0;
+
+    public FrameQueue(int capacity, DropPolicy dropPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Frame queue capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.dropPolicy = dropPolicy;
+        this.frames = new ArrayDeque<>(capacity);
+    }
+
+    public synchronized void offer(FrameBuffer frameBuffer) throws InterruptedException {
+        this.capturedFramesCount++;
+        if (this.isClosed) {
+            this.drop(frameBuffer);
+            return;
+        }
+
+        switch (this.dropPolicy) {
+            case LATEST_WINS:
+                while (!this.frames.isEmpty()) {
+                    this.drop(this.frames.pollFirst());
+                }
+                break;
+            case DROP_OLDEST:
+                while (this.frames.size() >= this.capacity) {
+                    this.drop(this.frames.pollFirst());
+                }
+                break;
+            case BLOCK:
+                while (this.frames.size() >= this.capacity && !this.isClosed) {
+                    wait();
+                }
+                if (this.isClosed) {
+                    this.drop(frameBuffer);
+                    return;
+                }
+                break;
+        }
+
+        this.frames.addLast(frameBuffer);
+        notifyAll();
+    }
+
+    /** Waits for the next frame, returns null once the queue is closed. **/
+    public synchronized FrameBuffer take() throws InterruptedException {
+        while (this.frames.isEmpty() && !this.isClosed) {
+            wait();
+        }
+
+        FrameBuffer frameBuffer = this.frames.pollFirst();
+        notifyAll();
+        return frameBuffer;
+    }
+
+    public synchronized void onFrameProcessed() {
+        this.processedFramesCount++;
+    }
+
+    public synchronized void close() {
+        this.isClosed = true;
+        while (!this.frames.isEmpty()) {
+            this.drop(this.frames.pollFirst());
+        }
+        notifyAll();
+    }
+
+    public synchronized long getCapturedFramesCount() {
+        return capturedFramesCount;
+    }
+
+    public synchronized long getProcessedFramesCount() {
+        return processedFramesCount;
+    }
+
+    public synchronized long getDroppedFramesCount() {
+        return droppedFramesCount;
+    }
+
+    private void drop(FrameBuffer frameBuffer) {
+        this.droppedFramesCount++;
+        frameBuffer.release();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.reader.services;
+
+/** Chooses the camera and processing frame rate from recent gaze activity.
+ * Runs at full rate while the gaze is triggering scrolls, slows down while it is steady
+ * and falls back to a low-power probe rate when no pupil has been seen for a while.
+ **/
+public class FrameRateGovernor {
+    public enum Mode {
+        ACTIVE(30),
+        STEADY(15),
+        PROBE(5);
+
+        private final int targetFps;
+
+        Mode(int targetFps) {
+            this.targetFps = targetFps;
+        }
+
+        public int getTargetFps() {
+            return targetFps;
+        }
+    }
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLISECOND = 1_000_000L;
+    private final long steadyAfterNanos;
+    private final long probeAfterNanos;
+    // Replaced from the camera thread once the reader's profile is loaded
+    private volatile CalibrationProfile calibrationProfile = CalibrationProfile.DEFAULT;
+    private Mode mode = Mode.ACTIVE;
+    private boolean isStarted = false;
+    private long lastScrollNanos;
+    private long lastPupilPresenceNanos;
+    private long lastProcessedFrameNanos;
+    private long fpsWindowStartNanos;
+    private int fpsWindowFramesCount = 0;
+    // Written by the camera thread, read by whichever thread shows or logs it
+    private volatile double measuredFps = 0;
+    private long skippedFramesCount = 0;
+    private long modeChangesCount = 0;
+
+    public FrameRateGovernor(EyeTrackingConfig config) {
+        this.steadyAfterNanos = config.getSteadyGazeAfterMillis() * NANOS_PER_MILLISECOND;
+        this.probeAfterNanos = config.getProbeAfterMillis() * NANOS_PER_MILLISECOND;
+    }
+
+    /** Throttles processing to the rate of the current mode, the camera may still deliver faster. **/
+    public boolean shouldProcessFrame(long timestampNanos) {
+        if (!this.isStarted) {
+            this.start(timestampNanos);
+            return true;
+        }
+
+        // A small tolerance keeps frames arriving slightly early from being skipped
+        long minFrameIntervalNanos = NANOS_PER_SECOND / this.mode.getTargetFps() * 9 / 10;
+        if (timestampNanos - this.lastProcessedFrameNanos < minFrameIntervalNanos) {
+            this.skippedFramesCount++;
+            return false;
+        }
+
+        this.lastProcessedFrameNanos = timestampNanos;
+        this.fpsWindowFramesCount++;
+        long fpsWindowNanos = timestampNanos - this.fpsWindowStartNanos;
+        if (fpsWindowNanos >= NANOS_PER_SECOND) {
+            this.measuredFps = this.fpsWindowFramesCount * (double) NANOS_PER_SECOND / fpsWindowNanos;
+            this.fpsWindowFramesCount = 0;
+            this.fpsWindowStartNanos = timestampNanos;
+        }
+        return true;
+    }
+
+    /** Feeds the outcome of a processed frame, returns true when the mode has changed. **/
+    public boolean onFrameProcessed(long timestampNanos, boolean isPupilPresent, float gazeDelta) {
+        if (!this.isStarted) {
+            this.start(timestampNanos);
+        }
+
+        if (isPupilPresent) {
+            this.lastPupilPresenceNanos = timestampNanos;
+            if (!this.calibrationProfile.isInDeadZone(gazeDelta)) {
+                this.lastScrollNanos = timestampNanos;
+            }
+        }
+
+        Mode nextMode;
+        if (timestampNanos - this.lastPupilPresenceNanos >= this.probeAfterNanos) {
+            nextMode = Mode.PROBE;
+        } else if (timestampNanos - this.lastScrollNanos >= this.steadyAfterNanos) {
+            nextMode = Mode.STEADY;
+        } else {
+            nextMode = Mode.ACTIVE;
+        }
+
+        if (nextMode == this.mode) {
+            return false;
+        }
+
+        this.mode = nextMode;
+        this.modeChangesCount++;
+        return true;
+    }
+
+    public void setCalibrationProfile(CalibrationProfile calibrationProfile) {
+        this.calibrationProfile = calibrationProfile;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public double getMeasuredFps() {
+        return measuredFps;
+    }
+
+    public long getSkippedFramesCount() {
+        return skippedFramesCount;
+    }
+
+    public long getModeChangesCount() {
+        return modeChangesCount;
+    }
+
+    private void start(long timestampNanos) {
+        this.isStarted = true;
+        this.lastScrollNanos = timestampNanos;
+        this.lastPupilPresenceNanos = timestampNanos;
+        this.lastProcessedFrameNanos = timestampNanos;
+        this.fpsWindowStartNanos = timestampNanos;
+    }
+}
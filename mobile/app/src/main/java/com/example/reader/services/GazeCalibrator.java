@@ -0,0 +1,136 @@
+package com.example.reader.services;
+
+/** Measures a {@link CalibrationProfile} from gaze samples while the reader looks at the middle, the top
+ * and the bottom of the screen in turn. The neutral gaze and its jitter come from the middle, the dead zone
+ * ends halfway to the gaze measured at each edge and the sensitivity scales with the measured range.
+ **/
+public class GazeCalibrator {
+    public enum Phase {
+        NEUTRAL,
+        TOP,
+        BOTTOM,
+        FINISHED
+    }
+
+    public static final long DEFAULT_SETTLE_MILLIS = 700;
+    public static final int DEFAULT_SAMPLES_PER_PHASE = 45;
+    private static final long NANOS_PER_MILLISECOND = 1_000_000L;
+    // The dead zone ends this far between the neutral gaze and the gaze at the edge of the screen
+    private static final float DEAD_ZONE_FRACTION = 0.5f;
+    // Jittering gaze must not leave the dead zone, nor be mistaken for a look at an edge
+    private static final float JITTER_MARGIN = 3;
+    private static final float MIN_EDGE_GAZE_DELTA = 0.5f;
+    // Edge-to-edge gaze range of the default profile, where the scroll sensitivity is left unchanged
+    private static final float REFERENCE_GAZE_RANGE = 11;
+    private static final float MAX_SENSITIVITY_SCALE = 4;
+    private final long settleNanos;
+    private final int samplesPerPhase;
+    private final int[] samplesCounts = new int[Phase.FINISHED.ordinal()];
+    private final double[] gazeDeltaSums = new double[Phase.FINISHED.ordinal()];
+    private final double[] gazeDeltaSquaresSums = new double[Phase.FINISHED.ordinal()];
+    private Phase phase = Phase.NEUTRAL;
+    private long phaseStartNanos = -1;
+    public GazeCalibrator() {
+        this(DEFAULT_SETTLE_MILLIS, DEFAULT_SAMPLES_PER_PHASE);
+    }
+
+    public GazeCalibrator(long settleMillis, int samplesPerPhase) {
+        if (settleMillis < 0) {
+            throw new IllegalArgumentException("settleMillis can not be negative");
+        }
+        if (samplesPerPhase < 2) {
+            throw new IllegalArgumentException("samplesPerPhase must be at least 2");
+        }
+
+        this.settleNanos = settleMillis * NANOS_PER_MILLISECOND;
+        this.samplesPerPhase = samplesPerPhase;
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public float getPhaseProgress() {
+        if (this.phase == Phase.FINISHED) {
+            return 1;
+        }
+        return (float) this.samplesCounts[this.phase.ordinal()] / this.samplesPerPhase;
+    }
+
+    /** Feeds a gaze sample, returns true when it completed the current phase. **/
+    public boolean onGazeSample(GazeSample sample) {
+        if (this.phase == Phase.FINISHED) {
+            return false;
+        }
+
+        // The first samples of a phase are taken while the eyes still move to the new target
+        if (this.phaseStartNanos < 0) {
+            this.phaseStartNanos = sample.getTimestampNanos();
+        }
+        if (sample.getTimestampNanos() - this.phaseStartNanos < this.settleNanos) {
+            return false;
+        }
+
+        float gazeDelta = GazeController.measureGazeDelta(sample);
+        if (Float.isNaN(gazeDelta)) {
+            return false;
+        }
+
+        int phaseIndex = this.phase.ordinal();
+        this.samplesCounts[phaseIndex]++;
+        this.gazeDeltaSums[phaseIndex] += gazeDelta;
+        this.gazeDeltaSquaresSums[phaseIndex] += (double) gazeDelta * gazeDelta;
+        if (this.samplesCounts[phaseIndex] < this.samplesPerPhase) {
+            return false;
+        }
+
+        this.phase = Phase.values()[phaseIndex + 1];
+        this.phaseStartNanos = -1;
+        return true;
+    }
+
+    /** Returns null until all phases are finished, or when the looks at the edges can not be told apart from the jitter. **/
+    public CalibrationProfile getProfile() {
+        if (this.phase != Phase.FINISHED) {
+            return null;
+        }
+
+        float neutralGazeDelta = this.meanGazeDelta(Phase.NEUTRAL);
+        float gazeJitter = this.gazeDeltaDeviation(Phase.NEUTRAL);
+        float topGazeOffset = this.meanGazeDelta(Phase.TOP) - neutralGazeDelta;
+        float bottomGazeOffset = this.meanGazeDelta(Phase.BOTTOM) - neutralGazeDelta;
+        float minEdgeGazeOffset = Math.max(MIN_EDGE_GAZE_DELTA, JITTER_MARGIN * gazeJitter);
+        if (topGazeOffset <= minEdgeGazeOffset || bottomGazeOffset >= -minEdgeGazeOffset) {
+            return null;
+        }
+
+        float deadZoneUpperOffset = Math.max(topGazeOffset * DEAD_ZONE_FRACTION, JITTER_MARGIN * gazeJitter);
+        float deadZoneLowerOffset = Math.min(bottomGazeOffset * DEAD_ZONE_FRACTION, -JITTER_MARGIN * gazeJitter);
+        float sensitivityScale = REFERENCE_GAZE_RANGE / (topGazeOffset - bottomGazeOffset);
+        sensitivityScale = Math.max(1 / MAX_SENSITIVITY_SCALE, Math.min(MAX_SENSITIVITY_SCALE, sensitivityScale));
+
+        return new CalibrationProfile(neutralGazeDelta, neutralGazeDelta + deadZoneLowerOffset,
+                neutralGazeDelta + deadZoneUpperOffset, CalibrationProfile.DEFAULT_SCROLL_SENSITIVITY * sensitivityScale, gazeJitter);
+    }
+
+    public void reset() {
+        for (int phaseIndex = 0; phaseIndex < this.samplesCounts.length; phaseIndex++) {
+            this.samplesCounts[phaseIndex] = 0;
+            this.gazeDeltaSums[phaseIndex] = 0;
+            this.gazeDeltaSquaresSums[phaseIndex] = 0;
+        }
+        this.phase = Phase.NEUTRAL;
+        this.phaseStartNanos = -1;
+    }
+
+    private float meanGazeDelta(Phase phase) {
+        return (float) (this.gazeDeltaSums[phase.ordinal()] / this.samplesCounts[phase.ordinal()]);
+    }
+
+    private float gazeDeltaDeviation(Phase phase) {
+        int samplesCount = this.samplesCounts[phase.ordinal()];
+        double mean = this.gazeDeltaSums[phase.ordinal()] / samplesCount;
+        double variance = this.gazeDeltaSquaresSums[phase.ordinal()] / samplesCount - mean * mean;
+        return (float) Math.sqrt(Math.max(0, variance));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.reader.services;
+
+/** Turns gaze samples into scroll distances: one filtered gaze delta per frame, a dead zone around the eye line,
+ * and the scroll engine spending the distance on the display frames.
+ * Thresholds and viewport geometry are copied into primitive fields when they change, so the per-sample path
+ * neither looks them up nor allocates.
+ * Free of Android, so the replay harness drives the same scroll logic as the reading screen.
+ **/
+public class GazeController {
+    public static final float GAZE_PREDICTION_SECONDS = 0.05f;
+    // Samples drained at once after a stalled main thread must not scroll past the text being read
+    public static final float MAX_PENDING_VIEWPORT_FRACTION = 0.5f;
+    private final GazeFilter gazeFilter;
+    private final GazeScrollEngine scrollEngine;
+    private CalibrationProfile calibrationProfile;
+    private float neutralGazeDelta;
+    private float deadZoneLowerBound;
+    private float deadZoneUpperBound;
+    private float scrollDistancePerGazeDelta;
+    private int viewportHeight = 0;
+    public GazeController(GazeFilter gazeFilter, ScrollTarget scrollTarget) {
+        this.gazeFilter = gazeFilter;
+        this.scrollEngine = new GazeScrollEngine(scrollTarget);
+        this.setCalibrationProfile(CalibrationProfile.DEFAULT);
+    }
+
+    public GazeFilter getGazeFilter() {
+        return this.gazeFilter;
+    }
+
+    public GazeScrollEngine getScrollEngine() {
+        return this.scrollEngine;
+    }
+
+    public CalibrationProfile getCalibrationProfile() {
+        return this.calibrationProfile;
+    }
+
+    /** Replaces the thresholds of the scroll mapping, applied from the next gaze sample on **/
+    public void setCalibrationProfile(CalibrationProfile calibrationProfile) {
+        this.calibrationProfile = calibrationProfile;
+        this.neutralGazeDelta = calibrationProfile.getNeutralGazeDelta();
+        this.deadZoneLowerBound = calibrationProfile.getDeadZoneLowerBound();
+        this.deadZoneUpperBound = calibrationProfile.getDeadZoneUpperBound();
+        // Looking above the neutral gaze scrolls back up the document
+        this.scrollDistancePerGazeDelta = -calibrationProfile.getScrollSensitivity();
+    }
+
+    public int getViewportHeight() {
+        return this.viewportHeight;
+    }
+
+    /** Called when the reading viewport is laid out and on every configuration change **/
+    public void setViewportHeight(int viewportHeight) {
+        if (viewportHeight <= 0) {
+            throw new IllegalArgumentException("viewportHeight must be positive");
+        }
+
+        this.viewportHeight = viewportHeight;
+        this.scrollEngine.setMaxPendingDistance(viewportHeight * MAX_PENDING_VIEWPORT_FRACTION);
+    }
+
+    public void onGazeSample(GazeSample sample) {
+        if (sample.getEyesCount() == 0) {
+            return;
+        }
+
+        // Frames without a pupil keep scrolling with the last filtered gaze
+        float measuredDelta = measureGazeDelta(sample);
+        if (!Float.isNaN(measuredDelta)) {
+            this.gazeFilter.update(sample.getTimestampNanos(), measuredDelta);
+        }
+        if (!this.gazeFilter.isInitialized()) {
+            return;
+        }
+
+        // The velocity compensates the delay between the camera frame and the display frame
+        this.scroll(this.gazeFilter.getPosition() + this.gazeFilter.getVelocity() * GAZE_PREDICTION_SECONDS);
+    }
+
+    /** Called once per display frame **/
+    public boolean doFrame(long frameTimeNanos) {
+        return this.scrollEngine.doFrame(frameTimeNanos);
+    }
+
+    public void reset() {
+        this.scrollEngine.reset();
+        this.gazeFilter.reset();
+    }
+
+    /** Mean distance between the eye line and the pupils found in the sample, NaN when no pupil was found **/
+    static float measureGazeDelta(GazeSample sample) {
+        float gazeDeltasSum = 0;
+        int pupilsCount = 0;
+        for (int eyeIndex = 0; eyeIndex < sample.getEyesCount(); eyeIndex++) {
+            if (sample.isPupilFound(eyeIndex)) {
+                gazeDeltasSum += sample.getEyeCenterY(eyeIndex) - sample.getPupilY(eyeIndex);
+                pupilsCount++;
+            }
+        }
+        return pupilsCount > 0 ? gazeDeltasSum / pupilsCount : Float.NaN;
+    }
+
+    private void scroll(float deltaByEyeLine) {
+        if (deltaByEyeLine >= this.deadZoneLowerBound && deltaByEyeLine <= this.deadZoneUpperBound) {
+            return;
+        }
+
+        // Applied on the next display frames by the scroll engine, measured from the reader's neutral gaze
+        this.scrollEngine.addScrollDistance((deltaByEyeLine - this.neutralGazeDelta) * this.scrollDistancePerGazeDelta);
+    }
+}
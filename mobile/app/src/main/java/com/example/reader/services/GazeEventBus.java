@@ -0,0 +1,157 @@
+package com.example.reader.services;
+
+import java.util.concurrent.Executor;
+
+/** In-process replacement of the gaze LocalBroadcasts.
+ * Every listener is served on its own executor, samples published while a delivery is still
+ * pending are coalesced into the latest one, so publishing and delivering allocate nothing.
+ * Presence is only delivered when it actually flips.
+ * Every sample is also kept in a ring buffer, for readers that want the recent history instead of callbacks.
+ **/
+public class GazeEventBus {
+    private static final int PRESENCE_UNKNOWN = -1;
+    private static final int PRESENCE_ABSENT = 0;
+    private static final int PRESENCE_PRESENT = 1;
+    // About two seconds of samples at the full camera rate
+    private static final int SAMPLES_HISTORY_CAPACITY = 64;
+    private static GazeEventBus instance;
+    private final GazeSampleRingBuffer samplesHistory = new GazeSampleRingBuffer(SAMPLES_HISTORY_CAPACITY);
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private int presenceState = PRESENCE_UNKNOWN;
+
+    public static synchronized GazeEventBus getInstance() {
+        if (instance == null) {
+            instance = new GazeEventBus();
+        }
+        return instance;
+    }
+
+    public GazeSampleRingBuffer getSamplesHistory() {
+        return this.samplesHistory;
+    }
+
+    public void register(GazeListener listener, Executor executor) {
+        this.register(listener, executor, true);
+    }
+
+    /** Listeners reading samples from the history only register for presence changes **/
+    public synchronized void register(GazeListener listener, Executor executor, boolean isReceivingSamples) {
+        this.unregister(listener);
+
+        Subscription subscription = new Subscription(listener, executor, isReceivingSamples);
+        Subscription[] updatedSubscriptions = new Subscription[this.subscriptions.length + 1];
+        System.arraycopy(this.subscriptions, 0, updatedSubscriptions, 0, this.subscriptions.length);
+        updatedSubscriptions[this.subscriptions.length] = subscription;
+        this.subscriptions = updatedSubscriptions;
+
+        // A new listener learns the current presence straight away
+        if (this.presenceState != PRESENCE_UNKNOWN) {
+            subscription.offerPresence(this.presenceState == PRESENCE_PRESENT);
+        }
+    }
+
+    public synchronized void unregister(GazeListener listener) {
+        for (int i = 0; i < this.subscriptions.length; i++) {
+            if (this.subscriptions[i].listener != listener) {
+                continue;
+            }
+
+            this.subscriptions[i].isActive = false;
+            Subscription[] updatedSubscriptions = new Subscription[this.subscriptions.length - 1];
+            System.arraycopy(this.subscriptions, 0, updatedSubscriptions, 0, i);
+            System.arraycopy(this.subscriptions, i + 1, updatedSubscriptions, i, this.subscriptions.length - i - 1);
+            this.subscriptions = updatedSubscriptions;
+            return;
+        }
+    }
+
+    /** Must only be called from the frame processing thread, the single writer of the history **/
+    public void publishSample(GazeSample sample) {
+        this.samplesHistory.write(sample);
+
+        Subscription[] currentSubscriptions = this.subscriptions;
+        for (Subscription subscription : currentSubscriptions) {
+            if (subscription.isReceivingSamples) {
+                subscription.offerSample(sample);
+            }
+        }
+    }
+
+    public synchronized void publishPresence(boolean isPupilPresent) {
+        int presenceState = isPupilPresent ? PRESENCE_PRESENT : PRESENCE_ABSENT;
+        if (this.presenceState == presenceState) {
+            return;
+        }
+
+        this.presenceState = presenceState;
+        for (Subscription subscription : this.subscriptions) {
+            subscription.offerPresence(isPupilPresent);
+        }
+    }
+
+    private static class Subscription implements Runnable {
+        private final GazeListener listener;
+        private final Executor executor;
+        private final boolean isReceivingSamples;
+        private final GazeSample pendingSample = new GazeSample();
+        private final GazeSample deliveredSample = new GazeSample();
+        private boolean hasPendingSample = false;
+        private boolean hasPendingPresence = false;
+        private boolean pendingPresence = false;
+        private boolean isScheduled = false;
+        private volatile boolean isActive = true;
+
+        private Subscription(GazeListener listener, Executor executor, boolean isReceivingSamples) {
+            this.listener = listener;
+            this.executor = executor;
+            this.isReceivingSamples = isReceivingSamples;
+        }
+
+        private synchronized void offerSample(GazeSample sample) {
+            this.pendingSample.copyFrom(sample);
+            this.hasPendingSample = true;
+            this.schedule();
+        }
+
+        private synchronized void offerPresence(boolean isPupilPresent) {
+            this.pendingPresence = isPupilPresent;
+            this.hasPendingPresence = true;
+            this.schedule();
+        }
+
+        private void schedule() {
+            if (!this.isScheduled) {
+                this.isScheduled = true;
+                this.executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            boolean shouldDeliverSample;
+            boolean shouldDeliverPresence;
+            boolean isPupilPresent;
+            synchronized (this) {
+                this.isScheduled = false;
+                shouldDeliverSample = this.hasPendingSample;
+                shouldDeliverPresence = this.hasPendingPresence;
+                isPupilPresent = this.pendingPresence;
+                if (shouldDeliverSample) {
+                    this.deliveredSample.copyFrom(this.pendingSample);
+                }
+                this.hasPendingSample = false;
+                this.hasPendingPresence = false;
+            }
+
+            if (!this.isActive) {
+                return;
+            }
+            if (shouldDeliverPresence) {
+                this.listener.onPupilPresenceChanged(isPupilPresent);
+            }
+            if (shouldDeliverSample) {
+                this.listener.onGazeSample(this.deliveredSample);
+            }
+        }
+    }
+}
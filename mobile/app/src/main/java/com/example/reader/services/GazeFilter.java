@@ -0,0 +1,27 @@
+package com.example.reader.services;
+
+/** Smooths the per-frame gaze delta (eye line minus pupil ordinate) and estimates its velocity.
+ * Implementations keep their state in primitive fields, so updating allocates nothing.
+ **/
+public interface GazeFilter {
+    void update(long timestampNanos, float measurement);
+
+    /** Smoothed gaze delta in pixels **/
+    float getPosition();
+
+    /** Gaze delta change in pixels per second **/
+    float getVelocity();
+
+    boolean isInitialized();
+
+    void reset();
+
+    /** Filters a whole trace, e.g. a recorded session, into the given output arrays **/
+    default void filter(long[] timestampsNanos, float[] measurements, int count, float[] positions, float[] velocities) {
+        for (int i = 0; i < count; i++) {
+            this.update(timestampsNanos[i], measurements[i]);
+            positions[i] = this.getPosition();
+            velocities[i] = this.getVelocity();
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.reader.services;
+
+public interface GazeListener {
+    /** Latest gaze sample, older samples not yet delivered to this listener are skipped **/
+    void onGazeSample(GazeSample sample);
+
+    void onPupilPresenceChanged(boolean isPupilPresent);
+}
@@ -0,0 +1,105 @@
+package com.example.reader.services;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/** Records a gaze session into a compact binary file that {@link GazeRecordingReader} replays.
+ * Frames are raw Y planes in sensor orientation, written straight from their buffer through a file channel,
+ * samples are the detected face rect and per-eye ordinates of every processed frame.
+ **/
+public class GazeRecorder implements Closeable {
+    public enum RecordingMode {
+        OFF,
+        SAMPLES,
+        FRAMES
+    }
+
+    static final int MAGIC = 0x475a5243; // GZRC
+    static final short VERSION = 1;
+    static final byte FRAME_RECORD = 1;
+    static final byte SAMPLE_RECORD = 2;
+    static final int FRAME_HEADER_SIZE = 1 + 8 + 4 + 4;
+    static final int SAMPLE_RECORD_SIZE = 1 + 8 + 4 * 4 + 1 + GazeSample.MAX_EYES_COUNT * (4 + 4 + 1);
+    private final RecordingMode recordingMode;
+    private final FileChannel channel;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocateDirect(Math.max(FRAME_HEADER_SIZE, SAMPLE_RECORD_SIZE))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    private int framesCount = 0;
+    private int samplesCount = 0;
+    public GazeRecorder(File file, RecordingMode recordingMode) throws IOException {
+        if (recordingMode == RecordingMode.OFF) {
+            throw new IllegalArgumentException("Recording mode must not be OFF");
+        }
+
+        this.recordingMode = recordingMode;
+        this.channel = new FileOutputStream(file).getChannel();
+
+        this.recordBuffer.clear();
+        this.recordBuffer.putInt(MAGIC).putShort(VERSION);
+        this.write(this.recordBuffer);
+    }
+
+    public RecordingMode getRecordingMode() {
+        return this.recordingMode;
+    }
+
+    public int getFramesCount() {
+        return this.framesCount;
+    }
+
+    public int getSamplesCount() {
+        return this.samplesCount;
+    }
+
+    /** Writes the tightly packed Y plane, the position and limit of the luma buffer are left untouched **/
+    public void recordFrame(long timestampNanos, int width, int height, ByteBuffer luma) throws IOException {
+        if (this.recordingMode != RecordingMode.FRAMES) {
+            return;
+        }
+
+        this.recordBuffer.clear();
+        this.recordBuffer.put(FRAME_RECORD).putLong(timestampNanos).putInt(width).putInt(height);
+        this.write(this.recordBuffer);
+
+        ByteBuffer plane = luma.duplicate();
+        plane.position(0);
+        plane.limit(width * height);
+        while (plane.hasRemaining()) {
+            this.channel.write(plane);
+        }
+        this.framesCount++;
+    }
+
+    public void recordSample(GazeSample sample) throws IOException {
+        this.recordBuffer.clear();
+        this.recordBuffer.put(SAMPLE_RECORD).putLong(sample.getTimestampNanos())
+                .putInt(sample.getFaceX()).putInt(sample.getFaceY())
+                .putInt(sample.getFaceWidth()).putInt(sample.getFaceHeight())
+                .put((byte) sample.getEyesCount());
+        for (int eyeIndex = 0; eyeIndex < GazeSample.MAX_EYES_COUNT; eyeIndex++) {
+            boolean isEyeRecorded = eyeIndex < sample.getEyesCount();
+            this.recordBuffer.putFloat(isEyeRecorded ? sample.getEyeCenterY(eyeIndex) : 0)
+                    .putFloat(isEyeRecorded ? sample.getPupilY(eyeIndex) : 0)
+                    .put((byte) (isEyeRecorded && sample.isPupilFound(eyeIndex) ? 1 : 0));
+        }
+        this.write(this.recordBuffer);
+        this.samplesCount++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.reader.services;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/** Reads back a {@link GazeRecorder} file record by record, reusing one luma buffer and one sample **/
+public class GazeRecordingReader implements Closeable {
+    public enum RecordType {
+        FRAME,
+        SAMPLE,
+        END
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocateDirect(
+            Math.max(GazeRecorder.FRAME_HEADER_SIZE, GazeRecorder.SAMPLE_RECORD_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+    private final GazeSample sample = new GazeSample();
+    private ByteBuffer luma = ByteBuffer.allocateDirect(0);
+    private long timestampNanos;
+    private int frameWidth;
+    private int frameHeight;
+    public GazeRecordingReader(File file) throws IOException {
+        this.channel = new FileInputStream(file).getChannel();
+
+        this.read(4 + 2);
+        if (this.recordBuffer.getInt() != GazeRecorder.MAGIC) {
+            throw new IOException("Not a gaze recording: " + file);
+        }
+        short version = this.recordBuffer.getShort();
+        if (version != GazeRecorder.VERSION) {
+            throw new IOException("Unsupported gaze recording version " + version);
+        }
+    }
+
+    /** Moves to the next record, its content is valid until the following call **/
+    public RecordType next() throws IOException {
+        this.recordBuffer.clear();
+        this.recordBuffer.limit(1);
+        if (this.channel.read(this.recordBuffer) <= 0) {
+            return RecordType.END;
+        }
+
+        byte recordTag = this.recordBuffer.get(0);
+        if (recordTag == GazeRecorder.FRAME_RECORD) {
+            this.readFrame();
+            return RecordType.FRAME;
+        }
+        if (recordTag == GazeRecorder.SAMPLE_RECORD) {
+            this.readSample();
+            return RecordType.SAMPLE;
+        }
+
+        throw new IOException("Unknown gaze record " + recordTag);
+    }
+
+    public long getTimestampNanos() {
+        return this.timestampNanos;
+    }
+
+    public int getFrameWidth() {
+        return this.frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return this.frameHeight;
+    }
+
+    /** Tightly packed Y plane of the current frame record **/
+    public ByteBuffer getLuma() {
+        return this.luma;
+    }
+
+    public GazeSample getSample() {
+        return this.sample;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private void readFrame() throws IOException {
+        this.read(GazeRecorder.FRAME_HEADER_SIZE - 1);
+        this.timestampNanos = this.recordBuffer.getLong();
+        this.frameWidth = this.recordBuffer.getInt();
+        this.frameHeight = this.recordBuffer.getInt();
+
+        int planeSize = this.frameWidth * this.frameHeight;
+        if (this.luma.capacity() < planeSize) {
+            this.luma = ByteBuffer.allocateDirect(planeSize);
+        }
+        this.luma.clear();
+        this.luma.limit(planeSize);
+        this.readFully(this.luma);
+        this.luma.flip();
+    }
+
+    private void readSample() throws IOException {
+        this.read(GazeRecorder.SAMPLE_RECORD_SIZE - 1);
+        this.timestampNanos = this.recordBuffer.getLong();
+        this.sample.reset(this.timestampNanos);
+        this.sample.setFace(this.recordBuffer.getInt(), this.recordBuffer.getInt(),
+                this.recordBuffer.getInt(), this.recordBuffer.getInt());
+
+        int eyesCount = this.recordBuffer.get();
+        for (int eyeIndex = 0; eyeIndex < GazeSample.MAX_EYES_COUNT; eyeIndex++) {
+            float eyeCenterY = this.recordBuffer.getFloat();
+            float pupilY = this.recordBuffer.getFloat();
+            boolean isPupilFound = this.recordBuffer.get() != 0;
+            if (eyeIndex < eyesCount) {
+                this.sample.addEye(eyeCenterY, pupilY, isPupilFound);
+            }
+        }
+    }
+
+    private void read(int size) throws IOException {
+        this.recordBuffer.clear();
+        this.recordBuffer.limit(size);
+        this.readFully(this.recordBuffer);
+        this.recordBuffer.flip();
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer) < 0) {
+                throw new EOFException("Truncated gaze recording");
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.reader.services;
+
+/** Gaze of one camera frame with both eyes coalesced. Ordinates are in rotated camera frame pixels.
+ * Instances are mutable and reused, listeners must copy what they keep beyond the callback.
+ **/
+public class GazeSample {
+    public static final int MAX_EYES_COUNT = 2;
+    private long timestampNanos;
+    private int faceX;
+    private int faceY;
+    private int faceWidth;
+    private int faceHeight;
+    private int eyesCount;
+    private final float[] eyeCenterY = new float[MAX_EYES_COUNT];
+    private final float[] pupilY = new float[MAX_EYES_COUNT];
+    private final boolean[] isPupilFound = new boolean[MAX_EYES_COUNT];
+
+    public void reset(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+        this.faceX = 0;
+        this.faceY = 0;
+        this.faceWidth = 0;
+        this.faceHeight = 0;
+        this.eyesCount = 0;
+    }
+
+    public void setFace(int x, int y, int width, int height) {
+        this.faceX = x;
+        this.faceY = y;
+        this.faceWidth = width;
+        this.faceHeight = height;
+    }
+
+    public void addEye(float eyeCenterY, float pupilY, boolean isPupilFound) {
+        if (this.eyesCount == MAX_EYES_COUNT) {
+            return;
+        }
+
+        this.eyeCenterY[this.eyesCount] = eyeCenterY;
+        this.pupilY[this.eyesCount] = isPupilFound ? pupilY : 0;
+        this.isPupilFound[this.eyesCount] = isPupilFound;
+        this.eyesCount++;
+    }
+
+    public void copyFrom(GazeSample other) {
+        this.timestampNanos = other.timestampNanos;
+        this.setFace(other.faceX, other.faceY, other.faceWidth, other.faceHeight);
+        this.eyesCount = other.eyesCount;
+        System.arraycopy(other.eyeCenterY, 0, this.eyeCenterY, 0, MAX_EYES_COUNT);
+        System.arraycopy(other.pupilY, 0, this.pupilY, 0, MAX_EYES_COUNT);
+        System.arraycopy(other.isPupilFound, 0, this.isPupilFound, 0, MAX_EYES_COUNT);
+    }
+
+    public boolean isAnyPupilFound() {
+        for (int i = 0; i < this.eyesCount; i++) {
+            if (this.isPupilFound[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Share of the eyes of a full pair that had a pupil found, from 0 to 1 **/
+    public float getConfidence() {
+        int pupilsCount = 0;
+        for (int i = 0; i < this.eyesCount; i++) {
+            if (this.isPupilFound[i]) {
+                pupilsCount++;
+            }
+        }
+        return (float) pupilsCount / MAX_EYES_COUNT;
+    }
+
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public int getFaceX() {
+        return faceX;
+    }
+
+    public int getFaceY() {
+        return faceY;
+    }
+
+    public int getFaceWidth() {
+        return faceWidth;
+    }
+
+    public int getFaceHeight() {
+        return faceHeight;
+    }
+
+    public int getEyesCount() {
+        return eyesCount;
+    }
+
+    public float getEyeCenterY(int eyeIndex) {
+        return eyeCenterY[eyeIndex];
+    }
+
+    /** Zero when no pupil was found in the eye, matching what the old broadcasts carried **/
+    public float getPupilY(int eyeIndex) {
+        return pupilY[eyeIndex];
+    }
+
+    public boolean isPupilFound(int eyeIndex) {
+        return isPupilFound[eyeIndex];
+    }
+}
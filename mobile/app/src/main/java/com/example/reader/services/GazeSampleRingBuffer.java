@@ -0,0 +1,92 @@
+package com.example.reader.services;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Fixed-capacity history of gaze samples shared by one writer (the frame processing thread)
+ * and one reader (the UI thread). Samples are kept in primitive arrays and the writer never waits,
+ * when the reader falls behind the oldest samples are overwritten and reported as lost.
+ **/
+public class GazeSampleRingBuffer {
+    private final int capacity;
+    private final int mask;
+    private final long[] timestampsNanos;
+    private final int[] faceRects;
+    private final int[] eyesCounts;
+    private final float[] eyeCentersY;
+    private final float[] pupilsY;
+    private final boolean[] arePupilsFound;
+    private final AtomicLong writeSequence = new AtomicLong();
+    public GazeSampleRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.timestampsNanos = new long[capacity];
+        this.faceRects = new int[capacity * 4];
+        this.eyesCounts = new int[capacity];
+        this.eyeCentersY = new float[capacity * GazeSample.MAX_EYES_COUNT];
+        this.pupilsY = new float[capacity * GazeSample.MAX_EYES_COUNT];
+        this.arePupilsFound = new boolean[capacity * GazeSample.MAX_EYES_COUNT];
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /** Sequence the next sample will be written at, i.e. one past the latest readable sample **/
+    public long getWriteSequence() {
+        return this.writeSequence.get();
+    }
+
+    /** Oldest sequence that can still be read, older ones have been overwritten **/
+    public long getOldestSequence() {
+        return Math.max(0, this.writeSequence.get() - this.capacity + 1);
+    }
+
+    /** Must only be called from the single writer thread **/
+    public void write(GazeSample sample) {
+        long sequence = this.writeSequence.get();
+        int slot = (int) (sequence & this.mask);
+
+        this.timestampsNanos[slot] = sample.getTimestampNanos();
+        this.faceRects[slot * 4] = sample.getFaceX();
+        this.faceRects[slot * 4 + 1] = sample.getFaceY();
+        this.faceRects[slot * 4 + 2] = sample.getFaceWidth();
+        this.faceRects[slot * 4 + 3] = sample.getFaceHeight();
+        this.eyesCounts[slot] = sample.getEyesCount();
+        for (int eyeIndex = 0; eyeIndex < GazeSample.MAX_EYES_COUNT; eyeIndex++) {
+            int eyeSlot = slot * GazeSample.MAX_EYES_COUNT + eyeIndex;
+            this.eyeCentersY[eyeSlot] = sample.getEyeCenterY(eyeIndex);
+            this.pupilsY[eyeSlot] = sample.getPupilY(eyeIndex);
+            this.arePupilsFound[eyeSlot] = sample.isPupilFound(eyeIndex);
+        }
+
+        // Publishes the slot, the reader never sees a sequence before its data
+        this.writeSequence.set(sequence + 1);
+    }
+
+    /** Copies the sample at the given sequence into the reader's own sample without allocating.
+     * Returns false when the sequence is not written yet or was overwritten while being read.
+     **/
+    public boolean read(long sequence, GazeSample out) {
+        if (sequence < this.getOldestSequence() || sequence >= this.writeSequence.get()) {
+            return false;
+        }
+
+        int slot = (int) (sequence & this.mask);
+        out.reset(this.timestampsNanos[slot]);
+        out.setFace(this.faceRects[slot * 4], this.faceRects[slot * 4 + 1],
+                this.faceRects[slot * 4 + 2], this.faceRects[slot * 4 + 3]);
+        for (int eyeIndex = 0; eyeIndex < this.eyesCounts[slot]; eyeIndex++) {
+            int eyeSlot = slot * GazeSample.MAX_EYES_COUNT + eyeIndex;
+            out.addEye(this.eyeCentersY[eyeSlot], this.pupilsY[eyeSlot], this.arePupilsFound[eyeSlot]);
+        }
+
+        // The writer may have lapped the reader during the copy, in which case the copy is torn
+        VarHandle.acquireFence();
+        return sequence > this.writeSequence.get() - this.capacity;
+    }
+}
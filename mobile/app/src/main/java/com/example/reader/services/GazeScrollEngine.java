@@ -0,0 +1,99 @@
+package com.example.reader.services;
+
+/** Turns the scroll distances derived from gaze samples into one eased move per display frame.
+ * Distances arriving at the camera rate are accumulated and spent exponentially over the next vsyncs,
+ * pages are loaded again only when the viewport reaches another page or the scroll comes to rest.
+ **/
+public class GazeScrollEngine {
+    private static final double EASING_TIME_CONSTANT_NANOS = 60_000_000;
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 16_666_667;
+    private static final long MAX_FRAME_INTERVAL_NANOS = 100_000_000;
+    private static final float MIN_STEP_DISTANCE = 0.5f;
+    private final ScrollTarget scrollTarget;
+    private float maxPendingDistance = Float.MAX_VALUE;
+    private float pendingDistance = 0;
+    private float velocity = 0;
+    private long lastFrameTimeNanos = 0;
+    private int lastPageIndex = -1;
+    private boolean isScrolling = false;
+    private int pageLoadsCount = 0;
+    public GazeScrollEngine(ScrollTarget scrollTarget) {
+        this.scrollTarget = scrollTarget;
+    }
+
+    public void addScrollDistance(float distance) {
+        this.pendingDistance = Math.max(-this.maxPendingDistance, Math.min(this.maxPendingDistance, this.pendingDistance + distance));
+    }
+
+    /** Caps the distance waiting to be scrolled in either direction **/
+    public void setMaxPendingDistance(float maxPendingDistance) {
+        if (!(maxPendingDistance > 0)) {
+            throw new IllegalArgumentException("maxPendingDistance must be positive");
+        }
+        this.maxPendingDistance = maxPendingDistance;
+    }
+
+    /** Drops the distance not scrolled yet, e.g. when the reader leaves the screen **/
+    public void reset() {
+        this.pendingDistance = 0;
+        this.velocity = 0;
+        this.lastFrameTimeNanos = 0;
+        this.isScrolling = false;
+    }
+
+    /** Called once per vsync with the Choreographer frame time, returns whether the target was moved **/
+    public boolean doFrame(long frameTimeNanos) {
+        long frameIntervalNanos = this.lastFrameTimeNanos == 0
+                ? DEFAULT_FRAME_INTERVAL_NANOS
+                : Math.min(frameTimeNanos - this.lastFrameTimeNanos, MAX_FRAME_INTERVAL_NANOS);
+        this.lastFrameTimeNanos = frameTimeNanos;
+
+        if (Math.abs(this.pendingDistance) < MIN_STEP_DISTANCE) {
+            this.velocity = 0;
+            if (this.isScrolling) {
+                // Parts uncovered within the page are rendered once the scroll settles
+                this.isScrolling = false;
+                this.loadPages();
+            }
+            return false;
+        }
+
+        float step = (float) (this.pendingDistance * (1 - Math.exp(-frameIntervalNanos / EASING_TIME_CONSTANT_NANOS)));
+        if (Math.abs(step) < MIN_STEP_DISTANCE) {
+            step = this.pendingDistance;
+        }
+        this.pendingDistance -= step;
+        this.velocity = step * 1_000_000_000f / Math.max(frameIntervalNanos, 1);
+        this.isScrolling = true;
+        long applyStartNanos = PipelineMetrics.ENABLED ? System.nanoTime() : 0;
+        this.scrollTarget.scrollBy(step);
+
+        int pageIndex = this.scrollTarget.getCurrentPageIndex();
+        if (pageIndex != this.lastPageIndex) {
+            this.lastPageIndex = pageIndex;
+            this.loadPages();
+        }
+        if (PipelineMetrics.ENABLED) {
+            PipelineMetrics.getInstance().record(PipelineMetrics.Stage.SCROLL_APPLY, applyStartNanos);
+        }
+        return true;
+    }
+
+    /** Scroll speed of the last frame in pixels per second **/
+    public float getVelocity() {
+        return this.velocity;
+    }
+
+    public float getPendingDistance() {
+        return this.pendingDistance;
+    }
+
+    public int getPageLoadsCount() {
+        return this.pageLoadsCount;
+    }
+
+    private void loadPages() {
+        this.pageLoadsCount++;
+        this.scrollTarget.loadPages();
+    }
+}
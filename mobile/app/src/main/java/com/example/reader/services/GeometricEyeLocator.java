@@ -0,0 +1,111 @@
+package com.example.reader.services;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Places the eyes at fixed fractions of the face rect instead of searching them on every frame.
+ * The fractions start from average frontal face proportions and are re-anchored on the eyes the fallback
+ * locator finds, which only runs once pupils were missed on several frames in a row.
+ * Eyes keep their size relative to the face between anchors, so the eye line used as gaze reference does not jitter.
+ **/
+public class GeometricEyeLocator implements EyeLocator {
+    // Left and right eye as x, y, width, height fractions of a face found by the frontal face cascade
+    static final double[] DEFAULT_EYES_FRACTIONS = {
+            0.14, 0.2, 0.3, 0.25,
+            0.56, 0.2, 0.3, 0.25
+    };
+    static final int MAX_MISSED_FRAMES = 3;
+    private final EyeLocator fallbackLocator;
+    private final List<FaceEyes> facesEyes = new ArrayList<>();
+    private long fallbacksCount = 0;
+    private long framesCount = 0;
+    public GeometricEyeLocator(EyeLocator fallbackLocator) {
+        this.fallbackLocator = fallbackLocator;
+    }
+
+    @Override
+    public Rect[] locateEyes(int faceIndex, Rect face, Mat faceFrame) {
+        this.framesCount++;
+        FaceEyes faceEyes = this.getFaceEyes(faceIndex);
+        if (faceEyes.missedFramesCount < MAX_MISSED_FRAMES) {
+            return faceEyes.toEyes(face);
+        }
+
+        // Pupils were lost for a while, so the eyes are searched again and become the new anchor when both are found
+        this.fallbacksCount++;
+        faceEyes.missedFramesCount = 0;
+        Rect[] eyes = this.fallbackLocator.locateEyes(faceIndex, face, faceFrame);
+        if (eyes.length == FaceEyes.EYES_COUNT) {
+            faceEyes.anchor(eyes, face);
+            return eyes;
+        }
+        return eyes.length > 0 ? eyes : faceEyes.toEyes(face);
+    }
+
+    @Override
+    public void reportPupilsFound(int faceIndex, int eyesCount, int pupilsFoundCount) {
+        FaceEyes faceEyes = this.getFaceEyes(faceIndex);
+        if (eyesCount > 0 && pupilsFoundCount < eyesCount) {
+            faceEyes.missedFramesCount++;
+        } else {
+            faceEyes.missedFramesCount = 0;
+        }
+    }
+
+    @Override
+    public void forgetFace(int faceIndex) {
+        if (faceIndex < this.facesEyes.size()) {
+            this.facesEyes.set(faceIndex, new FaceEyes());
+        }
+    }
+
+    public long getFallbacksCount() {
+        return this.fallbacksCount;
+    }
+
+    /** Share of located faces that needed the fallback locator **/
+    public double getFallbackRate() {
+        return this.framesCount == 0 ? 0 : this.fallbacksCount / (double) this.framesCount;
+    }
+
+    private FaceEyes getFaceEyes(int faceIndex) {
+        while (this.facesEyes.size() <= faceIndex) {
+            this.facesEyes.add(new FaceEyes());
+        }
+        return this.facesEyes.get(faceIndex);
+    }
+
+    private static class FaceEyes {
+        private static final int EYES_COUNT = 2;
+        private final double[] fractions = DEFAULT_EYES_FRACTIONS.clone();
+        private final Rect[] eyes = {new Rect(), new Rect()};
+        // A new face is anchored on the fallback eyes on its first frame
+        private int missedFramesCount = MAX_MISSED_FRAMES;
+
+        private void anchor(Rect[] eyes, Rect face) {
+            // Image order keeps every eye on the same side from one anchor to the next
+            boolean isSwapped = eyes[0].x > eyes[1].x;
+            for (int i = 0; i < EYES_COUNT; i++) {
+                Rect eye = eyes[isSwapped ? EYES_COUNT - 1 - i : i];
+                this.fractions[i * 4] = eye.x / (double) face.width;
+                this.fractions[i * 4 + 1] = eye.y / (double) face.height;
+                this.fractions[i * 4 + 2] = eye.width / (double) face.width;
+                this.fractions[i * 4 + 3] = eye.height / (double) face.height;
+            }
+        }
+
+        private Rect[] toEyes(Rect face) {
+            for (int i = 0; i < EYES_COUNT; i++) {
+                Rect eye = this.eyes[i];
+                eye.x = (int) Math.round(this.fractions[i * 4] * face.width);
+                eye.y = (int) Math.round(this.fractions[i * 4 + 1] * face.height);
+                eye.width = Math.min((int) Math.round(this.fractions[i * 4 + 2] * face.width), face.width - eye.x);
+                eye.height = Math.min((int) Math.round(this.fractions[i * 4 + 3] * face.height), face.height - eye.y);
+            }
+            return this.eyes;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.reader.services;
+
+import org.opencv.core.KeyPoint;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+
+/** Finds the pupil as the darkest disc of the eye frame without blurring, thresholding or contours.
+ * Square windows of a few radii slide over an integral image of the eye, each one is scored by how much
+ * darker it is than the ring around it, and windows not darker than the eye average are skipped at once.
+ * Only the best few windows are checked for circularity on their pixels, the first round one is the pupil.
+ **/
+public class IntegralPupilLocator implements PupilLocator {
+    // Pupil radius range as a fraction of the smaller eye frame side
+    static final double MIN_RADIUS_FRACTION = 0.08;
+    static final double MAX_RADIUS_FRACTION = 0.3;
+    static final int RADII_COUNT = 7;
+    // Gray levels a window must be darker than the eye average and than its ring
+    static final int MIN_CONTRAST = 15;
+    static final double MIN_CIRCULARITY = 0.5;
+    // Circularity compares the window circle with the ring up to this many radii around it
+    private static final double RING_RADIUS_FACTOR = 1.5;
+    private static final int MAX_CANDIDATES_COUNT = 4;
+    // Only colour eye frames need a conversion, luma ones are read as they are
+    private Mat gray;
+    private byte[] pixels = new byte[0];
+    private int[] integral = new int[0];
+    private final int[] candidateX = new int[MAX_CANDIDATES_COUNT];
+    private final int[] candidateY = new int[MAX_CANDIDATES_COUNT];
+    private final int[] candidateRadius = new int[MAX_CANDIDATES_COUNT];
+    private final double[] candidateScore = new double[MAX_CANDIDATES_COUNT];
+    private final double[] candidateThreshold = new double[MAX_CANDIDATES_COUNT];
+    private int candidatesCount = 0;
+    private float pupilX;
+    private float pupilY;
+    private float pupilRadius;
+
+    @Override
+    public MatOfKeyPoint locatePupil(Mat eyeFrame, Rect eye) {
+        MatOfKeyPoint keypoints = new MatOfKeyPoint();
+        Mat eyeGray = eyeFrame;
+        if (eyeFrame.channels() != 1) {
+            if (this.gray == null) {
+                this.gray = new Mat();
+            }
+            Imgproc.cvtColor(eyeFrame, this.gray, Imgproc.COLOR_BGR2GRAY);
+            eyeGray = this.gray;
+        }
+
+        int width = eyeGray.cols();
+        int height = eyeGray.rows();
+        if (this.pixels.length < width * height) {
+            this.pixels = new byte[width * height];
+        }
+        // Submats of the camera frame are copied row by row
+        eyeGray.get(0, 0, this.pixels);
+
+        if (this.locate(this.pixels, width, height)) {
+            keypoints.fromArray(new KeyPoint(this.pupilX, this.pupilY, this.pupilRadius * 2));
+        }
+        return keypoints;
+    }
+
+    /** Searches the pupil on a width x height gray image, the result is read with the pupil getters **/
+    boolean locate(byte[] pixels, int width, int height) {
+        int minSide = Math.min(width, height);
+        int minRadius = Math.max(2, (int) Math.round(minSide * MIN_RADIUS_FRACTION));
+        int maxRadius = Math.max(minRadius, (int) Math.round(minSide * MAX_RADIUS_FRACTION));
+        if (2 * minRadius > minSide) {
+            return false;
+        }
+
+        this.computeIntegral(pixels, width, height);
+        int stride = width + 1;
+        double averageGray = this.integral[height * stride + width] / (double) (width * height);
+
+        this.candidatesCount = 0;
+        int radiusStep = Math.max(1, (maxRadius - minRadius) / (RADII_COUNT - 1));
+        for (int radius = minRadius; radius <= maxRadius && 2 * radius <= minSide; radius += radiusStep) {
+            int side = 2 * radius;
+            int innerArea = side * side;
+            int ringWidth = Math.max(1, radius / 2);
+            int step = Math.max(1, radius / 2);
+
+            for (int top = 0; top + side <= height; top += step) {
+                for (int left = 0; left + side <= width; left += step) {
+                    double innerMean = this.boxSum(left, top, left + side, top + side, stride) / (double) innerArea;
+                    if (innerMean > averageGray - MIN_CONTRAST) {
+                        continue;
+                    }
+
+                    int outerLeft = Math.max(0, left - ringWidth);
+                    int outerTop = Math.max(0, top - ringWidth);
+                    int outerRight = Math.min(width, left + side + ringWidth);
+                    int outerBottom = Math.min(height, top + side + ringWidth);
+                    int ringArea = (outerRight - outerLeft) * (outerBottom - outerTop) - innerArea;
+                    if (ringArea == 0) {
+                        continue;
+                    }
+
+                    int ringSum = this.boxSum(outerLeft, outerTop, outerRight, outerBottom, stride) - this.boxSum(left, top, left + side, top + side, stride);
+                    double contrast = ringSum / (double) ringArea - innerMean;
+                    if (contrast >= MIN_CONTRAST) {
+                        this.addCandidate(left, top, radius, contrast, innerMean + contrast / 2);
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < this.candidatesCount; i++) {
+            if (this.isRound(pixels, width, height, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    float getPupilX() {
+        return this.pupilX;
+    }
+
+    float getPupilY() {
+        return this.pupilY;
+    }
+
+    float getPupilRadius() {
+        return this.pupilRadius;
+    }
+
+    @Override
+    public void release() {
+        if (this.gray != null) {
+            this.gray.release();
+        }
+    }
+
+    private void computeIntegral(byte[] pixels, int width, int height) {
+        int stride = width + 1;
+        if (this.integral.length < stride * (height + 1)) {
+            this.integral = new int[stride * (height + 1)];
+        }
+
+        // First row and column stay zero
+        for (int x = 0; x < stride; x++) {
+            this.integral[x] = 0;
+        }
+        for (int y = 0; y < height; y++) {
+            int rowSum = 0;
+            this.integral[(y + 1) * stride] = 0;
+            for (int x = 0; x < width; x++) {
+                rowSum += pixels[y * width + x] & 0xFF;
+                this.integral[(y + 1) * stride + x + 1] = this.integral[y * stride + x + 1] + rowSum;
+            }
+        }
+    }
+
+    private int boxSum(int left, int top, int right, int bottom, int stride) {
+        return this.integral[bottom * stride + right] - this.integral[top * stride + right]
+                - this.integral[bottom * stride + left] + this.integral[top * stride + left];
+    }
+
+    // Keeps the best candidates sorted by contrast, overlapping windows of the same dark spot compete for one slot
+    private void addCandidate(int left, int top, int radius, double score, double threshold) {
+        int slot = this.candidatesCount;
+        for (int i = 0; i < this.candidatesCount; i++) {
+            if (Math.abs(this.candidateX[i] + this.candidateRadius[i] - left - radius) < Math.max(this.candidateRadius[i], radius)
+                    && Math.abs(this.candidateY[i] + this.candidateRadius[i] - top - radius) < Math.max(this.candidateRadius[i], radius)) {
+                if (score <= this.candidateScore[i]) {
+                    return;
+                }
+                slot = i;
+                break;
+            }
+        }
+
+        if (slot == this.candidatesCount) {
+            if (this.candidatesCount < MAX_CANDIDATES_COUNT) {
+                this.candidatesCount++;
+            } else if (score <= this.candidateScore[MAX_CANDIDATES_COUNT - 1]) {
+                return;
+            } else {
+                slot = MAX_CANDIDATES_COUNT - 1;
+            }
+        }
+
+        while (slot > 0 && this.candidateScore[slot - 1] < score) {
+            this.copyCandidate(slot - 1, slot);
+            slot--;
+        }
+        this.candidateX[slot] = left;
+        this.candidateY[slot] = top;
+        this.candidateRadius[slot] = radius;
+        this.candidateScore[slot] = score;
+        this.candidateThreshold[slot] = threshold;
+    }
+
+    private void copyCandidate(int from, int to) {
+        this.candidateX[to] = this.candidateX[from];
+        this.candidateY[to] = this.candidateY[from];
+        this.candidateRadius[to] = this.candidateRadius[from];
+        this.candidateScore[to] = this.candidateScore[from];
+        this.candidateThreshold[to] = this.candidateThreshold[from];
+    }
+
+    // Dark pixels must fill the circle of the window and stay out of the ring around it, a dark band crosses both.
+    // The ring also catches the pupil edge when the window sits inside a larger pupil, so the centre and radius come from both.
+    private boolean isRound(byte[] pixels, int width, int height, int candidate) {
+        int radius = this.candidateRadius[candidate];
+        double threshold = this.candidateThreshold[candidate];
+        double centerX = this.candidateX[candidate] + radius - 0.5;
+        double centerY = this.candidateY[candidate] + radius - 0.5;
+        double outerRadius = radius * RING_RADIUS_FACTOR;
+        int left = Math.max(0, (int) Math.floor(centerX - outerRadius));
+        int top = Math.max(0, (int) Math.floor(centerY - outerRadius));
+        int right = Math.min(width - 1, (int) Math.ceil(centerX + outerRadius));
+        int bottom = Math.min(height - 1, (int) Math.ceil(centerY + outerRadius));
+
+        int circlePixelsCount = 0;
+        int darkCirclePixelsCount = 0;
+        int ringPixelsCount = 0;
+        int darkRingPixelsCount = 0;
+        double darkSumX = 0;
+        double darkSumY = 0;
+        for (int y = top; y <= bottom; y++) {
+            for (int x = left; x <= right; x++) {
+                double squaredDistance = (x - centerX) * (x - centerX) + (y - centerY) * (y - centerY);
+                if (squaredDistance > outerRadius * outerRadius) {
+                    continue;
+                }
+
+                boolean isInCircle = squaredDistance <= radius * radius;
+                boolean isDark = (pixels[y * width + x] & 0xFF) < threshold;
+                if (isInCircle) {
+                    circlePixelsCount++;
+                } else {
+                    ringPixelsCount++;
+                }
+                if (!isDark) {
+                    continue;
+                }
+
+                if (isInCircle) {
+                    darkCirclePixelsCount++;
+                } else {
+                    darkRingPixelsCount++;
+                }
+                darkSumX += x;
+                darkSumY += y;
+            }
+        }
+
+        double fill = darkCirclePixelsCount / (double) circlePixelsCount;
+        double ringFill = ringPixelsCount == 0 ? 0 : darkRingPixelsCount / (double) ringPixelsCount;
+        if (darkCirclePixelsCount == 0 || fill * (1 - ringFill) < MIN_CIRCULARITY) {
+            return false;
+        }
+
+        int darkPixelsCount = darkCirclePixelsCount + darkRingPixelsCount;
+        this.pupilX = (float) (darkSumX / darkPixelsCount);
+        this.pupilY = (float) (darkSumY / darkPixelsCount);
+        this.pupilRadius = (float) Math.sqrt(darkPixelsCount / Math.PI);
+        return true;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.reader.services;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Bounded pool of daemon threads for network and disk work. Waiting tasks run by priority, then in submission order,
+ * so what the reader is waiting on overtakes refreshes nobody looks at yet. Screens submit through a {@link Scope}
+ * cancelled when they are destroyed, so work for a screen that is gone never starts.
+ * A failing runnable reaches the uncaught exception handler as it would on a plain thread, only callables keep
+ * their failure in the returned future.
+ **/
+public class IoExecutor {
+    public enum Priority {
+        // The reader waits on it, opening or downloading a book
+        INTERACTIVE,
+        // Shown on screen once done, local catalog and disk reads
+        VISIBLE,
+        // Refreshes whose result may not even change the screen, bucket listings
+        BACKGROUND
+    }
+
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 30;
+    private final ThreadPoolExecutor threadPool;
+    private final AtomicLong nextSequence = new AtomicLong();
+    public IoExecutor(int threadsCount, String threadName) {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("threadsCount must be positive");
+        }
+
+        this.threadPool = new ThreadPoolExecutor(threadsCount, threadsCount, IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, threadName);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Idle between screens, the threads are released instead of kept for the whole process
+        this.threadPool.allowCoreThreadTimeOut(true);
+    }
+
+    public Future<?> submit(Priority priority, Runnable task) {
+        return this.enqueue(new PrioritizedTask<>(Executors.callable(task), priority, this.nextSequence.getAndIncrement(), null, true));
+    }
+
+    public <T> Future<T> submit(Priority priority, Callable<T> task) {
+        return this.enqueue(new PrioritizedTask<>(task, priority, this.nextSequence.getAndIncrement(), null, false));
+    }
+
+    /** Runs every task handed to the returned executor at the given priority, for components taking a plain executor **/
+    public Executor asExecutor(Priority priority) {
+        return task -> this.submit(priority, task);
+    }
+
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    private <T> PrioritizedTask<T> enqueue(PrioritizedTask<T> task) {
+        this.threadPool.execute(task);
+        return task;
+    }
+
+    /** Tasks of one screen, cancelled together when the screen goes away **/
+    public class Scope {
+        private final Set<PrioritizedTask<?>> pendingTasks = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private volatile boolean isCancelled = false;
+        private Scope() {
+        }
+
+        public Future<?> submit(Priority priority, Runnable task) {
+            return this.enqueue(new PrioritizedTask<>(Executors.callable(task), priority, nextSequence.getAndIncrement(), this, true));
+        }
+
+        public <T> Future<T> submit(Priority priority, Callable<T> task) {
+            return this.enqueue(new PrioritizedTask<>(task, priority, nextSequence.getAndIncrement(), this, false));
+        }
+
+        /** Waiting tasks never start and running ones are interrupted, later submissions are dropped **/
+        public void cancel() {
+            this.isCancelled = true;
+            for (PrioritizedTask<?> task : this.pendingTasks) {
+                task.cancel(true);
+            }
+            threadPool.purge();
+        }
+
+        public boolean isCancelled() {
+            return this.isCancelled;
+        }
+
+        private <T> PrioritizedTask<T> enqueue(PrioritizedTask<T> task) {
+            this.pendingTasks.add(task);
+            if (this.isCancelled) {
+                task.cancel(false);
+                return task;
+            }
+
+            threadPool.execute(task);
+            return task;
+        }
+    }
+
+    private static class PrioritizedTask<T> extends FutureTask<T> implements Comparable<PrioritizedTask<?>> {
+        private final Priority priority;
+        private final long sequence;
+        private final Scope scope;
+        // Runnables are fire and forget, nobody reads their future for a failure
+        private final boolean isReportingFailure;
+        private PrioritizedTask(Callable<T> callable, Priority priority, long sequence, Scope scope, boolean isReportingFailure) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+            this.scope = scope;
+            this.isReportingFailure = isReportingFailure;
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask<?> other) {
+            int priorityOrder = this.priority.compareTo(other.priority);
+            return priorityOrder != 0 ? priorityOrder : Long.compare(this.sequence, other.sequence);
+        }
+
+        @Override
+        protected void done() {
+            if (this.scope != null) {
+                this.scope.pendingTasks.remove(this);
+            }
+            if (!this.isReportingFailure || this.isCancelled()) {
+                return;
+            }
+
+            try {
+                this.get();
+            } catch (ExecutionException error) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, error.getCause());
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
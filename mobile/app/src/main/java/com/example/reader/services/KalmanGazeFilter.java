@@ -0,0 +1,91 @@
+package com.example.reader.services;
+
+/** Constant-velocity Kalman filter over the gaze delta, state is position and velocity.
+ * The 2x2 covariance is kept in four fields instead of matrices, so an update allocates nothing.
+ **/
+public class KalmanGazeFilter implements GazeFilter {
+    // Haar jitter moves the pupil by a couple of pixels between frames
+    public static final double DEFAULT_MEASUREMENT_VARIANCE = 4;
+    public static final double DEFAULT_ACCELERATION_VARIANCE = 400;
+    private static final double INITIAL_VELOCITY_VARIANCE = 100;
+    private final double measurementVariance;
+    private final double accelerationVariance;
+    private boolean isInitialized = false;
+    private long lastTimestampNanos;
+    private double position;
+    private double velocity;
+    private double positionVariance;
+    private double covariance;
+    private double velocityVariance;
+    public KalmanGazeFilter() {
+        this(DEFAULT_MEASUREMENT_VARIANCE, DEFAULT_ACCELERATION_VARIANCE);
+    }
+
+    public KalmanGazeFilter(double measurementVariance, double accelerationVariance) {
+        if (measurementVariance <= 0 || accelerationVariance <= 0) {
+            throw new IllegalArgumentException("Variances must be positive");
+        }
+
+        this.measurementVariance = measurementVariance;
+        this.accelerationVariance = accelerationVariance;
+    }
+
+    @Override
+    public void update(long timestampNanos, float measurement) {
+        if (!this.isInitialized) {
+            this.position = measurement;
+            this.velocity = 0;
+            this.positionVariance = this.measurementVariance;
+            this.covariance = 0;
+            this.velocityVariance = INITIAL_VELOCITY_VARIANCE;
+            this.lastTimestampNanos = timestampNanos;
+            this.isInitialized = true;
+            return;
+        }
+
+        double dt = Math.max(timestampNanos - this.lastTimestampNanos, 0) / 1e9;
+        this.lastTimestampNanos = timestampNanos;
+
+        // Predict, with the process noise of a random acceleration
+        this.position += this.velocity * dt;
+        double dt2 = dt * dt;
+        double predictedPositionVariance = this.positionVariance + 2 * dt * this.covariance + dt2 * this.velocityVariance
+                + this.accelerationVariance * dt2 * dt2 / 4;
+        double predictedCovariance = this.covariance + dt * this.velocityVariance + this.accelerationVariance * dt2 * dt / 2;
+        double predictedVelocityVariance = this.velocityVariance + this.accelerationVariance * dt2;
+
+        // Correct with the measured position
+        double innovation = measurement - this.position;
+        double innovationVariance = predictedPositionVariance + this.measurementVariance;
+        double positionGain = predictedPositionVariance / innovationVariance;
+        double velocityGain = predictedCovariance / innovationVariance;
+
+        this.position += positionGain * innovation;
+        this.velocity += velocityGain * innovation;
+        this.positionVariance = (1 - positionGain) * predictedPositionVariance;
+        this.covariance = (1 - positionGain) * predictedCovariance;
+        this.velocityVariance = predictedVelocityVariance - velocityGain * predictedCovariance;
+    }
+
+    @Override
+    public float getPosition() {
+        return (float) this.position;
+    }
+
+    @Override
+    public float getVelocity() {
+        return (float) this.velocity;
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return this.isInitialized;
+    }
+
+    @Override
+    public void reset() {
+        this.isInitialized = false;
+        this.position = 0;
+        this.velocity = 0;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.reader.services;
+
+/** Preallocated latency histogram with microsecond resolution and about 12% bucket precision up to 16 s.
+ * Buckets are powers of two split into eight linear steps, so recording is a few shifts and an increment.
+ * Meant for a single writer thread, readers on other threads may see slightly stale counts.
+ **/
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 24;
+    private static final int BUCKETS_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS_COUNT;
+    private final long[] counts = new long[BUCKETS_COUNT];
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    public void record(long latencyNanos) {
+        long latencyMicros = Math.max(latencyNanos, 0) / 1000;
+        this.counts[bucketIndex(latencyMicros)]++;
+        this.count++;
+        this.totalNanos += latencyNanos;
+        this.maxNanos = Math.max(this.maxNanos, latencyNanos);
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public double getMeanMillis() {
+        return this.count == 0 ? 0 : this.totalNanos / 1e6 / this.count;
+    }
+
+    public double getMaxMillis() {
+        return this.maxNanos / 1e6;
+    }
+
+    /** Upper bound of the bucket holding the given percentile **/
+    public double getPercentileMillis(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(percentile / 100 * this.count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            seen += this.counts[i];
+            // The last bucket also holds every latency beyond the range, only the max bounds it
+            if (seen >= Math.max(rank, 1) && i < BUCKETS_COUNT - 1) {
+                return Math.min(bucketUpperBoundMicros(i) / 1000.0, this.getMaxMillis());
+            }
+        }
+        return this.getMaxMillis();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS_COUNT; i++) {
+            this.counts[i] = 0;
+        }
+        this.count = 0;
+        this.totalNanos = 0;
+        this.maxNanos = 0;
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS_COUNT) {
+            return (int) micros;
+        }
+
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+        int subBucket = (int) (Math.min(micros >> (exponent - SUB_BUCKET_BITS), 2 * SUB_BUCKETS_COUNT - 1) & (SUB_BUCKETS_COUNT - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS_COUNT + subBucket;
+    }
+
+    static long bucketUpperBoundMicros(int index) {
+        if (index < SUB_BUCKETS_COUNT) {
+            return index + 1;
+        }
+
+        int exponent = index / SUB_BUCKETS_COUNT + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS_COUNT;
+        return (long) (SUB_BUCKETS_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+}
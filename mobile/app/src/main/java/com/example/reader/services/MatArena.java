@@ -0,0 +1,37 @@
+package com.example.reader.services;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+
+/** Native Mats allocated while one frame is processed, released all together once the frame ends
+ * instead of waiting for their finalizers. An arena belongs to the thread processing the frames.
+ * It only releases what it was handed, Mats made without it are caught by the native heap checks of MatLifecycleTest
+ * and of the replay.
+ **/
+public class MatArena {
+    private static final int INITIAL_CAPACITY = 32;
+    private final ArrayList<Mat> mats = new ArrayList<>(INITIAL_CAPACITY);
+
+    public <T extends Mat> T track(T mat) {
+        this.mats.add(mat);
+        return mat;
+    }
+
+    public Mat submat(Mat mat, Rect region) {
+        return this.track(mat.submat(region));
+    }
+
+    public void releaseAll() {
+        int matsCount = this.mats.size();
+        for (int i = 0; i < matsCount; i++) {
+            this.mats.get(i).release();
+        }
+        this.mats.clear();
+    }
+
+    public int getTrackedCount() {
+        return this.mats.size();
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.reader.services;
+
+/** One Euro filter (Casiez et al.), a low-pass filter whose cutoff rises with the speed of the signal:
+ * slow drifts are smoothed heavily and fast gaze changes pass with little lag.
+ **/
+public class OneEuroFilter implements GazeFilter {
+    public static final double DEFAULT_MIN_CUTOFF_HZ = 1.0;
+    public static final double DEFAULT_BETA = 0.05;
+    public static final double DEFAULT_DERIVATIVE_CUTOFF_HZ = 1.0;
+    private final double minCutoffHz;
+    private final double beta;
+    private final double derivativeCutoffHz;
+    private boolean isInitialized = false;
+    private long lastTimestampNanos;
+    private double position;
+    // Derivative of the signal used to adapt the cutoff, as in the original filter
+    private double derivative;
+    private double velocity;
+    public OneEuroFilter() {
+        this(DEFAULT_MIN_CUTOFF_HZ, DEFAULT_BETA, DEFAULT_DERIVATIVE_CUTOFF_HZ);
+    }
+
+    public OneEuroFilter(double minCutoffHz, double beta, double derivativeCutoffHz) {
+        if (minCutoffHz <= 0 || derivativeCutoffHz <= 0) {
+            throw new IllegalArgumentException("Cutoff frequencies must be positive");
+        }
+        if (beta < 0) {
+            throw new IllegalArgumentException("Beta must not be negative");
+        }
+
+        this.minCutoffHz = minCutoffHz;
+        this.beta = beta;
+        this.derivativeCutoffHz = derivativeCutoffHz;
+    }
+
+    @Override
+    public void update(long timestampNanos, float measurement) {
+        if (!this.isInitialized) {
+            this.position = measurement;
+            this.derivative = 0;
+            this.velocity = 0;
+            this.lastTimestampNanos = timestampNanos;
+            this.isInitialized = true;
+            return;
+        }
+
+        // Samples out of order or of the same frame carry no timing information
+        if (timestampNanos <= this.lastTimestampNanos) {
+            return;
+        }
+
+        double elapsedSeconds = (timestampNanos - this.lastTimestampNanos) / 1e9;
+        this.lastTimestampNanos = timestampNanos;
+
+        double derivativeSmoothingFactor = smoothingFactor(elapsedSeconds, this.derivativeCutoffHz);
+        double rawDerivative = (measurement - this.position) / elapsedSeconds;
+        this.derivative += derivativeSmoothingFactor * (rawDerivative - this.derivative);
+
+        double cutoffHz = this.minCutoffHz + this.beta * Math.abs(this.derivative);
+        double previousPosition = this.position;
+        this.position += smoothingFactor(elapsedSeconds, cutoffHz) * (measurement - this.position);
+
+        // The derivative above includes the filter lag, the reported velocity follows the smoothed position instead
+        double positionVelocity = (this.position - previousPosition) / elapsedSeconds;
+        this.velocity += derivativeSmoothingFactor * (positionVelocity - this.velocity);
+    }
+
+    @Override
+    public float getPosition() {
+        return (float) this.position;
+    }
+
+    @Override
+    public float getVelocity() {
+        return (float) this.velocity;
+    }
+
+    @Override
+    public boolean isInitialized() {
+        return this.isInitialized;
+    }
+
+    @Override
+    public void reset() {
+        this.isInitialized = false;
+        this.position = 0;
+        this.derivative = 0;
+        this.velocity = 0;
+    }
+
+    private static double smoothingFactor(double elapsedSeconds, double cutoffHz) {
+        double timeConstant = 1 / (2 * Math.PI * cutoffHz);
+        return 1 / (1 + timeConstant / elapsedSeconds);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.reader.services;
+
+import java.util.Locale;
+
+/** Per-stage latencies of the eye-tracking pipeline, from the camera frame to the scroll on screen.
+ * Call sites guard timing with {@link #ENABLED}, a compile-time constant of the build variant,
+ * so release builds compile the instrumentation out.
+ **/
+public class PipelineMetrics {
+    public static final boolean ENABLED = PipelineMetricsSwitch.ENABLED;
+
+    public enum Stage {
+        CAPTURE,
+        QUEUE_WAIT,
+        CONVERSION,
+        FACE_DETECTION,
+        EYES_DETECTION,
+        PUPILS_DETECTION,
+        DISPATCH,
+        FRAME,
+        SCROLL_APPLY
+    }
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final PipelineMetrics instance = new PipelineMetrics();
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private long fpsWindowStartNanos = 0;
+    private int fpsWindowFramesCount = 0;
+    private volatile float framesPerSecond = 0;
+    private PipelineMetrics() {
+        for (int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static PipelineMetrics getInstance() {
+        return instance;
+    }
+
+    /** Records the time elapsed since the given System.nanoTime() reading **/
+    public void record(Stage stage, long startNanos) {
+        this.histograms[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public void onFrameProcessed(long nowNanos) {
+        if (this.fpsWindowStartNanos == 0) {
+            this.fpsWindowStartNanos = nowNanos;
+        }
+
+        this.fpsWindowFramesCount++;
+        long windowNanos = nowNanos - this.fpsWindowStartNanos;
+        if (windowNanos >= NANOS_PER_SECOND) {
+            this.framesPerSecond = this.fpsWindowFramesCount * (float) NANOS_PER_SECOND / windowNanos;
+            this.fpsWindowFramesCount = 0;
+            this.fpsWindowStartNanos = nowNanos;
+        }
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return this.histograms[stage.ordinal()];
+    }
+
+    public float getFramesPerSecond() {
+        return this.framesPerSecond;
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : this.histograms) {
+            histogram.reset();
+        }
+        this.fpsWindowStartNanos = 0;
+        this.fpsWindowFramesCount = 0;
+        this.framesPerSecond = 0;
+    }
+
+    /** One line per stage with its percentiles in milliseconds, for logs and the debug overlay **/
+    public String dump() {
+        StringBuilder report = new StringBuilder(String.format(Locale.US, "%.1f fps", this.framesPerSecond));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = this.getHistogram(stage);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+
+            report.append(String.format(Locale.US, "%n%-16s p50 %6.2f  p95 %6.2f  p99 %6.2f  max %6.2f ms",
+                    stage.name(), histogram.getPercentileMillis(50), histogram.getPercentileMillis(95),
+                    histogram.getPercentileMillis(99), histogram.getMaxMillis()));
+        }
+        return report.toString();
+    }
+}
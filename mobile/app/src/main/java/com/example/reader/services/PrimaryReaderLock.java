@@ -0,0 +1,101 @@
+package com.example.reader.services;
+
+import org.opencv.core.Rect;
+
+/** Keeps eye tracking on a single reader while several faces are in view.
+ * The largest face is locked on and followed from frame to frame by its overlap with its last position,
+ * every other face is ignored. The largest face in view only takes over once the reader was not seen for the lock timeout.
+ **/
+public class PrimaryReaderLock {
+    static final double MIN_LOCKED_FACE_OVERLAP = 0.3;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private final long lockTimeoutNanos;
+    private Rect lockedFace = null;
+    private long lastSeenNanos = 0;
+    private boolean isNewReader = false;
+    private long readerSwitchesCount = 0;
+    public PrimaryReaderLock(long lockTimeoutMillis) {
+        if (lockTimeoutMillis < 0) {
+            throw new IllegalArgumentException("lockTimeoutMillis can not be negative");
+        }
+        this.lockTimeoutNanos = lockTimeoutMillis * NANOS_PER_MILLI;
+    }
+
+    /** Index of the reader among the detected faces, -1 when no face should be processed on this frame **/
+    public int selectPrimaryFace(Rect[] faces, long timestampNanos) {
+        this.isNewReader = false;
+        if (this.lockedFace != null) {
+            int readerIndex = findBestOverlap(faces, this.lockedFace);
+            if (readerIndex >= 0) {
+                this.lockedFace = faces[readerIndex];
+                this.lastSeenNanos = timestampNanos;
+                return readerIndex;
+            }
+
+            // Someone else passing by does not steal the lock while the reader briefly turns away
+            if (timestampNanos - this.lastSeenNanos < this.lockTimeoutNanos) {
+                return -1;
+            }
+            this.lockedFace = null;
+        }
+
+        int dominantIndex = findLargest(faces);
+        if (dominantIndex < 0) {
+            return -1;
+        }
+
+        if (this.lastSeenNanos != 0) {
+            this.readerSwitchesCount++;
+        }
+        this.lockedFace = faces[dominantIndex];
+        this.lastSeenNanos = timestampNanos;
+        this.isNewReader = true;
+        return dominantIndex;
+    }
+
+    /** True on the frame a reader got locked on, the state kept for the previous reader no longer applies **/
+    public boolean isNewReader() {
+        return this.isNewReader;
+    }
+
+    public boolean isLocked() {
+        return this.lockedFace != null;
+    }
+
+    public long getReaderSwitchesCount() {
+        return this.readerSwitchesCount;
+    }
+
+    public void reset() {
+        this.lockedFace = null;
+        this.lastSeenNanos = 0;
+        this.isNewReader = false;
+    }
+
+    private static int findBestOverlap(Rect[] faces, Rect lockedFace) {
+        int bestIndex = -1;
+        double bestOverlap = MIN_LOCKED_FACE_OVERLAP;
+        for (int i = 0; i < faces.length; i++) {
+            double overlap = FaceTracker.intersectionOverUnion(faces[i], lockedFace);
+            if (overlap >= bestOverlap) {
+                bestOverlap = overlap;
+                bestIndex = i;
+            }
+        }
+        return bestIndex;
+    }
+
+    // The reader usually sits closest to the phone, so their face is the largest one
+    private static int findLargest(Rect[] faces) {
+        int largestIndex = -1;
+        double largestArea = 0;
+        for (int i = 0; i < faces.length; i++) {
+            double area = faces[i].area();
+            if (area > largestArea) {
+                largestArea = area;
+                largestIndex = i;
+            }
+        }
+        return largestIndex;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.reader.services;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.Rect;
+
+/** Finds the pupil in an eye frame, the keypoint is in eye frame coordinates and sized by the pupil diameter.
+ * Returned keypoints belong to the caller. An instance is used by one thread at a time, since it keeps its buffers between calls.
+ **/
+public interface PupilLocator {
+    /** CONTOUR thresholds the eye and fits circles on its contours, INTEGRAL searches dark discs on an integral image **/
+    enum Strategy {
+        CONTOUR,
+        INTEGRAL
+    }
+
+    MatOfKeyPoint locatePupil(Mat eyeFrame, Rect eye);
+
+    default void release() {
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.reader.services;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.Rect;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Detects pupils of both eyes of a face, either one after the other or at the same time.
+ * In parallel mode the second eye goes to a single pooled worker while the calling thread
+ * handles the first one, every eye slot owns its pupil locator and so its scratch buffers.
+ **/
+public class PupilsDetectionExecutor {
+    private static final int MAX_EYES_COUNT = 2;
+    private final ExecutorService executor;
+    private final PupilLocator.Strategy pupilLocatorStrategy;
+    private final PupilLocator[] pupilLocators = new PupilLocator[MAX_EYES_COUNT];
+    private long detectionsCount = 0;
+    private long totalLatencyNanos = 0;
+
+    public PupilsDetectionExecutor(PupilsDetectionService pupilsDetectionService, boolean isParallel) {
+        this(pupilsDetectionService, isParallel, PupilLocator.Strategy.CONTOUR);
+    }
+
+    public PupilsDetectionExecutor(PupilsDetectionService pupilsDetectionService, boolean isParallel, PupilLocator.Strategy pupilLocatorStrategy) {
+        this.executor = isParallel ? Executors.newFixedThreadPool(MAX_EYES_COUNT - 1, runnable -> new Thread(runnable, "PupilsDetection")) : null;
+        this.pupilLocatorStrategy = pupilLocatorStrategy;
+        for (int i = 0; i < MAX_EYES_COUNT; i++) {
+            this.pupilLocators[i] = pupilLocatorStrategy == PupilLocator.Strategy.INTEGRAL
+                    ? new IntegralPupilLocator()
+                    : new ContourPupilLocator(pupilsDetectionService);
+        }
+    }
+
+    public MatOfKeyPoint[] detectPupils(Mat[] eyeFrames, Rect[] eyes) {
+        long startNanos = System.nanoTime();
+        int eyesCount = Math.min(eyes.length, MAX_EYES_COUNT);
+        MatOfKeyPoint[] pupils = new MatOfKeyPoint[eyesCount];
+
+        if (this.executor == null || eyesCount < 2) {
+            for (int i = 0; i < eyesCount; i++) {
+                pupils[i] = this.pupilLocators[i].locatePupil(eyeFrames[i], eyes[i]);
+            }
+        } else {
+            Future<MatOfKeyPoint> secondEyePupils = this.executor.submit(
+                    () -> this.pupilLocators[1].locatePupil(eyeFrames[1], eyes[1]));
+            pupils[0] = this.pupilLocators[0].locatePupil(eyeFrames[0], eyes[0]);
+            pupils[1] = this.awaitPupils(secondEyePupils);
+        }
+
+        this.detectionsCount++;
+        this.totalLatencyNanos += System.nanoTime() - startNanos;
+        return pupils;
+    }
+
+    public boolean isParallel() {
+        return this.executor != null;
+    }
+
+    public PupilLocator.Strategy getPupilLocatorStrategy() {
+        return this.pupilLocatorStrategy;
+    }
+
+    /** Average time spent detecting the pupils of one face, both eyes included **/
+    public double getAverageLatencyMicros() {
+        return this.detectionsCount == 0 ? 0 : this.totalLatencyNanos / (double) this.detectionsCount / 1000;
+    }
+
+    public void shutdown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+        for (PupilLocator pupilLocator : this.pupilLocators) {
+            pupilLocator.release();
+        }
+    }
+
+    /** Waits for the second eye even when interrupted, so its locator is never released while the worker still uses it **/
+    private MatOfKeyPoint awaitPupils(Future<MatOfKeyPoint> pupils) {
+        boolean isInterrupted = false;
+        try {
+            while (true) {
+                try {
+                    return pupils.get();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Pupils detection failed", e.getCause());
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.reader.services;
 
+import org.opencv.core.CvType;
 import org.opencv.core.KeyPoint;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfKeyPoint;
@@ -17,50 +18,115 @@ import java.util.Arrays;
 import java.util.List;
 
 public class PupilsDetectionService {
+    private static final Size BLUR_KERNEL_SIZE = new Size(7, 7);
     private final CascadeClassifier faceCascade;
     private final CascadeClassifier eyesCascade;
+    private final double faceDetectionScale;
+    private final double faceCascadeScaleFactor;
+    private final Mat scaledSearchFrame = new Mat();
+    private final Scratch defaultScratch = new Scratch();
     public PupilsDetectionService(CascadeClassifier faceCascade, CascadeClassifier eyesCascade) {
+        this(faceCascade, eyesCascade, new EyeTrackingConfig());
+    }
+
+    public PupilsDetectionService(CascadeClassifier faceCascade, CascadeClassifier eyesCascade, EyeTrackingConfig config) {
         this.faceCascade = faceCascade;
         this.eyesCascade = eyesCascade;
+        this.faceDetectionScale = config.getFaceDetectionScale();
+        this.faceCascadeScaleFactor = config.getFaceCascadeScaleFactor();
     }
     public Rect[] detectFaces(Mat inputFrame) {
+        return this.detectFacesInRegion(inputFrame, new Rect(0, 0, inputFrame.cols(), inputFrame.rows()));
+    }
+
+    /** Same as {@link #detectFaces(Mat)} but searches only the given region, returned rects are in frame coordinates **/
+    public Rect[] detectFacesInRegion(Mat inputFrame, Rect region) {
         MatOfRect faces = new MatOfRect();
         int cameraViewWidth = inputFrame.cols();
         int cameraViewHeight = inputFrame.rows();
 
-        faceCascade.detectMultiScale(inputFrame, faces, 1.05, 3, 2, new Size(30, 30), new Size());
-
+        // Faces are still filtered relatively to the whole camera view
         double minFaceWidth = cameraViewWidth * 0.4;
         double minFaceHeight = cameraViewHeight * 0.4;
 
-        return Arrays.stream(faces.toArray())
+        // Detected faces are squares, so anything smaller than the larger bound is thrown away anyway
+        double minFaceSide = Math.max(minFaceWidth, minFaceHeight);
+        if (region.width < minFaceSide || region.height < minFaceSide) {
+            return new Rect[0];
+        }
+
+        // Search on a downscaled frame where the minimal size already matches the 40% rule
+        Mat regionFrame = inputFrame.submat(region);
+        Mat searchFrame = regionFrame;
+        double scale = this.faceDetectionScale;
+        if (scale < 1) {
+            Imgproc.resize(searchFrame, this.scaledSearchFrame, new Size(), scale, scale, Imgproc.INTER_AREA);
+            searchFrame = this.scaledSearchFrame;
+        }
+        double scaledMinFaceSide = Math.floor(minFaceSide * scale);
+
+        Rect[] detectedFaces;
+        try {
+            faceCascade.detectMultiScale(searchFrame, faces, this.faceCascadeScaleFactor, 3, 2, new Size(scaledMinFaceSide, scaledMinFaceSide), new Size());
+            detectedFaces = faces.toArray();
+        } finally {
+            regionFrame.release();
+            faces.release();
+        }
+
+        // Map faces back to the full resolution frame
+        return Arrays.stream(detectedFaces)
+                .map(face -> this.mapToFullResolution(face, scale, region))
                 .filter(face -> face.width >= minFaceWidth && face.height >= minFaceHeight)
                 .toArray(Rect[]::new);
     }
 
+    private Rect mapToFullResolution(Rect face, double scale, Rect region) {
+        int x = (int) Math.round(face.x / scale) + region.x;
+        int y = (int) Math.round(face.y / scale) + region.y;
+        // Rounding must not push the face out of the searched region
+        int width = Math.min((int) Math.round(face.width / scale), region.x + region.width - x);
+        int height = Math.min((int) Math.round(face.height / scale), region.y + region.height - y);
+        return new Rect(x, y, width, height);
+    }
+
     private boolean isOverlapping(Rect r1, Rect r2) {
         return !(r1.x + r1.width < r2.x || r2.x + r2.width < r1.x || r1.y + r1.height < r2.y || r2.y + r2.height < r1.y);
     }
     public Rect[] detectEyes(Mat faceFrame) {
-        Mat gray = new Mat();
         // Define a region that covers the upper part of the face frame
         int roiHeight = faceFrame.rows() / 2;  // Get the upper half of the face
-        Mat upperFace = new Mat(faceFrame, new Rect(0, 0, faceFrame.cols(), roiHeight));
+        return this.detectEyesInRegion(faceFrame, new Rect(0, 0, faceFrame.cols(), roiHeight));
+    }
 
-        Imgproc.cvtColor(upperFace, gray, Imgproc.COLOR_BGR2GRAY);
-        MatOfRect eyes = new MatOfRect();
-        eyesCascade.detectMultiScale(gray, eyes, 1.1, 2, 0, new Size(15, 15), new Size());
+    /** Searches eyes only inside the given region of the face, returned rects are in face coordinates **/
+    public Rect[] detectEyesInRegion(Mat faceFrame, Rect region) {
+        Mat searchRegion = new Mat(faceFrame, region);
 
-        Rect[] detectedEyes = eyes.toArray();
+        Mat gray = this.toGray(searchRegion);
+        MatOfRect eyes = new MatOfRect();
+        Rect[] detectedEyes;
+        try {
+            eyesCascade.detectMultiScale(gray, eyes, 1.1, 2, 0, new Size(15, 15), new Size());
+            detectedEyes = eyes.toArray();
+        } finally {
+            if (gray != searchRegion) {
+                gray.release();
+            }
+            searchRegion.release();
+            eyes.release();
+        }
         List<Rect> filteredEyes = new ArrayList<>();
 
         for (Rect detectedEye : detectedEyes) {
             boolean isDuplicate = false;
+            // Kept eyes are in face coordinates, so the detection is moved there before being compared
+            Rect faceEye = new Rect(detectedEye.x + region.x, detectedEye.y + region.y, detectedEye.width, detectedEye.height);
 
             // Check for overlap with previously added eyes
             for (Rect existingEye : filteredEyes) {
                 // If the detected eye overlaps with any previously added eye, skip it
-                if (isOverlapping(existingEye, detectedEye)) {
+                if (isOverlapping(existingEye, faceEye)) {
                     isDuplicate = true;
                     break;
                 }
@@ -68,7 +134,7 @@ public class PupilsDetectionService {
 
             if (!isDuplicate) {
                 // Add the valid eye (up to a maximum of 2 eyes)
-                filteredEyes.add(detectedEye);
+                filteredEyes.add(faceEye);
                 if (filteredEyes.size() == 2) {
                     break;  // Stop after detecting two valid eyes
                 }
@@ -79,54 +145,67 @@ public class PupilsDetectionService {
     }
 
     public MatOfKeyPoint detectPupils(Mat eyeFrame, Rect eye) {
+        return this.detectPupils(eyeFrame, eye, this.defaultScratch);
+    }
+
+    /** Same as {@link #detectPupils(Mat, Rect)}, concurrent callers must pass their own scratch.
+     * The returned keypoints belong to the caller, who releases them.
+     **/
+    public MatOfKeyPoint detectPupils(Mat eyeFrame, Rect eye, Scratch scratch) {
         Point eyeCenter = new Point(eye.x + eye.width / 2.0, eye.y + eye.height / 2.0);
         // Convert to grayscale
-        Mat gray = new Mat();
-        Imgproc.cvtColor(eyeFrame, gray, Imgproc.COLOR_BGR2GRAY);
+        Mat eyeGray = eyeFrame;
+        if (eyeFrame.channels() != 1) {
+            Imgproc.cvtColor(eyeFrame, scratch.gray, Imgproc.COLOR_BGR2GRAY);
+            eyeGray = scratch.gray;
+        }
 
-        // Apply Gaussian blur to reduce noise
-        Imgproc.GaussianBlur(gray, gray, new Size(7, 7), 0);
+        // Apply Gaussian blur to reduce noise, writing into scratch so a shared luma frame stays untouched
+        Mat blurred = scratch.blurred;
+        Imgproc.GaussianBlur(eyeGray, blurred, BLUR_KERNEL_SIZE, 0);
 
         // Apply inverse thresholding to highlight dark pupils
-        Imgproc.threshold(gray, gray, 30, 255, Imgproc.THRESH_BINARY_INV | Imgproc.THRESH_OTSU);
+        Imgproc.threshold(blurred, blurred, 30, 255, Imgproc.THRESH_BINARY_INV | Imgproc.THRESH_OTSU);
 
         // Find contours
-        List<MatOfPoint> contours = new ArrayList<>();
-        Mat hierarchy = new Mat();
-        Imgproc.findContours(gray, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+        List<MatOfPoint> contours = scratch.contours;
+        scratch.releaseContours();
+        Imgproc.findContours(blurred, contours, scratch.hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
 
         // Find the largest circular contour (likely the pupil)
         double maxArea = 0;
-        Point bestPupilCenter = null;
+        boolean isPupilFound = false;
+        double bestPupilX = 0;
+        double bestPupilY = 0;
         float bestPupilRadius = 0;
 
         for (MatOfPoint contour : contours) {
             double area = Imgproc.contourArea(contour);
             if (area > 50 && area < 5000) { // Filter out noise and large objects
                 // Fit an enclosing circle around the contour
-                MatOfPoint2f contour2f = new MatOfPoint2f(contour.toArray());
-                Point center = new Point();
-                float[] radius = new float[1];
-                Imgproc.minEnclosingCircle(contour2f, center, radius);
+                contour.convertTo(scratch.contour2f, CvType.CV_32F);
+                Imgproc.minEnclosingCircle(scratch.contour2f, scratch.center, scratch.radius);
 
                 // Ensure the detected region is roughly circular
-                double circularity = 4 * Math.PI * (area / (Math.pow(radius[0] * 2, 2)));
+                double circularity = 4 * Math.PI * (area / (Math.pow(scratch.radius[0] * 2, 2)));
                 if (circularity > 0.5 && area > maxArea) {
                     maxArea = area;
-                    bestPupilCenter = center;
-                    bestPupilRadius = radius[0];
+                    isPupilFound = true;
+                    bestPupilX = scratch.center.x;
+                    bestPupilY = scratch.center.y;
+                    bestPupilRadius = scratch.radius[0];
                 }
             }
         }
 
         MatOfKeyPoint keypoints = new MatOfKeyPoint();
-        if (bestPupilCenter == null) {
+        if (!isPupilFound) {
             return keypoints;
         }
 
         double distance = Math.sqrt(
-                Math.pow(bestPupilCenter.x - eyeCenter.x, 2) +
-                        Math.pow(bestPupilCenter.y - eyeCenter.y, 2));
+                Math.pow(bestPupilX - eyeCenter.x, 2) +
+                        Math.pow(bestPupilY - eyeCenter.y, 2));
 
         // Keep only the keypoints that are within a certain distance from the eye center
         int maximalPupilDistanceToEyeCenter = 200;
@@ -135,9 +214,46 @@ public class PupilsDetectionService {
         }
 
         // Store detected pupil as a keypoint
-        KeyPoint keypoint = new KeyPoint((float) bestPupilCenter.x, (float) bestPupilCenter.y, bestPupilRadius * 2);
+        KeyPoint keypoint = new KeyPoint((float) bestPupilX, (float) bestPupilY, bestPupilRadius * 2);
         keypoints.fromArray(keypoint);
 
         return keypoints;
     }
+
+    // Luma frames are single channel already and are used as is
+    private Mat toGray(Mat frame) {
+        if (frame.channels() == 1) {
+            return frame;
+        }
+
+        Mat gray = new Mat();
+        Imgproc.cvtColor(frame, gray, Imgproc.COLOR_BGR2GRAY);
+        return gray;
+    }
+
+    /** Per-thread buffers reused by pupil detection between frames **/
+    public static class Scratch {
+        private final Mat gray = new Mat();
+        private final Mat blurred = new Mat();
+        private final Mat hierarchy = new Mat();
+        private final MatOfPoint2f contour2f = new MatOfPoint2f();
+        private final List<MatOfPoint> contours = new ArrayList<>();
+        private final Point center = new Point();
+        private final float[] radius = new float[1];
+
+        private void releaseContours() {
+            for (MatOfPoint contour : this.contours) {
+                contour.release();
+            }
+            this.contours.clear();
+        }
+
+        public void release() {
+            this.releaseContours();
+            this.gray.release();
+            this.blurred.release();
+            this.hierarchy.release();
+            this.contour2f.release();
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package com.example.reader.services;
+
+import android.content.Context;
+
+import com.amazonaws.auth.AWSCredentials;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.regions.Region;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Client;
+import com.example.reader.BuildConfig;
+
+/** Services shared by every screen for the lifetime of the process: a single S3 client with its connection pool,
+ * a bounded I/O executor for the screens, one for book downloads, and the books and reading progress services built on them.
+ **/
+public class ReaderServices {
+    // Catalog loads, disk reads and book opening, chunk downloads never hold these threads
+    private static final int IO_THREADS_COUNT = 3;
+    // Chunks of one book at a time, concurrent downloads take turns chunk by chunk
+    private static final int DOWNLOAD_THREADS_COUNT = BooksService.PARALLEL_CHUNKS_COUNT;
+    private static ReaderServices instance;
+    private final IoExecutor ioExecutor;
+    private final IoExecutor downloadExecutor;
+    private final ReadProgressService readProgressService;
+    private final BooksService booksService;
+    private ReaderServices(Context applicationContext) {
+        // Load AWS credentials from local.properties
+        AWSCredentials awsCreds = new BasicAWSCredentials(BuildConfig.AWS_ACCESS_KEY, BuildConfig.AWS_SECRET_KEY);
+        AmazonS3 s3Client = new AmazonS3Client(awsCreds, Region.getRegion(BuildConfig.AWS_REGION));
+
+        this.ioExecutor = new IoExecutor(IO_THREADS_COUNT, "ReaderIO");
+        this.downloadExecutor = new IoExecutor(DOWNLOAD_THREADS_COUNT, "ReaderDownload");
+        this.readProgressService = new ReadProgressService(applicationContext);
+        this.booksService = new BooksService(applicationContext, s3Client, this.readProgressService,
+                this.downloadExecutor.asExecutor(IoExecutor.Priority.INTERACTIVE));
+    }
+
+    public static synchronized ReaderServices getInstance(Context context) {
+        if (instance == null) {
+            // Bound to the application, so no screen is kept alive by the services
+            instance = new ReaderServices(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public IoExecutor getIoExecutor() {
+        return ioExecutor;
+    }
+
+    public ReadProgressService getReadProgressService() {
+        return readProgressService;
+    }
+
+    public BooksService getBooksService() {
+        return booksService;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.reader.services;
+
+/** View scrolled by the gaze, kept apart from the PDF view so the scroll logic runs without Android **/
+public interface ScrollTarget {
+    void scrollBy(float distance);
+
+    int getCurrentPageIndex();
+
+    void loadPages();
+}
@@ -0,0 +1,78 @@
+package com.example.reader.services;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.os.ProxyFileDescriptorCallback;
+import android.os.storage.StorageManager;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+import android.util.Log;
+
+import com.github.barteksc.pdfviewer.source.DocumentSource;
+import com.shockwave.pdfium.PdfDocument;
+import com.shockwave.pdfium.PdfiumCore;
+
+import java.io.IOException;
+
+/** Opens a book that is still downloading through a proxy file descriptor. PDFium reads the trailer,
+ * the cross-reference table and the objects of the pages it renders on demand, and each read waits only
+ * for the chunks it falls in, which the download fetches ahead of the rest of the book.
+ **/
+public class StreamingDocumentSource implements DocumentSource {
+    private static final String TAG = "StreamingDocumentSource";
+    private final BookDownloader.Session bookDownload;
+    /** Takes over the retained download, released once PDFium closes the document **/
+    public StreamingDocumentSource(BookDownloader.Session bookDownload) {
+        this.bookDownload = bookDownload;
+    }
+
+    @Override
+    public PdfDocument createDocument(Context context, PdfiumCore core, String password) throws IOException {
+        // Reads are answered on their own thread, since they block while a chunk is downloading
+        HandlerThread readsThread = new HandlerThread("BookStream");
+        readsThread.start();
+        ParcelFileDescriptor fileDescriptor;
+        try {
+            StorageManager storageManager = context.getSystemService(StorageManager.class);
+            fileDescriptor = storageManager.openProxyFileDescriptor(ParcelFileDescriptor.MODE_READ_ONLY,
+                    new DownloadReadCallback(this.bookDownload, readsThread), new Handler(readsThread.getLooper()));
+        } catch (IOException | RuntimeException error) {
+            readsThread.quitSafely();
+            this.bookDownload.release();
+            throw error;
+        }
+        return core.newDocument(fileDescriptor, password);
+    }
+
+    private static class DownloadReadCallback extends ProxyFileDescriptorCallback {
+        private final BookDownloader.Session bookDownload;
+        private final HandlerThread readsThread;
+        private DownloadReadCallback(BookDownloader.Session bookDownload, HandlerThread readsThread) {
+            this.bookDownload = bookDownload;
+            this.readsThread = readsThread;
+        }
+
+        @Override
+        public long onGetSize() {
+            return this.bookDownload.getSizeBytes();
+        }
+
+        @Override
+        public int onRead(long offset, int size, byte[] data) throws ErrnoException {
+            try {
+                return this.bookDownload.read(offset, data, size);
+            } catch (IOException error) {
+                Log.e(TAG, "Can not read " + this.bookDownload.getKey() + " at " + offset, error);
+                throw new ErrnoException("onRead", OsConstants.EIO);
+            }
+        }
+
+        @Override
+        public void onRelease() {
+            this.bookDownload.release();
+            this.readsThread.quitSafely();
+        }
+    }
+}
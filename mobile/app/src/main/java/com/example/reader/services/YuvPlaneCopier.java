@@ -0,0 +1,142 @@
+package com.example.reader.services;
+
+import java.nio.ByteBuffer;
+
+/** Copies YUV_420_888 planes into a contiguous staging array without allocating.
+ * The output layout matches the one produced by the original per-byte loop:
+ * full Y plane followed by V/U bytes interleaved row by row.
+ **/
+public final class YuvPlaneCopier {
+    /** How the U and V planes of a stream lie in memory, found once per stream configuration **/
+    public enum ChromaLayout {
+        // Not told apart yet, copied sample by sample meanwhile
+        UNKNOWN,
+        // NV21, V and U alternate in one buffer and the U plane starts one byte after the V plane
+        INTERLEAVED,
+        SEPARATE
+    }
+
+    private YuvPlaneCopier() {}
+
+    public static int copyLumaPlane(ByteBuffer yBuffer, int yRowStride, int width, int height, byte[] yuvData, int offset) {
+        int pos = offset;
+
+        // Rows are tightly packed, so the whole plane can be copied in one go
+        if (yRowStride == width) {
+            yBuffer.position(0);
+            yBuffer.get(yuvData, pos, width * height);
+            return pos + width * height;
+        }
+
+        for (int row = 0; row < height; row++) {
+            yBuffer.position(row * yRowStride);
+            yBuffer.get(yuvData, pos, width);
+            pos += width;
+        }
+
+        return pos;
+    }
+
+    /** Copies the Y plane into a tightly packed buffer, e.g. the direct buffer backing a luma Mat **/
+    public static void copyLumaPlane(ByteBuffer yBuffer, int yRowStride, int width, int height, ByteBuffer luma) {
+        int yLimit = yBuffer.limit();
+        luma.clear();
+
+        // Rows are tightly packed, so the whole plane can be copied in one go
+        if (yRowStride == width) {
+            yBuffer.position(0);
+            yBuffer.limit(width * height);
+            luma.put(yBuffer);
+            yBuffer.limit(yLimit);
+            luma.flip();
+            return;
+        }
+
+        for (int row = 0; row < height; row++) {
+            int rowStart = row * yRowStride;
+            yBuffer.limit(rowStart + width);
+            yBuffer.position(rowStart);
+            luma.put(yBuffer);
+            yBuffer.limit(yLimit);
+        }
+        luma.flip();
+    }
+
+    /** Writes V/U pairs row by row. Interleaved planes already hold that order and are copied in bulk,
+     * planar planes are read row by row and any other layout byte by byte.
+     **/
+    public static int copyChromaPlanes(ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int uvPixelStride, ChromaLayout chromaLayout,
+                                       int width, int height, byte[] yuvData, int offset, byte[] uRow, byte[] vRow) {
+        int pos = offset;
+        int chromaWidth = width / 2;
+
+        if (chromaLayout == ChromaLayout.INTERLEAVED) {
+            for (int row = 0; row < height / 2; row++) {
+                // The V buffer ends on the last V byte, so the U byte closing each row is read from the U buffer
+                int rowStart = row * uvRowStride;
+                vBuffer.position(rowStart);
+                vBuffer.get(yuvData, pos, 2 * chromaWidth - 1);
+                pos += 2 * chromaWidth - 1;
+                yuvData[pos++] = uBuffer.get(rowStart + 2 * chromaWidth - 2);
+            }
+            return pos;
+        }
+
+        if (uvPixelStride == 1) {
+            for (int row = 0; row < height / 2; row++) {
+                // Bulk read both rows and interleave them in the staging array
+                uBuffer.position(row * uvRowStride);
+                vBuffer.position(row * uvRowStride);
+                uBuffer.get(uRow, 0, chromaWidth);
+                vBuffer.get(vRow, 0, chromaWidth);
+
+                for (int col = 0; col < chromaWidth; col++) {
+                    yuvData[pos++] = vRow[col]; // V
+                    yuvData[pos++] = uRow[col]; // U
+                }
+            }
+            return pos;
+        }
+
+        for (int row = 0; row < height / 2; row++) {
+            int rowStart = row * uvRowStride;
+            for (int col = 0; col < chromaWidth; col++) {
+                int index = rowStart + col * uvPixelStride;
+                yuvData[pos++] = vBuffer.get(index); // V
+                yuvData[pos++] = uBuffer.get(index); // U
+            }
+        }
+
+        return pos;
+    }
+
+    /** Reads the planes of one frame, never writing into the camera's buffers. In NV21 every U sample is also the
+     * V buffer byte right after its V sample. A frame with a single U value can not tell that from separate planes
+     * and leaves the layout UNKNOWN.
+     **/
+    public static ChromaLayout detectChromaLayout(ByteBuffer uBuffer, ByteBuffer vBuffer, int uvRowStride, int uvPixelStride,
+                                                  int width, int height) {
+        if (uvPixelStride != 2) {
+            return ChromaLayout.SEPARATE;
+        }
+
+        byte firstU = uBuffer.get(0);
+        boolean isUniform = true;
+        for (int row = 0; row < height / 2; row++) {
+            for (int col = 0; col < width / 2; col++) {
+                int index = row * uvRowStride + col * uvPixelStride;
+                // The last U sample lies past the end of the V buffer in both layouts
+                if (index + 1 >= vBuffer.limit()) {
+                    continue;
+                }
+                byte uSample = uBuffer.get(index);
+                if (vBuffer.get(index + 1) != uSample) {
+                    return ChromaLayout.SEPARATE;
+                }
+                isUniform &= uSample == firstU;
+            }
+        }
+
+        return isUniform ? ChromaLayout.UNKNOWN : ChromaLayout.INTERLEAVED;
+    }
+}
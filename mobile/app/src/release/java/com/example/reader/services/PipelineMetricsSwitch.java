@@ -0,0 +1,8 @@
+package com.example.reader.services;
+
+/** Release builds compile the pipeline instrumentation out, see {@link PipelineMetrics} **/
+final class PipelineMetricsSwitch {
+    static final boolean ENABLED = false;
+
+    private PipelineMetricsSwitch() {}
+}
@@ -0,0 +1,312 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BookDownloaderTest {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final String KEY = "Atlas_Shrugged__Ayn_Rand.pdf";
+
+    private File downloadsDir;
+    private File targetFile;
+    private byte[] book;
+    private FakeObjectSource objectSource;
+    private ExecutorService chunkExecutor;
+
+    @Before
+    public void setUp() throws IOException, NoSuchAlgorithmException {
+        this.downloadsDir = Files.createTempDirectory("downloads").toFile();
+        this.targetFile = new File(this.downloadsDir, KEY);
+        this.book = new byte[CHUNK_SIZE * 5 + 123];
+        new Random(3).nextBytes(this.book);
+        this.objectSource = new FakeObjectSource(this.book, md5(this.book));
+        this.chunkExecutor = Executors.newFixedThreadPool(3, BookDownloaderTest::newDaemonThread);
+    }
+
+    @Test
+    public void download_fetchesChunksInParallelIntoPlace() throws IOException {
+        BookDownloader downloader = this.newDownloader();
+        List<File> downloadedFiles = new ArrayList<>();
+        downloader.setDownloadListener(downloadedFiles::add);
+        downloader.download(KEY, this.targetFile);
+
+        assertEquals(Collections.singletonList(this.targetFile), downloadedFiles);
+        assertArrayEquals(this.book, Files.readAllBytes(this.targetFile.toPath()));
+        assertEquals(6, this.objectSource.rangesCount.get());
+        assertFalse(new File(this.stateDir(), KEY + ".part").exists());
+        assertFalse(new File(this.stateDir(), KEY + ".state").exists());
+    }
+
+    @Test
+    public void download_reusesMatchingLocalCopy() throws IOException, NoSuchAlgorithmException {
+        this.newDownloader().download(KEY, this.targetFile);
+        this.objectSource.rangesCount.set(0);
+
+        this.newDownloader().download(KEY, this.targetFile);
+        assertEquals(0, this.objectSource.rangesCount.get());
+
+        // A new version of the book in the bucket is downloaded again
+        this.book[0]++;
+        this.objectSource.eTag = md5(this.book);
+        this.newDownloader().download(KEY, this.targetFile);
+        assertEquals(6, this.objectSource.rangesCount.get());
+        assertArrayEquals(this.book, Files.readAllBytes(this.targetFile.toPath()));
+    }
+
+    @Test
+    public void download_resumesCompletedChunks() throws IOException {
+        this.chunkExecutor = Executors.newSingleThreadExecutor(BookDownloaderTest::newDaemonThread);
+        this.objectSource.failingRangeStart = 3L * CHUNK_SIZE;
+        try {
+            this.newDownloader().download(KEY, this.targetFile);
+            fail("The failing chunk must fail the download");
+        } catch (IOException expected) {
+            assertFalse(this.targetFile.exists());
+        }
+
+        // A new downloader, as after process death, fetches only the chunks not completed before
+        this.objectSource.failingRangeStart = -1;
+        this.objectSource.rangesCount.set(0);
+        this.newDownloader().download(KEY, this.targetFile);
+        assertEquals(1, this.objectSource.rangesCount.get());
+        assertArrayEquals(this.book, Files.readAllBytes(this.targetFile.toPath()));
+    }
+
+    @Test
+    public void download_rejectsCorruptedData() throws IOException {
+        this.objectSource.eTag = "0123456789abcdef0123456789abcdef";
+        try {
+            this.newDownloader().download(KEY, this.targetFile);
+            fail("Data not matching the ETag must be rejected");
+        } catch (IOException expected) {
+            assertFalse(this.targetFile.exists());
+            assertFalse(new File(this.stateDir(), KEY + ".part").exists());
+        }
+    }
+
+    @Test
+    public void download_failsWhenChunksCanNotBeScheduled() throws IOException {
+        // The first worker downloads one chunk, the executor is shut down before anything else is handed over
+        ExecutorService workers = this.chunkExecutor;
+        AtomicInteger scheduledCount = new AtomicInteger();
+        BookDownloader downloader = new BookDownloader(this.objectSource, task -> {
+            if (scheduledCount.getAndIncrement() > 0) {
+                throw new RejectedExecutionException("Shut down");
+            }
+            workers.execute(task);
+        }, CHUNK_SIZE, 3);
+
+        try {
+            downloader.download(KEY, this.targetFile);
+            fail("Workers refused by the executor must fail the download");
+        } catch (IOException expected) {
+            assertFalse(this.targetFile.exists());
+        }
+
+        // Nothing is left waiting, the completed chunk is resumed by the next attempt
+        this.objectSource.rangesCount.set(0);
+        this.newDownloader().download(KEY, this.targetFile);
+        assertEquals(5, this.objectSource.rangesCount.get());
+        assertArrayEquals(this.book, Files.readAllBytes(this.targetFile.toPath()));
+    }
+
+    @Test
+    public void download_startsOverWhenBookIsReplaced() throws IOException, NoSuchAlgorithmException {
+        this.chunkExecutor = Executors.newSingleThreadExecutor(BookDownloaderTest::newDaemonThread);
+        // The bucket gets a new version of the book once two chunks of the old one are on disk
+        byte[] newBook = Arrays.copyOf(this.book, this.book.length - 7);
+        newBook[0]++;
+        this.objectSource.replacement = newBook;
+        this.objectSource.replacementETag = md5(newBook);
+        this.objectSource.replacedAfterRangesCount = 2;
+
+        try {
+            this.newDownloader().download(KEY, this.targetFile);
+            fail("A book replaced while it downloads must fail the download");
+        } catch (BookDownloader.ObjectChangedException expected) {
+            // Two chunks of the old version, then the refused one
+            assertEquals(3, this.objectSource.rangesCount.get());
+            assertFalse(this.targetFile.exists());
+            assertFalse(new File(this.stateDir(), KEY + ".state").exists());
+        }
+
+        // Nothing of the old version is kept, every chunk of the new one is fetched
+        this.objectSource.rangesCount.set(0);
+        this.newDownloader().download(KEY, this.targetFile);
+        assertArrayEquals(newBook, Files.readAllBytes(this.targetFile.toPath()));
+        assertEquals(6, this.objectSource.rangesCount.get());
+    }
+
+    @Test
+    public void open_concurrentBooksTakeTurns() throws Exception {
+        this.chunkExecutor = Executors.newSingleThreadExecutor(BookDownloaderTest::newDaemonThread);
+        this.objectSource.firstRangeGate = new CountDownLatch(1);
+        BookDownloader downloader = new BookDownloader(this.objectSource, this.chunkExecutor, CHUNK_SIZE, 1);
+        String otherKey = "The_Fountainhead__Ayn_Rand.pdf";
+
+        // The second book is opened while the only download thread is busy with the first one
+        BookDownloader.Session session = downloader.open(KEY, this.targetFile);
+        BookDownloader.Session otherSession = downloader.open(otherKey, new File(this.downloadsDir, otherKey));
+        this.objectSource.firstRangeGate.countDown();
+        session.awaitFile();
+        otherSession.awaitFile();
+        session.release();
+        otherSession.release();
+
+        List<String> expectedKeys = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            expectedKeys.add(KEY);
+            expectedKeys.add(otherKey);
+        }
+        assertEquals(expectedKeys, this.objectSource.rangeKeys);
+    }
+
+    @Test
+    public void download_keepsLocalCopyWhenOffline() throws IOException {
+        this.newDownloader().download(KEY, this.targetFile);
+        this.objectSource.isOffline = true;
+
+        assertEquals(this.targetFile, this.newDownloader().download(KEY, this.targetFile));
+        assertTrue(this.targetFile.isFile());
+    }
+
+    @Test
+    public void open_fetchesReadBytesBeforeRestOfBook() throws Exception {
+        this.chunkExecutor = Executors.newSingleThreadExecutor(BookDownloaderTest::newDaemonThread);
+        this.objectSource.firstRangeGate = new CountDownLatch(1);
+        BookDownloader.Session session = new BookDownloader(this.objectSource, this.chunkExecutor, CHUNK_SIZE, 1).open(KEY, this.targetFile);
+        assertFalse(session.isComplete());
+
+        // The reader waits on a page in the middle while the trailer chunk is still downloading
+        byte[] pageBytes = new byte[100];
+        long pagePosition = 2L * CHUNK_SIZE + 10;
+        int[] readLength = new int[1];
+        Thread reader = newDaemonThread(() -> {
+            try {
+                readLength[0] = session.read(pagePosition, pageBytes, pageBytes.length);
+            } catch (IOException error) {
+                readLength[0] = -1;
+            }
+        });
+        reader.start();
+        while (reader.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        this.objectSource.firstRangeGate.countDown();
+        reader.join();
+
+        assertEquals(pageBytes.length, readLength[0]);
+        assertArrayEquals(Arrays.copyOfRange(this.book, (int) pagePosition, (int) pagePosition + pageBytes.length), pageBytes);
+        assertEquals(this.targetFile, session.awaitFile());
+        session.release();
+        assertEquals(Arrays.asList(5L, 2L, 0L, 1L, 3L, 4L), this.objectSource.rangeChunks());
+        assertArrayEquals(this.book, Files.readAllBytes(this.targetFile.toPath()));
+    }
+
+    private BookDownloader newDownloader() {
+        return new BookDownloader(this.objectSource, this.chunkExecutor, CHUNK_SIZE, 3);
+    }
+
+    private File stateDir() {
+        return new File(this.downloadsDir, BookDownloader.STATE_DIRECTORY_NAME);
+    }
+
+    // Worker threads left idle by a test must not keep the test JVM alive
+    private static Thread newDaemonThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static String md5(byte[] data) throws NoSuchAlgorithmException {
+        StringBuilder digest = new StringBuilder();
+        for (byte digestByte : MessageDigest.getInstance("MD5").digest(data)) {
+            digest.append(String.format("%02x", digestByte));
+        }
+        return digest.toString();
+    }
+
+    private static class FakeObjectSource implements BookDownloader.ObjectSource {
+        private volatile byte[] data;
+        private final AtomicInteger rangesCount = new AtomicInteger();
+        private volatile String eTag;
+        private volatile long failingRangeStart = -1;
+        private volatile boolean isOffline = false;
+        private volatile CountDownLatch firstRangeGate;
+        private volatile byte[] replacement;
+        private volatile String replacementETag;
+        private volatile int replacedAfterRangesCount = -1;
+        private final List<Long> rangeStarts = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> rangeKeys = Collections.synchronizedList(new ArrayList<>());
+
+        private FakeObjectSource(byte[] data, String eTag) {
+            this.data = data;
+            this.eTag = eTag;
+        }
+
+        @Override
+        public BookDownloader.ObjectInfo getObjectInfo(String key) throws IOException {
+            if (this.isOffline) {
+                throw new IOException("Offline");
+            }
+            return new BookDownloader.ObjectInfo(this.data.length, "\"" + this.eTag + "\"");
+        }
+
+        @Override
+        public InputStream openRange(String key, String eTag, long start, long end) throws IOException {
+            int rangeIndex = this.rangesCount.getAndIncrement();
+            if (rangeIndex == this.replacedAfterRangesCount) {
+                this.data = this.replacement;
+                this.eTag = this.replacementETag;
+            }
+            if (!eTag.equals(this.eTag)) {
+                throw new BookDownloader.ObjectChangedException(key, null);
+            }
+            if (rangeIndex == 0 && this.firstRangeGate != null) {
+                try {
+                    this.firstRangeGate.await();
+                } catch (InterruptedException error) {
+                    throw new IOException(error);
+                }
+            }
+            this.rangeStarts.add(start);
+            this.rangeKeys.add(key);
+            if (start == this.failingRangeStart) {
+                throw new IOException("Connection reset");
+            }
+            return new ByteArrayInputStream(this.data, (int) start, (int) (end - start + 1));
+        }
+
+        private List<Long> rangeChunks() {
+            List<Long> chunks = new ArrayList<>();
+            for (long start : this.rangeStarts) {
+                chunks.add(start / CHUNK_SIZE);
+            }
+            return chunks;
+        }
+    }
+}
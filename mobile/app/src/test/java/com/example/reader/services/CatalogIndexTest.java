@@ -0,0 +1,107 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.example.reader.entities.Book;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CatalogIndexTest {
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+
+    private File indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        this.indexFile = File.createTempFile("catalog-index", ".bin");
+        this.indexFile.deleteOnExit();
+        assertTrue(this.indexFile.delete());
+    }
+
+    @Test
+    public void applyListing_persistsParsedBooks() throws IOException {
+        CatalogIndex index = CatalogIndex.load(this.indexFile, SYNC_INTERVAL_MILLIS);
+        assertTrue(index.applyListing(Arrays.asList(
+                entry("War_and_Peace__Leo_Tolstoy.pdf", "a"),
+                entry("Dune__Frank_Herbert.pdf", "b")), 0));
+
+        List<Book> books = CatalogIndex.load(this.indexFile, SYNC_INTERVAL_MILLIS).getBooks();
+        assertEquals(2, books.size());
+        assertEquals("War and Peace", books.get(0).getName());
+        assertEquals("Leo Tolstoy", books.get(0).getAuthor());
+        assertEquals("Dune__Frank_Herbert.pdf", books.get(1).getFileName());
+    }
+
+    @Test
+    public void applyListing_reparsesOnlyChangedObjects() throws IOException {
+        CatalogIndex index = CatalogIndex.load(this.indexFile, SYNC_INTERVAL_MILLIS);
+        index.applyListing(Arrays.asList(entry("Dune__Frank_Herbert.pdf", "a"), entry("Emma__Jane_Austen.pdf", "b")), 0);
+        List<Book> firstBooks = index.getBooks();
+        long savedModified = this.indexFile.lastModified();
+
+        assertFalse(index.applyListing(Arrays.asList(entry("Dune__Frank_Herbert.pdf", "a"), entry("Emma__Jane_Austen.pdf", "b")), 10));
+        assertSame(firstBooks.get(0), index.getBooks().get(0));
+        assertEquals(savedModified, this.indexFile.lastModified());
+
+        assertTrue(index.applyListing(Arrays.asList(entry("Dune__Frank_Herbert.pdf", "a"), entry("Emma__Jane_Austen.pdf", "c")), 20));
+        assertSame(firstBooks.get(0), index.getBooks().get(0));
+        assertNotSame(firstBooks.get(1), index.getBooks().get(1));
+    }
+
+    @Test
+    public void applyListing_dropsRemovedObjects() throws IOException {
+        CatalogIndex index = CatalogIndex.load(this.indexFile, SYNC_INTERVAL_MILLIS);
+        index.applyListing(Arrays.asList(entry("Dune__Frank_Herbert.pdf", "a"), entry("Emma__Jane_Austen.pdf", "b")), 0);
+
+        assertTrue(index.applyListing(Arrays.asList(entry("Dune__Frank_Herbert.pdf", "a")), 10));
+        assertEquals(1, CatalogIndex.load(this.indexFile, SYNC_INTERVAL_MILLIS).size());
+    }
+
+    @Test
+    public void applyListing_keepsListingsLongerThanOnePage() throws IOException {
+        List<CatalogIndex.Entry> listedEntries = new ArrayList<>();
+        for (int bookIndex = 0; bookIndex < 2500; bookIndex++) {
+            listedEntries.add(entry("Book_" + bookIndex + "__Author.pdf", "e" + bookIndex));
+        }
+
+        CatalogIndex.load(this.indexFile, SYNC_INTERVAL_MILLIS).applyListing(listedEntries, 0);
+        assertEquals(2500, CatalogIndex.load(this.indexFile, SYNC_INTERVAL_MILLIS).size());
+    }
+
+    @Test
+    public void isSyncDue_waitsForInterval() throws IOException {
+        CatalogIndex index = CatalogIndex.load(this.indexFile, SYNC_INTERVAL_MILLIS);
+        assertTrue(index.isSyncDue(0));
+
+        index.applyListing(new ArrayList<>(), 5000);
+        assertFalse(index.isSyncDue(5000 + SYNC_INTERVAL_MILLIS - 1));
+        assertTrue(index.isSyncDue(5000 + SYNC_INTERVAL_MILLIS));
+    }
+
+    @Test
+    public void load_ignoresCorruptedFile() throws IOException {
+        try (FileOutputStream output = new FileOutputStream(this.indexFile)) {
+            output.write(new byte[]{1, 0, 0, 0, 5, 0});
+        }
+
+        CatalogIndex index = CatalogIndex.load(this.indexFile, SYNC_INTERVAL_MILLIS);
+        assertEquals(0, index.size());
+        assertTrue(index.isSyncDue(0));
+    }
+
+    private static CatalogIndex.Entry entry(String key, String eTag) {
+        return new CatalogIndex.Entry(key, eTag, 1_700_000_000_000L, 1024);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class DownloadedBooksIndexTest {
+    private File downloadsDir;
+
+    @Before
+    public void setUp() throws IOException {
+        this.downloadsDir = Files.createTempDirectory("downloads").toFile();
+    }
+
+    @Test
+    public void load_keepsOnlyCompleteBooks() throws IOException {
+        this.createFile("Emma__Jane_Austen.pdf");
+        this.createFile("Dune__Frank_Herbert.pdf");
+        this.createFile("notes.txt");
+        File stateDirectory = new File(this.downloadsDir, BookDownloader.STATE_DIRECTORY_NAME);
+        assertTrue(stateDirectory.mkdir());
+        assertTrue(new File(stateDirectory, "Atlas_Shrugged__Ayn_Rand.pdf.part").createNewFile());
+
+        DownloadedBooksIndex index = new DownloadedBooksIndex(this.downloadsDir);
+        assertFalse(index.isLoaded());
+        index.load();
+
+        assertTrue(index.isLoaded());
+        assertEquals(Arrays.asList("Dune__Frank_Herbert.pdf", "Emma__Jane_Austen.pdf"), index.getFileNames());
+        assertFalse(index.contains("notes.txt"));
+    }
+
+    @Test
+    public void load_listsDirectoryOnce() throws IOException {
+        DownloadedBooksIndex index = new DownloadedBooksIndex(this.downloadsDir);
+        index.load();
+
+        // Later changes come from the observer and the download and delete paths only
+        this.createFile("Emma__Jane_Austen.pdf");
+        index.load();
+        assertFalse(index.contains("Emma__Jane_Austen.pdf"));
+
+        index.add("Emma__Jane_Austen.pdf");
+        assertTrue(index.contains("Emma__Jane_Austen.pdf"));
+        index.remove("Emma__Jane_Austen.pdf");
+        assertFalse(index.contains("Emma__Jane_Austen.pdf"));
+    }
+
+    @Test
+    public void refresh_followsReportedFile() throws IOException {
+        DownloadedBooksIndex index = new DownloadedBooksIndex(this.downloadsDir);
+        index.load();
+
+        File book = this.createFile("Dune__Frank_Herbert.pdf");
+        index.refresh(book.getName());
+        assertTrue(index.contains(book.getName()));
+
+        assertTrue(book.delete());
+        index.refresh(book.getName());
+        assertFalse(index.contains(book.getName()));
+
+        // Events of the state directory and of other files are ignored
+        index.refresh(BookDownloader.STATE_DIRECTORY_NAME);
+        index.refresh(null);
+        assertTrue(index.getFileNames().isEmpty());
+    }
+
+    private File createFile(String name) throws IOException {
+        File file = new File(this.downloadsDir, name);
+        assertTrue(file.createNewFile());
+        return file;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+public class GazeCalibratorTest {
+    private static final long FRAME_NANOS = 33_000_000L;
+    private static final long SETTLE_MILLIS = 300;
+    private static final int SAMPLES_PER_PHASE = 60;
+    private static final float EYE_CENTER_Y = 200;
+    private static final float DELTA = 1e-3f;
+
+    @Test
+    public void getProfile_matchesDefaultForReferenceReader() {
+        // A reader whose gaze at the edges sits twice as far as the default dead zone bounds
+        GazeCalibrator calibrator = calibrate(0, 5, -6, 0);
+        CalibrationProfile profile = calibrator.getProfile();
+
+        CalibrationProfile defaultProfile = CalibrationProfile.DEFAULT;
+        assertEquals(defaultProfile.getNeutralGazeDelta(), profile.getNeutralGazeDelta(), DELTA);
+        assertEquals(defaultProfile.getDeadZoneLowerBound(), profile.getDeadZoneLowerBound(), DELTA);
+        assertEquals(defaultProfile.getDeadZoneUpperBound(), profile.getDeadZoneUpperBound(), DELTA);
+        assertEquals(defaultProfile.getScrollSensitivity(), profile.getScrollSensitivity(), DELTA);
+    }
+
+    @Test
+    public void getProfile_centersDeadZoneOnNeutralGaze() {
+        GazeCalibrator calibrator = calibrate(2, 4, -4, 0.4f);
+        CalibrationProfile profile = calibrator.getProfile();
+
+        assertEquals(2, profile.getNeutralGazeDelta(), 0.2f);
+        assertEquals(0.4f, profile.getGazeJitter(), 0.1f);
+        assertEquals(4, profile.getDeadZoneUpperBound(), 0.2f);
+        assertEquals(0, profile.getDeadZoneLowerBound(), 0.2f);
+        // A narrower gaze range scrolls faster for the same look
+        assertTrue(profile.getScrollSensitivity() > CalibrationProfile.DEFAULT_SCROLL_SENSITIVITY);
+        assertTrue(profile.isInDeadZone(2));
+        assertFalse(profile.isInDeadZone(4.5f));
+    }
+
+    @Test
+    public void getProfile_rejectsEdgesInsideJitter() {
+        GazeCalibrator calibrator = calibrate(0, 1, -1, 1);
+        assertEquals(GazeCalibrator.Phase.FINISHED, calibrator.getPhase());
+        assertNull(calibrator.getProfile());
+    }
+
+    @Test
+    public void onGazeSample_skipsSettlingAndPupillessSamples() {
+        GazeCalibrator calibrator = new GazeCalibrator(SETTLE_MILLIS, SAMPLES_PER_PHASE);
+        GazeSample sample = new GazeSample();
+        long timestampNanos = 0;
+        // Only samples after the settle time count
+        for (; timestampNanos < SETTLE_MILLIS * 1_000_000L; timestampNanos += FRAME_NANOS) {
+            feed(calibrator, sample, timestampNanos, 0, true);
+        }
+        assertEquals(0, calibrator.getPhaseProgress(), 0);
+
+        feed(calibrator, sample, timestampNanos, 0, false);
+        assertEquals(0, calibrator.getPhaseProgress(), 0);
+        feed(calibrator, sample, timestampNanos + FRAME_NANOS, 0, true);
+        assertEquals(1f / SAMPLES_PER_PHASE, calibrator.getPhaseProgress(), DELTA);
+        assertNull(calibrator.getProfile());
+    }
+
+    @Test
+    public void profile_survivesSerialization() throws IOException {
+        CalibrationProfile profile = new CalibrationProfile(1.5f, -1, 3.25f, 5, 0.3f);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        profile.writeTo(new DataOutputStream(bytes));
+
+        CalibrationProfile readProfile = CalibrationProfile.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(21, bytes.size());
+        assertEquals(profile.getNeutralGazeDelta(), readProfile.getNeutralGazeDelta(), 0);
+        assertEquals(profile.getDeadZoneLowerBound(), readProfile.getDeadZoneLowerBound(), 0);
+        assertEquals(profile.getDeadZoneUpperBound(), readProfile.getDeadZoneUpperBound(), 0);
+        assertEquals(profile.getScrollSensitivity(), readProfile.getScrollSensitivity(), 0);
+        assertEquals(profile.getGazeJitter(), readProfile.getGazeJitter(), 0);
+    }
+
+    private static GazeCalibrator calibrate(float neutralDelta, float topDelta, float bottomDelta, float jitter) {
+        GazeCalibrator calibrator = new GazeCalibrator(SETTLE_MILLIS, SAMPLES_PER_PHASE);
+        GazeSample sample = new GazeSample();
+        Random random = new Random(7);
+        float[] phaseDeltas = {neutralDelta, neutralDelta + topDelta, neutralDelta + bottomDelta};
+        long timestampNanos = 0;
+        for (float phaseDelta : phaseDeltas) {
+            GazeCalibrator.Phase phase = calibrator.getPhase();
+            while (calibrator.getPhase() == phase) {
+                float gazeDelta = phaseDelta + (float) random.nextGaussian() * jitter;
+                feed(calibrator, sample, timestampNanos, gazeDelta, true);
+                timestampNanos += FRAME_NANOS;
+            }
+        }
+        return calibrator;
+    }
+
+    private static void feed(GazeCalibrator calibrator, GazeSample sample, long timestampNanos, float gazeDelta, boolean isPupilFound) {
+        sample.reset(timestampNanos);
+        sample.addEye(EYE_CENTER_Y, EYE_CENTER_Y - gazeDelta, isPupilFound);
+        calibrator.onGazeSample(sample);
+    }
+}
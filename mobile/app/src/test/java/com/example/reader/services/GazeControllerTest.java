@@ -0,0 +1,120 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+public class GazeControllerTest {
+    private static final long CAMERA_FRAME_NANOS = 33_333_333;
+    private static final long VSYNC_INTERVAL_NANOS = 16_666_667;
+    private static final float PAGE_HEIGHT = 1000;
+    private static final int VIEWPORT_HEIGHT = 2000;
+    private static final float EYE_CENTER_Y = 200;
+
+    private FakePdfView pdfView;
+    private GazeController gazeController;
+    private GazeSample sample;
+
+    @Before
+    public void setUp() {
+        this.pdfView = new FakePdfView();
+        this.gazeController = new GazeController(new OneEuroFilter(), this.pdfView);
+        this.gazeController.setViewportHeight(VIEWPORT_HEIGHT);
+        this.sample = new GazeSample();
+    }
+
+    @Test
+    public void onGazeSample_allocatesNothing() {
+        Assume.assumeTrue(isThreadAllocatedMemorySupported());
+        // Looks down and back, so both the dead zone and the scroll paths are taken
+        this.runGaze(0, 3000);
+
+        long allocated = allocatedBytes();
+        this.runGaze(3000, 6000);
+        allocated = allocatedBytes() - allocated;
+
+        assertTrue(this.pdfView.offset > 0);
+        // Reading the counter costs under a kilobyte, one object per sample would cost tens of kilobytes
+        assertTrue("allocated " + allocated, allocated < 1024);
+    }
+
+    @Test
+    public void onGazeSample_scrollsFromNeutralGaze() {
+        this.gazeController.setCalibrationProfile(new CalibrationProfile(4, 2, 6, 4, 0));
+
+        // Reading with a neutral gaze above the default dead zone does not scroll once calibrated
+        for (int frame = 0; frame < 30; frame++) {
+            this.feed(frame * CAMERA_FRAME_NANOS, 4);
+            this.gazeController.doFrame(frame * CAMERA_FRAME_NANOS);
+        }
+        assertEquals(0, this.pdfView.offset, 0);
+    }
+
+    @Test
+    public void setViewportHeight_capsPendingDistance() {
+        // A burst of samples drained in one display frame after a stall
+        for (int frame = 0; frame < 200; frame++) {
+            this.feed(frame * CAMERA_FRAME_NANOS, -20);
+        }
+
+        float maxPendingDistance = VIEWPORT_HEIGHT * GazeController.MAX_PENDING_VIEWPORT_FRACTION;
+        assertEquals(maxPendingDistance, this.gazeController.getScrollEngine().getPendingDistance(), 0);
+        this.gazeController.setViewportHeight(VIEWPORT_HEIGHT / 2);
+        this.feed(200 * CAMERA_FRAME_NANOS, -20);
+        assertEquals(maxPendingDistance / 2, this.gazeController.getScrollEngine().getPendingDistance(), 0);
+    }
+
+    // Two display frames per camera frame, the gaze dips below the dead zone every other second
+    private void runGaze(int fromFrame, int toFrame) {
+        for (int frame = fromFrame; frame < toFrame; frame++) {
+            long timestampNanos = frame * CAMERA_FRAME_NANOS;
+            this.feed(timestampNanos, (frame / 30) % 2 == 0 ? 0 : -8);
+            this.gazeController.doFrame(timestampNanos);
+            this.gazeController.doFrame(timestampNanos + VSYNC_INTERVAL_NANOS);
+        }
+    }
+
+    private void feed(long timestampNanos, float gazeDelta) {
+        this.sample.reset(timestampNanos);
+        this.sample.addEye(EYE_CENTER_Y, EYE_CENTER_Y - gazeDelta, true);
+        this.sample.addEye(EYE_CENTER_Y, 0, false);
+        this.gazeController.onGazeSample(this.sample);
+    }
+
+    private static boolean isThreadAllocatedMemorySupported() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        return threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Stands in for the PDF view the reading screen scrolls **/
+    private static class FakePdfView implements ScrollTarget {
+        private float offset = 0;
+
+        @Override
+        public void scrollBy(float distance) {
+            this.offset += distance;
+        }
+
+        @Override
+        public int getCurrentPageIndex() {
+            return (int) (this.offset / PAGE_HEIGHT);
+        }
+
+        @Override
+        public void loadPages() {
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * Replays gaze delta traces shaped like the ones the detector produces at 30 fps:
+ * gaussian noise plus occasional Haar jumps of a few pixels.
+ */
+public class GazeFilterTest {
+    private static final long FRAME_INTERVAL_NANOS = 33_333_333;
+    private static final int FRAMES_COUNT = 300;
+
+    @Test
+    public void steadyGaze_noiseIsReduced() {
+        for (GazeFilter filter : filters()) {
+            Trace trace = Trace.steady(5);
+            trace.replay(filter);
+
+            double rawError = trace.rootMeanSquareError(trace.measurements, 30);
+            double filteredError = trace.rootMeanSquareError(trace.positions, 30);
+            assertTrue(filter.getClass().getSimpleName() + " " + filteredError + " vs " + rawError, filteredError < rawError / 2);
+        }
+    }
+
+    @Test
+    public void gazeStep_isFollowedQuickly() {
+        for (GazeFilter filter : filters()) {
+            Trace trace = Trace.step(0, 8, FRAMES_COUNT / 2);
+            trace.replay(filter);
+
+            // Within 300 ms of the step the filtered gaze is most of the way there
+            int settledFrame = FRAMES_COUNT / 2 + 9;
+            assertTrue(filter.getClass().getSimpleName() + " " + trace.positions[settledFrame], trace.positions[settledFrame] > 6);
+        }
+    }
+
+    @Test
+    public void gazeRamp_velocityIsEstimated() {
+        for (GazeFilter filter : filters()) {
+            Trace trace = Trace.ramp(20);
+            trace.replay(filter);
+
+            double averageVelocity = 0;
+            for (int i = FRAMES_COUNT - 60; i < FRAMES_COUNT; i++) {
+                averageVelocity += trace.velocities[i];
+            }
+            averageVelocity /= 60;
+            assertEquals(filter.getClass().getSimpleName(), 20, averageVelocity, 5);
+        }
+    }
+
+    @Test
+    public void update_allocatesNothing() {
+        for (GazeFilter filter : filters()) {
+            Trace trace = Trace.steady(5);
+            replayRepeatedly(filter, trace);
+
+            long allocated = allocatedBytes();
+            replayRepeatedly(filter, trace);
+            allocated = allocatedBytes() - allocated;
+
+            // Reading the counter costs under a kilobyte, one object per update would cost hundreds of kilobytes
+            if (allocated >= 0) {
+                assertTrue(filter.getClass().getSimpleName() + " allocated " + allocated, allocated < 1024);
+            }
+        }
+    }
+
+    private static void replayRepeatedly(GazeFilter filter, Trace trace) {
+        for (int i = 0; i < 100; i++) {
+            filter.reset();
+            trace.replay(filter);
+        }
+    }
+
+    private static GazeFilter[] filters() {
+        return new GazeFilter[]{new OneEuroFilter(), new KalmanGazeFilter()};
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static class Trace {
+        private final long[] timestampsNanos = new long[FRAMES_COUNT];
+        private final float[] truth = new float[FRAMES_COUNT];
+        private final float[] measurements = new float[FRAMES_COUNT];
+        private final float[] positions = new float[FRAMES_COUNT];
+        private final float[] velocities = new float[FRAMES_COUNT];
+
+        private static Trace steady(float delta) {
+            Trace trace = new Trace();
+            for (int i = 0; i < FRAMES_COUNT; i++) {
+                trace.truth[i] = delta;
+            }
+            return trace.withNoise();
+        }
+
+        private static Trace step(float before, float after, int stepFrame) {
+            Trace trace = new Trace();
+            for (int i = 0; i < FRAMES_COUNT; i++) {
+                trace.truth[i] = i < stepFrame ? before : after;
+            }
+            return trace.withNoise();
+        }
+
+        private static Trace ramp(float pixelsPerSecond) {
+            Trace trace = new Trace();
+            for (int i = 0; i < FRAMES_COUNT; i++) {
+                trace.truth[i] = pixelsPerSecond * i * FRAME_INTERVAL_NANOS / 1e9f;
+            }
+            return trace.withNoise();
+        }
+
+        private Trace withNoise() {
+            Random random = new Random(7);
+            long timestampNanos = 1_000_000_000L;
+            for (int i = 0; i < FRAMES_COUNT; i++) {
+                // The camera does not deliver frames at an exact rate
+                timestampNanos += FRAME_INTERVAL_NANOS + (random.nextInt(4_000_000) - 2_000_000);
+                this.timestampsNanos[i] = timestampNanos;
+
+                float noise = (float) random.nextGaussian() * 1.5f;
+                if (random.nextInt(20) == 0) {
+                    noise += random.nextBoolean() ? 5 : -5;
+                }
+                this.measurements[i] = this.truth[i] + noise;
+            }
+            return this;
+        }
+
+        private void replay(GazeFilter filter) {
+            filter.filter(this.timestampsNanos, this.measurements, FRAMES_COUNT, this.positions, this.velocities);
+        }
+
+        private double rootMeanSquareError(float[] values, int fromFrame) {
+            double sum = 0;
+            for (int i = fromFrame; i < FRAMES_COUNT; i++) {
+                sum += (values[i] - this.truth[i]) * (values[i] - this.truth[i]);
+            }
+            return Math.sqrt(sum / (FRAMES_COUNT - fromFrame));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class GazeRecorderTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @Test
+    public void recording_isReadBackRecordByRecord() throws IOException {
+        File file = File.createTempFile("gaze", ".rec");
+        file.deleteOnExit();
+
+        ByteBuffer luma = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            luma.put((byte) i);
+        }
+        luma.flip();
+        GazeSample sample = new GazeSample();
+        sample.reset(123);
+        sample.setFace(10, 20, 30, 40);
+        sample.addEye(50.5f, 48, true);
+        sample.addEye(51, 0, false);
+
+        try (GazeRecorder recorder = new GazeRecorder(file, GazeRecorder.RecordingMode.FRAMES)) {
+            recorder.recordFrame(123, WIDTH, HEIGHT, luma);
+            recorder.recordSample(sample);
+            assertEquals(1, recorder.getFramesCount());
+            assertEquals(1, recorder.getSamplesCount());
+        }
+        assertEquals(0, luma.position());
+
+        try (GazeRecordingReader reader = new GazeRecordingReader(file)) {
+            assertEquals(GazeRecordingReader.RecordType.FRAME, reader.next());
+            assertEquals(123, reader.getTimestampNanos());
+            assertEquals(WIDTH, reader.getFrameWidth());
+            assertEquals(HEIGHT, reader.getFrameHeight());
+            assertEquals(luma, reader.getLuma());
+
+            assertEquals(GazeRecordingReader.RecordType.SAMPLE, reader.next());
+            GazeSample readSample = reader.getSample();
+            assertEquals(123, readSample.getTimestampNanos());
+            assertEquals(40, readSample.getFaceHeight());
+            assertEquals(2, readSample.getEyesCount());
+            assertEquals(50.5f, readSample.getEyeCenterY(0), 0);
+            assertTrue(readSample.isPupilFound(0));
+            assertFalse(readSample.isPupilFound(1));
+
+            assertEquals(GazeRecordingReader.RecordType.END, reader.next());
+        }
+    }
+
+    @Test
+    public void samplesMode_skipsFrames() throws IOException {
+        File file = File.createTempFile("gaze", ".rec");
+        file.deleteOnExit();
+
+        try (GazeRecorder recorder = new GazeRecorder(file, GazeRecorder.RecordingMode.SAMPLES)) {
+            recorder.recordFrame(1, WIDTH, HEIGHT, ByteBuffer.allocateDirect(WIDTH * HEIGHT));
+            recorder.recordSample(new GazeSample());
+        }
+
+        try (GazeRecordingReader reader = new GazeRecordingReader(file)) {
+            assertEquals(GazeRecordingReader.RecordType.SAMPLE, reader.next());
+            assertEquals(GazeRecordingReader.RecordType.END, reader.next());
+        }
+    }
+}
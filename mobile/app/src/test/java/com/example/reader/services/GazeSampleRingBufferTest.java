@@ -0,0 +1,88 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class GazeSampleRingBufferTest {
+    private static final int CAPACITY = 8;
+    private static final int CONCURRENT_SAMPLES_COUNT = 200000;
+
+    @Test
+    public void read_returnsWrittenSamples() {
+        GazeSampleRingBuffer ringBuffer = new GazeSampleRingBuffer(CAPACITY);
+        GazeSample sample = new GazeSample();
+        sample.reset(42);
+        sample.setFace(1, 2, 3, 4);
+        sample.addEye(100, 90, true);
+        sample.addEye(101, 0, false);
+        ringBuffer.write(sample);
+
+        GazeSample out = new GazeSample();
+        assertTrue(ringBuffer.read(0, out));
+        assertEquals(42, out.getTimestampNanos());
+        assertEquals(2, out.getFaceY());
+        assertEquals(4, out.getFaceHeight());
+        assertEquals(2, out.getEyesCount());
+        assertEquals(90, out.getPupilY(0), 0);
+        assertFalse(out.isPupilFound(1));
+        assertEquals(0.5f, out.getConfidence(), 0);
+        assertFalse(ringBuffer.read(1, out));
+    }
+
+    @Test
+    public void read_rejectsOverwrittenSamples() {
+        GazeSampleRingBuffer ringBuffer = new GazeSampleRingBuffer(CAPACITY);
+        GazeSample sample = new GazeSample();
+        for (int i = 0; i < CAPACITY * 3; i++) {
+            sample.reset(i);
+            ringBuffer.write(sample);
+        }
+
+        GazeSample out = new GazeSample();
+        assertEquals(CAPACITY * 2 + 1, ringBuffer.getOldestSequence());
+        assertFalse(ringBuffer.read(CAPACITY * 2, out));
+        assertTrue(ringBuffer.read(CAPACITY * 3 - 1, out));
+        assertEquals(CAPACITY * 3 - 1, out.getTimestampNanos());
+    }
+
+    @Test
+    public void concurrentRead_neverReturnsTornSamples() throws InterruptedException {
+        GazeSampleRingBuffer ringBuffer = new GazeSampleRingBuffer(CAPACITY);
+        AtomicBoolean isTornSampleRead = new AtomicBoolean(false);
+
+        Thread reader = new Thread(() -> {
+            GazeSample out = new GazeSample();
+            long sequence = 0;
+            while (sequence < CONCURRENT_SAMPLES_COUNT) {
+                sequence = Math.max(sequence, ringBuffer.getOldestSequence());
+                if (!ringBuffer.read(sequence, out)) {
+                    continue;
+                }
+
+                // Every field of a sample is derived from its sequence
+                if (out.getTimestampNanos() != sequence || out.getFaceX() != (int) sequence
+                        || out.getEyeCenterY(0) != (float) (sequence % 1000)) {
+                    isTornSampleRead.set(true);
+                }
+                sequence++;
+            }
+        });
+        reader.start();
+
+        GazeSample sample = new GazeSample();
+        for (int i = 0; i < CONCURRENT_SAMPLES_COUNT; i++) {
+            sample.reset(i);
+            sample.setFace(i, i, i, i);
+            sample.addEye(i % 1000, i % 1000, true);
+            ringBuffer.write(sample);
+        }
+        reader.join();
+
+        assertFalse(isTornSampleRead.get());
+    }
+}
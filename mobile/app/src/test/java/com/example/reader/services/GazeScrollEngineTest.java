@@ -0,0 +1,83 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GazeScrollEngineTest {
+    private static final long VSYNC_INTERVAL_NANOS = 16_666_667;
+    private static final float PAGE_HEIGHT = 1000;
+
+    private FakeScrollTarget scrollTarget;
+    private GazeScrollEngine scrollEngine;
+
+    @Before
+    public void setUp() {
+        this.scrollTarget = new FakeScrollTarget();
+        this.scrollEngine = new GazeScrollEngine(this.scrollTarget);
+    }
+
+    @Test
+    public void doFrame_spendsWholeDistanceOverSeveralFrames() {
+        this.scrollEngine.addScrollDistance(300);
+
+        int movesCount = this.runFrames(120);
+
+        assertTrue(movesCount > 5);
+        assertEquals(300, this.scrollTarget.offset, 0.01);
+        assertEquals(0, this.scrollEngine.getVelocity(), 0);
+    }
+
+    @Test
+    public void doFrame_loadsPagesOnlyOnBoundariesAndAtRest() {
+        this.scrollEngine.addScrollDistance(PAGE_HEIGHT * 1.5f);
+
+        this.runFrames(240);
+
+        // First page seen, second page reached, scroll settled
+        assertEquals(3, this.scrollTarget.loadPagesCount);
+        assertEquals(this.scrollTarget.loadPagesCount, this.scrollEngine.getPageLoadsCount());
+    }
+
+    @Test
+    public void reset_dropsPendingDistance() {
+        this.scrollEngine.addScrollDistance(300);
+        this.scrollEngine.reset();
+
+        assertFalse(this.scrollEngine.doFrame(VSYNC_INTERVAL_NANOS));
+        assertEquals(0, this.scrollTarget.offset, 0);
+    }
+
+    private int runFrames(int framesCount) {
+        int movesCount = 0;
+        for (int i = 1; i <= framesCount; i++) {
+            if (this.scrollEngine.doFrame(i * VSYNC_INTERVAL_NANOS)) {
+                movesCount++;
+            }
+        }
+        return movesCount;
+    }
+
+    private static class FakeScrollTarget implements ScrollTarget {
+        private float offset = 0;
+        private int loadPagesCount = 0;
+
+        @Override
+        public void scrollBy(float distance) {
+            this.offset += distance;
+        }
+
+        @Override
+        public int getCurrentPageIndex() {
+            return (int) (this.offset / PAGE_HEIGHT);
+        }
+
+        @Override
+        public void loadPages() {
+            this.loadPagesCount++;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+public class GeometricEyeLocatorTest {
+    private static final Rect[] CASCADE_EYES = {new Rect(110, 40, 50, 40), new Rect(30, 44, 50, 40)};
+
+    @Test
+    public void locateEyes_scalesAnchoredEyesWithTheFace() {
+        CountingLocator fallback = new CountingLocator(CASCADE_EYES);
+        GeometricEyeLocator locator = new GeometricEyeLocator(fallback);
+
+        // The first frame of a face is anchored on the fallback eyes
+        locator.locateEyes(0, new Rect(100, 100, 200, 200), null);
+        locator.reportPupilsFound(0, 2, 2);
+        assertEquals(1, fallback.callsCount);
+
+        // The face moved and got twice as large, eyes keep their place relative to it in image order
+        Rect[] eyes = locator.locateEyes(0, new Rect(50, 60, 400, 400), null);
+        assertEquals(1, fallback.callsCount);
+        assertEquals(new Rect(60, 88, 100, 80), eyes[0]);
+        assertEquals(new Rect(220, 80, 100, 80), eyes[1]);
+    }
+
+    @Test
+    public void locateEyes_fallsBackOnceConfidenceIsLow() {
+        CountingLocator fallback = new CountingLocator(CASCADE_EYES);
+        GeometricEyeLocator locator = new GeometricEyeLocator(fallback);
+        Rect face = new Rect(0, 0, 200, 200);
+        locator.locateEyes(0, face, null);
+
+        for (int i = 0; i < GeometricEyeLocator.MAX_MISSED_FRAMES; i++) {
+            locator.reportPupilsFound(0, 2, 1);
+            locator.locateEyes(0, face, null);
+        }
+        assertEquals(2, fallback.callsCount);
+
+        // A frame with both pupils found restores the confidence
+        locator.reportPupilsFound(0, 2, 1);
+        locator.reportPupilsFound(0, 2, 2);
+        for (int i = 0; i < GeometricEyeLocator.MAX_MISSED_FRAMES; i++) {
+            locator.locateEyes(0, face, null);
+        }
+        assertEquals(2, fallback.callsCount);
+        assertEquals(2 / (double) (1 + 2 * GeometricEyeLocator.MAX_MISSED_FRAMES), locator.getFallbackRate(), 1e-9);
+    }
+
+    @Test
+    public void locateEyes_keepsDefaultProportionsWithoutFallbackEyes() {
+        GeometricEyeLocator locator = new GeometricEyeLocator(new CountingLocator(new Rect[0]));
+
+        Rect[] eyes = locator.locateEyes(0, new Rect(0, 0, 100, 100), null);
+        assertEquals(2, eyes.length);
+        assertEquals(new Rect(14, 20, 30, 25), eyes[0]);
+        assertEquals(new Rect(56, 20, 30, 25), eyes[1]);
+    }
+
+    private static class CountingLocator implements EyeLocator {
+        private final Rect[] eyes;
+        private int callsCount = 0;
+
+        private CountingLocator(Rect[] eyes) {
+            this.eyes = eyes;
+        }
+
+        @Override
+        public Rect[] locateEyes(int faceIndex, Rect face, Mat faceFrame) {
+            this.callsCount++;
+            return this.eyes;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class IntegralPupilLocatorTest {
+    private static final int WIDTH = 60;
+    private static final int HEIGHT = 40;
+
+    @Test
+    public void locate_findsDarkDiscCenterAndRadius() {
+        for (int[] disc : new int[][]{{30, 20, 7}, {18, 24, 5}, {44, 15, 9}}) {
+            byte[] eye = createEye(new Random(7));
+            drawDisc(eye, disc[0], disc[1], disc[2], 25);
+            IntegralPupilLocator locator = new IntegralPupilLocator();
+
+            assertTrue(locator.locate(eye, WIDTH, HEIGHT));
+            assertEquals(disc[0], locator.getPupilX(), 1);
+            assertEquals(disc[1], locator.getPupilY(), 1);
+            assertEquals(disc[2], locator.getPupilRadius(), 1.5);
+        }
+    }
+
+    @Test
+    public void locate_prefersDiscOverDarkBand() {
+        byte[] eye = createEye(new Random(7));
+        // Eyelashes or the eyebrow edge along the top of the eye frame
+        for (int y = 0; y < 8; y++) {
+            Arrays.fill(eye, y * WIDTH, (y + 1) * WIDTH, (byte) 15);
+        }
+        drawDisc(eye, 34, 26, 6, 30);
+        IntegralPupilLocator locator = new IntegralPupilLocator();
+
+        assertTrue(locator.locate(eye, WIDTH, HEIGHT));
+        assertEquals(34, locator.getPupilX(), 1);
+        assertEquals(26, locator.getPupilY(), 1);
+    }
+
+    @Test
+    public void locate_rejectsEyesWithoutDarkDisc() {
+        IntegralPupilLocator locator = new IntegralPupilLocator();
+        assertFalse(locator.locate(createEye(new Random(7)), WIDTH, HEIGHT));
+
+        byte[] band = createEye(new Random(7));
+        for (int y = 16; y < 26; y++) {
+            Arrays.fill(band, y * WIDTH, (y + 1) * WIDTH, (byte) 20);
+        }
+        assertFalse(locator.locate(band, WIDTH, HEIGHT));
+    }
+
+    // Bright sclera with noise, like a cut eye frame of the luma plane
+    private static byte[] createEye(Random random) {
+        byte[] eye = new byte[WIDTH * HEIGHT];
+        for (int i = 0; i < eye.length; i++) {
+            eye[i] = (byte) (190 + random.nextInt(21) - 10);
+        }
+        return eye;
+    }
+
+    private static void drawDisc(byte[] eye, int centerX, int centerY, int radius, int gray) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if ((x - centerX) * (x - centerX) + (y - centerY) * (y - centerY) <= radius * radius) {
+                    eye[y * WIDTH + x] = (byte) gray;
+                }
+            }
+        }
+    }
+}
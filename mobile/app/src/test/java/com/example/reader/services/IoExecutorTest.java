@@ -0,0 +1,100 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class IoExecutorTest {
+    private IoExecutor ioExecutor;
+    private CountDownLatch busyGate;
+    private List<String> ranTasks;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        // A single thread held busy, so every later task waits in the queue
+        this.ioExecutor = new IoExecutor(1, "IoExecutorTest");
+        this.busyGate = new CountDownLatch(1);
+        this.ranTasks = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch isBusy = new CountDownLatch(1);
+        this.ioExecutor.submit(IoExecutor.Priority.BACKGROUND, () -> {
+            isBusy.countDown();
+            try {
+                this.busyGate.await();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        isBusy.await();
+    }
+
+    @Test
+    public void submit_runsWaitingTasksByPriorityThenInOrder() throws Exception {
+        this.ioExecutor.submit(IoExecutor.Priority.BACKGROUND, () -> this.ranTasks.add("listing"));
+        this.ioExecutor.submit(IoExecutor.Priority.VISIBLE, () -> this.ranTasks.add("catalog"));
+        this.ioExecutor.submit(IoExecutor.Priority.VISIBLE, () -> this.ranTasks.add("shelf"));
+        Future<?> lastTask = this.ioExecutor.submit(IoExecutor.Priority.INTERACTIVE, () -> this.ranTasks.add("open"));
+        this.ioExecutor.asExecutor(IoExecutor.Priority.BACKGROUND).execute(() -> this.ranTasks.add("chunk"));
+
+        this.busyGate.countDown();
+        lastTask.get(1, TimeUnit.SECONDS);
+        this.ioExecutor.submit(IoExecutor.Priority.BACKGROUND, () -> { }).get(1, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("open", "catalog", "shelf", "listing", "chunk"), this.ranTasks);
+    }
+
+    @Test
+    public void scopeCancel_dropsWaitingAndLaterTasks() throws Exception {
+        IoExecutor.Scope closedScreen = this.ioExecutor.newScope();
+        IoExecutor.Scope openScreen = this.ioExecutor.newScope();
+        Future<?> droppedTask = closedScreen.submit(IoExecutor.Priority.INTERACTIVE, () -> this.ranTasks.add("dropped"));
+        Future<?> keptTask = openScreen.submit(IoExecutor.Priority.VISIBLE, () -> this.ranTasks.add("kept"));
+
+        closedScreen.cancel();
+        assertTrue(closedScreen.isCancelled());
+        assertTrue(droppedTask.isCancelled());
+        assertTrue(closedScreen.submit(IoExecutor.Priority.INTERACTIVE, () -> this.ranTasks.add("late")).isCancelled());
+
+        this.busyGate.countDown();
+        keptTask.get(1, TimeUnit.SECONDS);
+        assertFalse(keptTask.isCancelled());
+        assertEquals(Collections.singletonList("kept"), this.ranTasks);
+    }
+
+    @Test
+    public void execute_reportsFailuresNobodyReads() throws Exception {
+        Thread.UncaughtExceptionHandler defaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+        List<Throwable> uncaughtErrors = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch isReported = new CountDownLatch(1);
+        Thread.setDefaultUncaughtExceptionHandler((thread, error) -> {
+            uncaughtErrors.add(error);
+            isReported.countDown();
+        });
+        try {
+            // A failed callable stays in its future, the caller reads it there
+            Future<String> failedCallable = this.ioExecutor.submit(IoExecutor.Priority.INTERACTIVE, () -> {
+                throw new IllegalStateException("read by the caller");
+            });
+            this.ioExecutor.asExecutor(IoExecutor.Priority.VISIBLE).execute(() -> {
+                throw new IllegalStateException("catalog sync failed");
+            });
+
+            this.busyGate.countDown();
+            assertTrue(isReported.await(1, TimeUnit.SECONDS));
+            assertTrue(failedCallable.isDone());
+            assertEquals(1, uncaughtErrors.size());
+            assertEquals("catalog sync failed", uncaughtErrors.get(0).getMessage());
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    // Upper bounds of the log-linear buckets are at most one eighth above the recorded value
+    private static final double BUCKET_PRECISION = 1.0 / 8;
+
+    @Test
+    public void bucketUpperBound_coversEveryValue() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            int index = LatencyHistogram.bucketIndex(micros);
+            long upperBound = LatencyHistogram.bucketUpperBoundMicros(index);
+
+            assertTrue(upperBound > micros);
+            assertTrue(upperBound <= Math.max(micros + 1, micros * (1 + BUCKET_PRECISION) + 1));
+            if (index > 0) {
+                assertTrue(LatencyHistogram.bucketUpperBoundMicros(index - 1) <= micros);
+            }
+        }
+    }
+
+    @Test
+    public void percentiles_matchUniformLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 ms to 100 ms in 1 ms steps
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis * 1_000_000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50.5, histogram.getMeanMillis(), 1e-9);
+        assertEquals(100, histogram.getMaxMillis(), 1e-9);
+        assertPercentile(50, histogram.getPercentileMillis(50));
+        assertPercentile(95, histogram.getPercentileMillis(95));
+        assertPercentile(99, histogram.getPercentileMillis(99));
+        assertEquals(100, histogram.getPercentileMillis(100), 1e-9);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMillis(95), 1e-9);
+    }
+
+    @Test
+    public void record_clampsOutOfRangeLatencies() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(60_000_000_000L);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(60_000, histogram.getPercentileMillis(100), 1e-9);
+    }
+
+    private static void assertPercentile(double expectedMillis, double actualMillis) {
+        assertTrue(actualMillis >= expectedMillis);
+        assertTrue(actualMillis <= expectedMillis * (1 + BUCKET_PRECISION));
+    }
+}
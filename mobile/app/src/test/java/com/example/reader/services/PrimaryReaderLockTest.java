@@ -0,0 +1,56 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.opencv.core.Rect;
+
+public class PrimaryReaderLockTest {
+    private static final long FRAME_NANOS = 33_000_000L;
+    private static final long LOCK_TIMEOUT_MILLIS = 500;
+    private static final Rect READER = new Rect(200, 150, 220, 220);
+    private static final Rect PASSER_BY = new Rect(20, 40, 260, 260);
+
+    @Test
+    public void selectPrimaryFace_followsLockedReaderOverLargerFace() {
+        PrimaryReaderLock lock = new PrimaryReaderLock(LOCK_TIMEOUT_MILLIS);
+        assertEquals(0, lock.selectPrimaryFace(new Rect[]{READER}, FRAME_NANOS));
+        assertTrue(lock.isNewReader());
+
+        // A larger face enters while the reader keeps moving slightly
+        for (int frame = 2; frame < 30; frame++) {
+            Rect movedReader = new Rect(READER.x + frame, READER.y - frame / 2, READER.width, READER.height);
+            assertEquals(1, lock.selectPrimaryFace(new Rect[]{PASSER_BY, movedReader}, frame * FRAME_NANOS));
+            assertFalse(lock.isNewReader());
+        }
+        assertEquals(0, lock.getReaderSwitchesCount());
+    }
+
+    @Test
+    public void selectPrimaryFace_switchesOnlyAfterTimeout() {
+        PrimaryReaderLock lock = new PrimaryReaderLock(LOCK_TIMEOUT_MILLIS);
+        lock.selectPrimaryFace(new Rect[]{READER}, FRAME_NANOS);
+
+        // The reader turned away, the other face is ignored until the lock times out
+        long timestampNanos = 2 * FRAME_NANOS;
+        for (; timestampNanos - FRAME_NANOS < LOCK_TIMEOUT_MILLIS * 1_000_000L; timestampNanos += FRAME_NANOS) {
+            assertEquals(-1, lock.selectPrimaryFace(new Rect[]{PASSER_BY}, timestampNanos));
+        }
+
+        assertEquals(0, lock.selectPrimaryFace(new Rect[]{PASSER_BY}, timestampNanos));
+        assertTrue(lock.isNewReader());
+        assertEquals(1, lock.getReaderSwitchesCount());
+    }
+
+    @Test
+    public void selectPrimaryFace_locksLargestFace() {
+        PrimaryReaderLock lock = new PrimaryReaderLock(LOCK_TIMEOUT_MILLIS);
+        assertEquals(-1, lock.selectPrimaryFace(new Rect[0], FRAME_NANOS));
+        assertFalse(lock.isLocked());
+
+        assertEquals(1, lock.selectPrimaryFace(new Rect[]{READER, PASSER_BY}, 2 * FRAME_NANOS));
+        assertTrue(lock.isLocked());
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.reader.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares the pooled bulk plane copy with the original per-frame allocating loop,
+ * and checks the V/U order for every chroma layout a camera may deliver.
+ */
+public class YuvPlaneCopierTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int ROW_PADDING = 64;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int MEASURED_FRAMES = 1000;
+
+    @Test
+    public void bulkCopy_matchesLegacyLayout() {
+        for (int yRowStride : new int[]{WIDTH, WIDTH + ROW_PADDING}) {
+            Planes planes = new Planes(yRowStride, WIDTH / 2 + ROW_PADDING / 2);
+            byte[] expected = legacyCopy(planes);
+            byte[] actual = new byte[expected.length];
+            pooledCopy(planes, actual, new byte[WIDTH / 2], new byte[WIDTH / 2]);
+
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void lumaBufferCopy_matchesLegacyLumaPlane() {
+        for (int yRowStride : new int[]{WIDTH, WIDTH + ROW_PADDING}) {
+            Planes planes = new Planes(yRowStride, WIDTH / 2 + ROW_PADDING / 2);
+            byte[] expected = Arrays.copyOf(legacyCopy(planes), WIDTH * HEIGHT);
+            ByteBuffer luma = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+            YuvPlaneCopier.copyLumaPlane(planes.y, planes.yRowStride, WIDTH, HEIGHT, luma);
+
+            byte[] actual = new byte[WIDTH * HEIGHT];
+            luma.get(actual);
+            assertArrayEquals(expected, actual);
+            assertEquals(planes.y.capacity(), planes.y.limit());
+        }
+    }
+
+    @Test
+    public void chromaCopy_planarPlanes_keepsVuOrder() {
+        ChromaPlanes planes = ChromaPlanes.separate(WIDTH / 2 + ROW_PADDING / 2, 1);
+        assertEquals(YuvPlaneCopier.ChromaLayout.SEPARATE, detectChromaLayout(planes));
+        assertArrayEquals(planes.expectedVu, copyChroma(planes, YuvPlaneCopier.ChromaLayout.SEPARATE));
+    }
+
+    @Test
+    public void chromaCopy_interleavedPlanes_keepsVuOrder() {
+        ChromaPlanes planes = ChromaPlanes.interleaved(WIDTH + ROW_PADDING);
+        assertEquals(YuvPlaneCopier.ChromaLayout.INTERLEAVED, detectChromaLayout(planes));
+        assertArrayEquals(planes.expectedVu, copyChroma(planes, YuvPlaneCopier.ChromaLayout.INTERLEAVED));
+        assertArrayEquals(planes.expectedVu, copyChroma(planes, YuvPlaneCopier.ChromaLayout.UNKNOWN));
+    }
+
+    @Test
+    public void chromaCopy_separatePlanesWithPixelStride_keepsVuOrder() {
+        ChromaPlanes planes = ChromaPlanes.separate(WIDTH + ROW_PADDING, 2);
+        // The gap after the first V sample happens to hold the first U sample
+        planes.v.put(1, planes.u.get(0));
+        assertEquals(YuvPlaneCopier.ChromaLayout.SEPARATE, detectChromaLayout(planes));
+        assertArrayEquals(planes.expectedVu, copyChroma(planes, YuvPlaneCopier.ChromaLayout.SEPARATE));
+    }
+
+    @Test
+    public void chromaLayout_uniformChroma_staysUnknown() {
+        ChromaPlanes planes = ChromaPlanes.interleaved(WIDTH);
+        for (int i = 0; i < planes.u.limit(); i++) {
+            planes.u.put(i, (byte) 128);
+        }
+        assertEquals(YuvPlaneCopier.ChromaLayout.UNKNOWN, detectChromaLayout(planes));
+    }
+
+    @Test
+    public void bulkCopy_allocatesNothingPerFrameAndIsFaster() {
+        Assume.assumeTrue(allocatedBytes() >= 0);
+        Planes planes = new Planes(WIDTH, WIDTH / 2);
+        byte[] yuvData = new byte[(HEIGHT + HEIGHT / 2) * WIDTH];
+        byte[] uRow = new byte[WIDTH / 2];
+        byte[] vRow = new byte[WIDTH / 2];
+
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            legacyCopy(planes);
+            pooledCopy(planes, yuvData, uRow, vRow);
+        }
+
+        long legacyAllocated = allocatedBytes();
+        long legacyStartNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            legacyCopy(planes);
+        }
+        long legacyNanos = System.nanoTime() - legacyStartNanos;
+        legacyAllocated = allocatedBytes() - legacyAllocated;
+
+        long pooledAllocated = allocatedBytes();
+        long pooledStartNanos = System.nanoTime();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            pooledCopy(planes, yuvData, uRow, vRow);
+        }
+        long pooledNanos = System.nanoTime() - pooledStartNanos;
+        pooledAllocated = allocatedBytes() - pooledAllocated;
+
+        assertTrue("pooled copy allocated " + pooledAllocated / MEASURED_FRAMES + " bytes per frame",
+                pooledAllocated / MEASURED_FRAMES < 64);
+        assertTrue(legacyAllocated / MEASURED_FRAMES >= yuvData.length);
+        // The bulk copy does the same work without per-byte gets or a fresh staging array, so it is never slower
+        assertTrue("pooled copy took " + pooledNanos / MEASURED_FRAMES + " ns per frame, legacy copy "
+                + legacyNanos / MEASURED_FRAMES + " ns", pooledNanos < legacyNanos);
+    }
+
+    private static void pooledCopy(Planes planes, byte[] yuvData, byte[] uRow, byte[] vRow) {
+        int pos = YuvPlaneCopier.copyLumaPlane(planes.y, planes.yRowStride, WIDTH, HEIGHT, yuvData, 0);
+        YuvPlaneCopier.copyChromaPlanes(planes.u, planes.v, planes.uvRowStride, 1, YuvPlaneCopier.ChromaLayout.SEPARATE,
+                WIDTH, HEIGHT, yuvData, pos, uRow, vRow);
+    }
+
+    // Read-only views prove the camera's buffers are never written to
+    private static YuvPlaneCopier.ChromaLayout detectChromaLayout(ChromaPlanes planes) {
+        return YuvPlaneCopier.detectChromaLayout(planes.u.asReadOnlyBuffer(), planes.v.asReadOnlyBuffer(),
+                planes.rowStride, planes.pixelStride, WIDTH, HEIGHT);
+    }
+
+    private static byte[] copyChroma(ChromaPlanes planes, YuvPlaneCopier.ChromaLayout chromaLayout) {
+        byte[] vuData = new byte[planes.expectedVu.length];
+        int end = YuvPlaneCopier.copyChromaPlanes(planes.u, planes.v, planes.rowStride, planes.pixelStride, chromaLayout,
+                WIDTH, HEIGHT, vuData, 0, new byte[WIDTH / 2], new byte[WIDTH / 2]);
+        assertEquals(vuData.length, end);
+        return vuData;
+    }
+
+    // Copy of the loop FrameProcessingService.convertYUVtoMat used before frame buffers were pooled
+    private static byte[] legacyCopy(Planes planes) {
+        byte[] yuvData = new byte[(HEIGHT + HEIGHT / 2) * WIDTH];
+        int pos = 0;
+
+        for (int row = 0; row < HEIGHT; row++) {
+            planes.y.position(row * planes.yRowStride);
+            planes.y.get(yuvData, pos, WIDTH);
+            pos += WIDTH;
+        }
+
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            planes.u.position(row * planes.uvRowStride);
+            planes.v.position(row * planes.uvRowStride);
+
+            for (int col = 0; col < WIDTH / 2; col++) {
+                yuvData[pos++] = planes.v.get();
+                yuvData[pos++] = planes.u.get();
+            }
+        }
+
+        return yuvData;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static class Planes {
+        private final ByteBuffer y;
+        private final ByteBuffer u;
+        private final ByteBuffer v;
+        private final int yRowStride;
+        private final int uvRowStride;
+
+        private Planes(int yRowStride, int uvRowStride) {
+            Random random = new Random(42);
+            this.yRowStride = yRowStride;
+            this.uvRowStride = uvRowStride;
+            this.y = randomDirectBuffer(random, yRowStride * HEIGHT);
+            this.u = randomDirectBuffer(random, uvRowStride * HEIGHT / 2);
+            this.v = randomDirectBuffer(random, uvRowStride * HEIGHT / 2);
+        }
+
+        private static ByteBuffer randomDirectBuffer(Random random, int size) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+            buffer.put(bytes);
+            buffer.rewind();
+            return buffer;
+        }
+    }
+
+    /** U and V samples of one frame laid out in the plane buffers the way a camera hands them over **/
+    private static class ChromaPlanes {
+        private static final int CHROMA_WIDTH = WIDTH / 2;
+        private static final int CHROMA_HEIGHT = HEIGHT / 2;
+        private final ByteBuffer u;
+        private final ByteBuffer v;
+        private final int rowStride;
+        private final int pixelStride;
+        private final byte[] expectedVu = new byte[CHROMA_WIDTH * CHROMA_HEIGHT * 2];
+
+        private ChromaPlanes(ByteBuffer u, ByteBuffer v, int rowStride, int pixelStride) {
+            this.u = u;
+            this.v = v;
+            this.rowStride = rowStride;
+            this.pixelStride = pixelStride;
+        }
+
+        /** Two buffers, each sample followed by pixelStride - 1 bytes belonging to neither plane **/
+        private static ChromaPlanes separate(int rowStride, int pixelStride) {
+            Random random = new Random(7);
+            int size = rowStride * (CHROMA_HEIGHT - 1) + (CHROMA_WIDTH - 1) * pixelStride + 1;
+            ChromaPlanes planes = new ChromaPlanes(Planes.randomDirectBuffer(random, size), Planes.randomDirectBuffer(random, size),
+                    rowStride, pixelStride);
+            planes.fill(random);
+            return planes;
+        }
+
+        /** NV21 as most cameras deliver it, V and U alternate in one buffer and the U plane starts one byte later **/
+        private static ChromaPlanes interleaved(int rowStride) {
+            Random random = new Random(7);
+            ByteBuffer vu = Planes.randomDirectBuffer(random, rowStride * (CHROMA_HEIGHT - 1) + CHROMA_WIDTH * 2);
+            vu.limit(vu.capacity() - 1);
+            ByteBuffer v = vu.slice();
+            vu.limit(vu.capacity()).position(1);
+            ByteBuffer u = vu.slice();
+            ChromaPlanes planes = new ChromaPlanes(u, v, rowStride, 2);
+            planes.fill(random);
+            return planes;
+        }
+
+        // Puts random samples at their place in the planes and records them in V/U order
+        private void fill(Random random) {
+            byte[] sample = new byte[2];
+            int pos = 0;
+            for (int row = 0; row < CHROMA_HEIGHT; row++) {
+                for (int col = 0; col < CHROMA_WIDTH; col++) {
+                    random.nextBytes(sample);
+                    int index = row * this.rowStride + col * this.pixelStride;
+                    this.v.put(index, sample[0]);
+                    this.u.put(index, sample[1]);
+                    this.expectedVu[pos++] = sample[0];
+                    this.expectedVu[pos++] = sample[1];
+                }
+            }
+        }
+    }
+}
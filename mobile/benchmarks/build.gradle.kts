@@ -0,0 +1,26 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    // The replay module already builds the Android-free pipeline against the desktop OpenCV bindings
+    jmh(project(":replay"))
+    jmh(libs.opencv.desktop)
+}
+
+jmh {
+    profilers.add("gc")
+    // -Pjmh.includes=DetectionBenchmark runs a single class
+    project.findProperty("jmh.includes")?.let { includes.add(it.toString()) }
+    val recording = project.findProperty("jmh.recording")?.toString() ?: ""
+    jvmArgsAppend.addAll(
+        "-Dbenchmark.cascadesDir=${rootDir}/app/src/main/assets",
+        "-Dbenchmark.recording=$recording"
+    )
+}
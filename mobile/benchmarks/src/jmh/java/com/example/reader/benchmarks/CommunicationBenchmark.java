@@ -0,0 +1,56 @@
+package com.example.reader.benchmarks;
+
+import com.example.reader.services.GazeSample;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opencv.core.KeyPoint;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.Rect;
+
+import java.util.concurrent.TimeUnit;
+
+/** Coordinate math turning a detected pupil into the ordinates of a gaze sample **/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CommunicationBenchmark {
+    private final GazeSample sample = new GazeSample();
+    private final Rect eye = new Rect(30, 40, 60, 40);
+    private MatOfKeyPoint pupils;
+    private MatOfKeyPoint noPupils;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        nu.pattern.OpenCV.loadLocally();
+        this.pupils = new MatOfKeyPoint(new KeyPoint(30, 18, 14));
+        this.noPupils = new MatOfKeyPoint();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.pupils.release();
+        this.noPupils.release();
+    }
+
+    @Benchmark
+    public GazeSample addPupilData(PipelineState state) {
+        this.sample.reset(0);
+        state.communicationService.addPupilData(this.sample, this.pupils, this.eye, state.face);
+        state.communicationService.addPupilData(this.sample, this.noPupils, this.eye, state.face);
+        return this.sample;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.reader.benchmarks;
+
+import com.example.reader.services.FrameProcessingService;
+import com.example.reader.services.PupilsDetectionService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.Rect;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectionBenchmark {
+    @Benchmark
+    public Rect[] detectFaces(PipelineState state) {
+        return state.pupilsDetectionService.detectFaces(state.frame);
+    }
+
+    @Benchmark
+    public Rect[] detectEyes(PipelineState state) {
+        return state.pupilsDetectionService.detectEyes(state.faceFrame);
+    }
+
+    @Benchmark
+    public Rect[] locateEyesCascade(PipelineState state) {
+        return state.cascadeEyeLocator.locateEyes(0, state.face, state.faceFrame);
+    }
+
+    // Pupils are reported found, so after the first call only the geometric path is measured
+    @Benchmark
+    public Rect[] locateEyesGeometric(PipelineState state) {
+        Rect[] eyes = state.geometricEyeLocator.locateEyes(0, state.face, state.faceFrame);
+        state.geometricEyeLocator.reportPupilsFound(0, eyes.length, eyes.length);
+        return eyes;
+    }
+
+    @Benchmark
+    public void detectPupils(PipelineState state, Blackhole blackhole) {
+        MatOfKeyPoint pupils = state.pupilsDetectionService.detectPupils(state.eyeFrame, state.eye, state.scratch);
+        blackhole.consume(pupils.rows());
+        pupils.release();
+    }
+
+    @Benchmark
+    public void locatePupilIntegral(PipelineState state, Blackhole blackhole) {
+        MatOfKeyPoint pupils = state.integralPupilLocator.locatePupil(state.eyeFrame, state.eye);
+        blackhole.consume(pupils.rows());
+        pupils.release();
+    }
+
+    // Allocates and frees its scratch Mats on every call, the way pupils were detected before scratch reuse
+    @Benchmark
+    public void detectPupilsWithoutScratch(PipelineState state, Blackhole blackhole) {
+        PupilsDetectionService.Scratch scratch = new PupilsDetectionService.Scratch();
+        MatOfKeyPoint pupils = state.pupilsDetectionService.detectPupils(state.eyeFrame, state.eye, scratch);
+        blackhole.consume(pupils.rows());
+        pupils.release();
+        scratch.release();
+    }
+
+    @Benchmark
+    public void cutEyebrows(PipelineState state, Blackhole blackhole) {
+        Mat eyeWithoutBrow = FrameProcessingService.cutEyebrows(state.eyeFrame);
+        blackhole.consume(eyeWithoutBrow.rows());
+        eyeWithoutBrow.release();
+    }
+}
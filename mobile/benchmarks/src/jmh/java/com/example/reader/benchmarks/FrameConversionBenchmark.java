@@ -0,0 +1,29 @@
+package com.example.reader.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opencv.core.Mat;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameConversionBenchmark {
+    @Benchmark
+    public Mat convertYUVtoMat(PipelineState state) {
+        return state.frameProcessingService.convertYUVtoMat(state.frameBuffer);
+    }
+
+    @Benchmark
+    public Mat convertLumaToMat(PipelineState state) {
+        return state.frameProcessingService.convertLumaToMat(state.frameBuffer);
+    }
+}
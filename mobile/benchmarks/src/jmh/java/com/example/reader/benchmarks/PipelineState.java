@@ -0,0 +1,154 @@
+package com.example.reader.benchmarks;
+
+import com.example.reader.services.CascadeEyeLocator;
+import com.example.reader.services.CommunicationService;
+import com.example.reader.services.EyeTrackingConfig;
+import com.example.reader.services.FaceTracker;
+import com.example.reader.services.FrameBuffer;
+import com.example.reader.services.FrameBufferPool;
+import com.example.reader.services.FrameProcessingService;
+import com.example.reader.services.GazeEventBus;
+import com.example.reader.services.GazeRecordingReader;
+import com.example.reader.services.GeometricEyeLocator;
+import com.example.reader.services.IntegralPupilLocator;
+import com.example.reader.services.PupilsDetectionService;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.objdetect.CascadeClassifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Pipeline services and one camera frame shared by the benchmarks.
+ * The frame is synthetic unless -Pjmh.recording points at a gaze recording, then its first frame is used.
+ **/
+@State(Scope.Thread)
+public class PipelineState {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    PupilsDetectionService pupilsDetectionService;
+    FrameProcessingService frameProcessingService;
+    CommunicationService communicationService;
+    PupilsDetectionService.Scratch scratch;
+    CascadeEyeLocator cascadeEyeLocator;
+    GeometricEyeLocator geometricEyeLocator;
+    IntegralPupilLocator integralPupilLocator;
+    FrameBufferPool frameBufferPool;
+    FrameBuffer frameBuffer;
+    // Rotated luma frame the detectors run on
+    Mat frame;
+    Rect face;
+    Mat faceFrame;
+    Rect eye;
+    Mat eyeFrame;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        nu.pattern.OpenCV.loadLocally();
+
+        File cascadesDir = new File(System.getProperty("benchmark.cascadesDir", "app/src/main/assets"));
+        CascadeClassifier faceCascade = new CascadeClassifier(new File(cascadesDir, "haarcascade_frontalface_default.xml").getAbsolutePath());
+        CascadeClassifier eyesCascade = new CascadeClassifier(new File(cascadesDir, "haarcascade_eye.xml").getAbsolutePath());
+        if (faceCascade.empty() || eyesCascade.empty()) {
+            throw new IllegalStateException("Can not load cascades from " + cascadesDir);
+        }
+
+        EyeTrackingConfig eyeTrackingConfig = new EyeTrackingConfig();
+        this.pupilsDetectionService = new PupilsDetectionService(faceCascade, eyesCascade, eyeTrackingConfig);
+        this.communicationService = new CommunicationService(GazeEventBus.getInstance());
+        this.frameProcessingService = new FrameProcessingService(this.pupilsDetectionService, this.communicationService, eyeTrackingConfig);
+        this.scratch = new PupilsDetectionService.Scratch();
+        this.integralPupilLocator = new IntegralPupilLocator();
+        this.cascadeEyeLocator = new CascadeEyeLocator(this.pupilsDetectionService, new FaceTracker(this.pupilsDetectionService, eyeTrackingConfig));
+        this.geometricEyeLocator = new GeometricEyeLocator(
+                new CascadeEyeLocator(this.pupilsDetectionService, new FaceTracker(this.pupilsDetectionService, eyeTrackingConfig)));
+
+        this.frameBufferPool = new FrameBufferPool();
+        this.frameBuffer = this.frameBufferPool.acquire(WIDTH, HEIGHT);
+        String recording = System.getProperty("benchmark.recording", "");
+        if (recording.isEmpty()) {
+            this.fillSyntheticFrame();
+        } else {
+            this.fillRecordedFrame(new File(recording));
+        }
+
+        this.frame = this.frameProcessingService.convertLumaToMat(this.frameBuffer).clone();
+        this.faceFrame = this.frame.submat(this.face);
+        this.eye = new Rect(0, 0, 60, 40);
+        this.eyeFrame = createSyntheticEye(this.eye);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.eyeFrame.release();
+        this.faceFrame.release();
+        this.frame.release();
+        this.scratch.release();
+        this.integralPupilLocator.release();
+        this.frameBuffer.release();
+        this.frameBufferPool.clear();
+        this.frameProcessingService.shutdown();
+    }
+
+    private void fillSyntheticFrame() {
+        Random random = new Random(42);
+        byte[] yuvData = this.frameBuffer.getYuvData();
+        random.nextBytes(yuvData);
+        this.frameBuffer.getLumaBuffer().clear();
+        this.frameBuffer.getLumaBuffer().put(yuvData, 0, WIDTH * HEIGHT);
+        this.frameBuffer.getLumaBuffer().flip();
+
+        // Upright frame is HEIGHT wide, the face takes the 40% minimum the detector looks for
+        int faceSide = (int) (HEIGHT * 0.4);
+        this.face = new Rect((HEIGHT - faceSide) / 2, (WIDTH - faceSide) / 2, faceSide, faceSide);
+    }
+
+    private void fillRecordedFrame(File recordingFile) throws IOException {
+        try (GazeRecordingReader reader = new GazeRecordingReader(recordingFile)) {
+            GazeRecordingReader.RecordType recordType;
+            while ((recordType = reader.next()) != GazeRecordingReader.RecordType.END) {
+                if (recordType == GazeRecordingReader.RecordType.FRAME && this.face == null) {
+                    this.frameBuffer.getLumaBuffer().clear();
+                    this.frameBuffer.getLumaBuffer().put(reader.getLuma());
+                    this.frameBuffer.getLumaBuffer().flip();
+                    // Neutral chroma keeps the RGB conversion working on the recorded luma
+                    byte[] yuvData = this.frameBuffer.getYuvData();
+                    this.frameBuffer.getLumaBuffer().get(yuvData, 0, WIDTH * HEIGHT);
+                    this.frameBuffer.getLumaBuffer().rewind();
+                    Arrays.fill(yuvData, WIDTH * HEIGHT, yuvData.length, (byte) 128);
+                } else if (recordType == GazeRecordingReader.RecordType.SAMPLE && reader.getSample().getFaceWidth() > 0) {
+                    this.face = new Rect(reader.getSample().getFaceX(), reader.getSample().getFaceY(),
+                            reader.getSample().getFaceWidth(), reader.getSample().getFaceHeight());
+                    return;
+                }
+            }
+        }
+        throw new IllegalStateException("No frame with a face in " + recordingFile);
+    }
+
+    private static Mat createSyntheticEye(Rect eye) {
+        Mat eyeFrame = new Mat(eye.height, eye.width, CvType.CV_8UC1, new Scalar(200));
+        Imgproc.ellipse(eyeFrame, new Point(eye.width / 2.0, eye.height / 2.0), new Size(eye.width / 2.5, eye.height / 3.0),
+                0, 0, 360, new Scalar(230), -1);
+        Imgproc.circle(eyeFrame, new Point(eye.width / 2.0, eye.height / 2.0), 7, new Scalar(20), -1);
+        Mat noise = new Mat(eyeFrame.size(), CvType.CV_8UC1);
+        Core.randn(noise, 0, 6);
+        Core.add(eyeFrame, noise, eyeFrame);
+        noise.release();
+        return eyeFrame;
+    }
+}
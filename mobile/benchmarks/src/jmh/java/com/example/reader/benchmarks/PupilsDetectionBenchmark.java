@@ -0,0 +1,65 @@
+package com.example.reader.benchmarks;
+
+import com.example.reader.services.PupilLocator;
+import com.example.reader.services.PupilsDetectionExecutor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.core.Rect;
+
+import java.util.concurrent.TimeUnit;
+
+/** Latency of the pupils of both eyes of a face, found one after the other or at the same time **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PupilsDetectionBenchmark {
+    @Param({"sequential", "parallel"})
+    public String mode;
+    @Param({"contour", "integral"})
+    public String pupilLocator;
+    private PupilsDetectionExecutor pupilsDetectionExecutor;
+    private Mat[] eyeFrames;
+    private Rect[] eyes;
+
+    @Setup(Level.Trial)
+    public void setUp(PipelineState state) {
+        PupilLocator.Strategy strategy = "integral".equals(this.pupilLocator) ? PupilLocator.Strategy.INTEGRAL : PupilLocator.Strategy.CONTOUR;
+        this.pupilsDetectionExecutor = new PupilsDetectionExecutor(state.pupilsDetectionService, "parallel".equals(this.mode), strategy);
+        // Each eye slot reads its own frame, as the two eye regions of a face do
+        this.eyeFrames = new Mat[]{state.eyeFrame, state.eyeFrame.clone()};
+        this.eyes = new Rect[]{state.eye, state.eye};
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.eyeFrames[1].release();
+        this.pupilsDetectionExecutor.shutdown();
+    }
+
+    @Benchmark
+    public void detectPupilsOfBothEyes(Blackhole blackhole) {
+        MatOfKeyPoint[] pupils = this.pupilsDetectionExecutor.detectPupils(this.eyeFrames, this.eyes);
+        for (MatOfKeyPoint eyePupils : pupils) {
+            blackhole.consume(eyePupils.rows());
+            eyePupils.release();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+sourceSets {
+    main {
+        java {
+            // The detection pipeline and scroll logic are shared with the app, its Android-bound services are left out
+            srcDir("../app/src/main/java")
+            include("com/example/reader/services/**", "com/example/reader/replay/**", "org/opencv/android/**")
+            exclude(
+                "com/example/reader/services/BooksService.java",
+                "com/example/reader/services/CalibrationProfileStore.java",
+                "com/example/reader/services/CameraForegroundService.java",
+                "com/example/reader/services/CatalogIndex.java",
+                "com/example/reader/services/FrameCaptureService.java",
+                "com/example/reader/services/ReadProgressService.java",
+                "com/example/reader/services/ReaderServices.java",
+                "com/example/reader/services/StreamingDocumentSource.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    implementation(libs.opencv.desktop)
+}
+
+application {
+    mainClass.set("com.example.reader.replay.GazeReplay")
+}
+
+tasks.named<JavaExec>("run") {
+    // Relative recording and cascade paths are resolved against the directory Gradle was started from
+    workingDir = rootDir
+    // A fixed heap touched upfront, so the native memory growth the replay gates on is not hidden by heap pages
+    jvmArgs("-Xms512m", "-Xmx512m", "-XX:+AlwaysPreTouch")
+}
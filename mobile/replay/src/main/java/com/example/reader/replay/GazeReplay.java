@@ -0,0 +1,326 @@
+package com.example.reader.replay;
+
+import com.example.reader.services.CommunicationService;
+import com.example.reader.services.CvCameraFrameWrapper;
+import com.example.reader.services.EyeLocator;
+import com.example.reader.services.EyeTrackingConfig;
+import com.example.reader.services.FrameBuffer;
+import com.example.reader.services.FrameBufferPool;
+import com.example.reader.services.FrameProcessingService;
+import com.example.reader.services.GazeController;
+import com.example.reader.services.GazeEventBus;
+import com.example.reader.services.GazeFilter;
+import com.example.reader.services.GeometricEyeLocator;
+import com.example.reader.services.GazeRecordingReader;
+import com.example.reader.services.GazeSample;
+import com.example.reader.services.KalmanGazeFilter;
+import com.example.reader.services.OneEuroFilter;
+import com.example.reader.services.PipelineMetrics;
+import com.example.reader.services.PupilLocator;
+import com.example.reader.services.PupilsDetectionService;
+import com.example.reader.services.ScrollTarget;
+
+import org.opencv.objdetect.CascadeClassifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/** Replays a recorded gaze session on a desktop JVM, without a camera or a phone.
+ * Recorded frames go through {@link FrameProcessingService} exactly like on device, recorded samples
+ * (or the ones detected during replay) drive {@link GazeController} on a simulated 60 Hz display.
+ * Usage: GazeReplay recording.rec [--cascades dir] [--filter one-euro|kalman] [--eye-locator cascade|geometric] [--pupil-locator contour|integral] [--max-p95-ms millis] [--max-native-growth-mb megabytes]
+ **/
+public class GazeReplay {
+    private static final long VSYNC_INTERVAL_NANOS = 16_666_667;
+    // Height of a rendered page in the simulated PDF view
+    private static final float PAGE_HEIGHT = 2000;
+    // Frames replayed before the native memory baseline is taken, while cascades and buffer pools settle
+    private static final int WARMUP_FRAMES_COUNT = 30;
+    // A single unreleased 640x480 luma frame per processed frame goes over it within a second of replay
+    private static final double DEFAULT_MAX_NATIVE_GROWTH_MB = 8;
+    private final File recordingFile;
+    private final File cascadesDir;
+    private final String filterName;
+    private final EyeLocator.Strategy eyeLocatorStrategy;
+    private final PupilLocator.Strategy pupilLocatorStrategy;
+    private final double maxP95Millis;
+    private final double maxNativeGrowthMegabytes;
+    private final LatencyStats latencyStats = new LatencyStats();
+    private final NativeMemoryProbe nativeMemoryProbe = new NativeMemoryProbe();
+    private final ReplayScrollTarget scrollTarget = new ReplayScrollTarget();
+    private final FrameBufferPool frameBufferPool = new FrameBufferPool();
+    private final GazeController gazeController;
+    private FrameProcessingService frameProcessingService;
+    private long nextVsyncNanos = 0;
+    private int samplesCount = 0;
+    private int recordedPresenceCount = 0;
+    private int agreeingPresenceCount = 0;
+    private int comparedGazeCount = 0;
+    private double gazeDeltaErrorSum = 0;
+    private boolean hasPendingDetectedSample = false;
+    private boolean isDetectedPupilPresent = false;
+    public GazeReplay(File recordingFile, File cascadesDir, String filterName, EyeLocator.Strategy eyeLocatorStrategy,
+                      PupilLocator.Strategy pupilLocatorStrategy, double maxP95Millis, double maxNativeGrowthMegabytes) {
+        this.recordingFile = recordingFile;
+        this.cascadesDir = cascadesDir;
+        this.filterName = filterName;
+        this.eyeLocatorStrategy = eyeLocatorStrategy;
+        this.pupilLocatorStrategy = pupilLocatorStrategy;
+        this.maxP95Millis = maxP95Millis;
+        this.maxNativeGrowthMegabytes = maxNativeGrowthMegabytes;
+        this.gazeController = new GazeController(createGazeFilter(filterName), this.scrollTarget);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: GazeReplay recording.rec [--cascades dir] [--filter one-euro|kalman] [--eye-locator cascade|geometric] [--pupil-locator contour|integral] [--max-p95-ms millis] [--max-native-growth-mb megabytes]");
+            System.exit(2);
+        }
+
+        File cascadesDir = new File("app/src/main/assets");
+        String filterName = "one-euro";
+        EyeLocator.Strategy eyeLocatorStrategy = EyeLocator.Strategy.CASCADE;
+        PupilLocator.Strategy pupilLocatorStrategy = PupilLocator.Strategy.CONTOUR;
+        double maxP95Millis = 0;
+        double maxNativeGrowthMegabytes = DEFAULT_MAX_NATIVE_GROWTH_MB;
+        for (int i = 1; i < args.length - 1; i += 2) {
+            switch (args[i]) {
+                case "--cascades":
+                    cascadesDir = new File(args[i + 1]);
+                    break;
+                case "--filter":
+                    filterName = args[i + 1];
+                    break;
+                case "--eye-locator":
+                    eyeLocatorStrategy = EyeLocator.Strategy.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                    break;
+                case "--pupil-locator":
+                    pupilLocatorStrategy = PupilLocator.Strategy.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                    break;
+                case "--max-p95-ms":
+                    maxP95Millis = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--max-native-growth-mb":
+                    maxNativeGrowthMegabytes = Double.parseDouble(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        nu.pattern.OpenCV.loadLocally();
+        GazeReplay replay = new GazeReplay(new File(args[0]), cascadesDir, filterName, eyeLocatorStrategy, pupilLocatorStrategy,
+                maxP95Millis, maxNativeGrowthMegabytes);
+        boolean isSuccessful = replay.run();
+        System.exit(isSuccessful ? 0 : 1);
+    }
+
+    /** Returns false when the p95 frame latency or the native memory growth exceeds its budget **/
+    public boolean run() throws IOException {
+        long startNanos = System.nanoTime();
+        try (GazeRecordingReader reader = new GazeRecordingReader(this.recordingFile)) {
+            GazeRecordingReader.RecordType recordType;
+            while ((recordType = reader.next()) != GazeRecordingReader.RecordType.END) {
+                if (recordType == GazeRecordingReader.RecordType.FRAME) {
+                    this.replayFrame(reader);
+                } else {
+                    this.replaySample(reader.getSample());
+                }
+            }
+        } finally {
+            if (this.frameProcessingService != null) {
+                this.frameProcessingService.shutdown();
+            }
+            this.frameBufferPool.clear();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        this.printSummary(elapsedNanos);
+        boolean isWithinBudget = this.maxP95Millis <= 0 || this.latencyStats.getPercentileMillis(95) <= this.maxP95Millis;
+        return isWithinBudget && !this.isLeakingNativeMemory();
+    }
+
+    private void replayFrame(GazeRecordingReader reader) {
+        if (this.frameProcessingService == null) {
+            this.frameProcessingService = this.createFrameProcessingService();
+        }
+
+        FrameBuffer frameBuffer = this.frameBufferPool.acquire(reader.getFrameWidth(), reader.getFrameHeight());
+        ByteBuffer lumaBuffer = frameBuffer.getLumaBuffer();
+        lumaBuffer.clear();
+        lumaBuffer.put(reader.getLuma());
+        lumaBuffer.flip();
+        frameBuffer.setTimestampNanos(reader.getTimestampNanos());
+
+        long startNanos = System.nanoTime();
+        CvCameraFrameWrapper frameWrapper = this.frameProcessingService.wrapFrame(frameBuffer);
+        try {
+            this.frameProcessingService.processFrame(frameWrapper, reader.getTimestampNanos());
+        } finally {
+            frameWrapper.release();
+            frameBuffer.release();
+        }
+        this.latencyStats.add(System.nanoTime() - startNanos);
+        this.sampleNativeMemory();
+
+        // The sample recorded on device for this frame follows it, replayed detections are compared with it
+        GazeSample detectedSample = this.frameProcessingService.getLastFrameGazeSample();
+        this.isDetectedPupilPresent = detectedSample.isAnyPupilFound();
+        this.hasPendingDetectedSample = true;
+        this.drive(detectedSample);
+    }
+
+    private void sampleNativeMemory() {
+        if (!this.nativeMemoryProbe.isAvailable()) {
+            return;
+        }
+        if (this.latencyStats.getCount() == WARMUP_FRAMES_COUNT) {
+            this.nativeMemoryProbe.setBaseline();
+        } else {
+            this.nativeMemoryProbe.sample();
+        }
+    }
+
+    private boolean isLeakingNativeMemory() {
+        return this.maxNativeGrowthMegabytes > 0 && this.nativeMemoryProbe.hasBaseline()
+                && this.nativeMemoryProbe.getMaxGrowthBytes() > this.maxNativeGrowthMegabytes * 1024 * 1024;
+    }
+
+    private void replaySample(GazeSample recordedSample) {
+        if (this.hasPendingDetectedSample) {
+            this.hasPendingDetectedSample = false;
+            this.recordedPresenceCount++;
+            if (recordedSample.isAnyPupilFound() == this.isDetectedPupilPresent) {
+                this.agreeingPresenceCount++;
+            }
+            if (recordedSample.isAnyPupilFound() && this.isDetectedPupilPresent) {
+                this.comparedGazeCount++;
+                this.gazeDeltaErrorSum += Math.abs(firstGazeDelta(recordedSample) - this.frameProcessingService.getLastFrameGazeDelta());
+            }
+            return;
+        }
+
+        this.drive(recordedSample);
+    }
+
+    private void drive(GazeSample sample) {
+        // Display frames due before the camera frame are run first, as the Choreographer would
+        if (this.nextVsyncNanos == 0) {
+            this.nextVsyncNanos = sample.getTimestampNanos();
+        }
+        while (this.nextVsyncNanos <= sample.getTimestampNanos()) {
+            this.gazeController.doFrame(this.nextVsyncNanos);
+            this.nextVsyncNanos += VSYNC_INTERVAL_NANOS;
+        }
+
+        this.gazeController.onGazeSample(sample);
+        this.samplesCount++;
+    }
+
+    private FrameProcessingService createFrameProcessingService() {
+        CascadeClassifier faceCascade = loadCascade("haarcascade_frontalface_default.xml");
+        CascadeClassifier eyesCascade = loadCascade("haarcascade_eye.xml");
+        EyeTrackingConfig eyeTrackingConfig = new EyeTrackingConfig();
+        eyeTrackingConfig.setEyeLocatorStrategy(this.eyeLocatorStrategy);
+        eyeTrackingConfig.setPupilLocatorStrategy(this.pupilLocatorStrategy);
+        PupilsDetectionService pupilsDetectionService = new PupilsDetectionService(faceCascade, eyesCascade, eyeTrackingConfig);
+        CommunicationService communicationService = new CommunicationService(GazeEventBus.getInstance());
+        return new FrameProcessingService(pupilsDetectionService, communicationService, eyeTrackingConfig);
+    }
+
+    private CascadeClassifier loadCascade(String cascadeFileName) {
+        File cascadeFile = new File(this.cascadesDir, cascadeFileName);
+        CascadeClassifier cascade = new CascadeClassifier(cascadeFile.getAbsolutePath());
+        if (cascade.empty()) {
+            throw new IllegalStateException("Can not load cascade " + cascadeFile);
+        }
+        return cascade;
+    }
+
+    private void printSummary(long elapsedNanos) {
+        System.out.printf("Recording: %s%n", this.recordingFile);
+        if (this.latencyStats.getCount() > 0) {
+            System.out.printf("Frames: %d, throughput %.1f fps%n", this.latencyStats.getCount(),
+                    this.latencyStats.getCount() * 1e9 / this.latencyStats.getTotalNanos());
+            System.out.printf("Frame latency: mean %.2f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    this.latencyStats.getMeanMillis(), this.latencyStats.getPercentileMillis(50),
+                    this.latencyStats.getPercentileMillis(95), this.latencyStats.getPercentileMillis(99),
+                    this.latencyStats.getPercentileMillis(100));
+            System.out.printf("Stage latencies: %s%n", PipelineMetrics.getInstance().dump());
+        }
+        if (this.recordedPresenceCount > 0) {
+            System.out.printf("Pupil presence agreeing with the device: %.1f%% of %d frames%n",
+                    this.agreeingPresenceCount * 100.0 / this.recordedPresenceCount, this.recordedPresenceCount);
+        }
+        if (this.comparedGazeCount > 0) {
+            System.out.printf("Gaze delta difference with the device: mean %.2f px over %d frames%n",
+                    this.gazeDeltaErrorSum / this.comparedGazeCount, this.comparedGazeCount);
+        }
+        if (this.frameProcessingService != null) {
+            System.out.printf("Eye locator: %s, pupil locator: %s%n", this.eyeLocatorStrategy.name().toLowerCase(Locale.ROOT),
+                    this.pupilLocatorStrategy.name().toLowerCase(Locale.ROOT));
+            EyeLocator eyeLocator = this.frameProcessingService.getEyeLocator();
+            if (eyeLocator instanceof GeometricEyeLocator) {
+                System.out.printf("Cascade fallbacks: %.1f%% of located faces%n",
+                        ((GeometricEyeLocator) eyeLocator).getFallbackRate() * 100);
+            }
+        }
+        System.out.printf("Scroll (%s filter): %d samples, %.0f px scrolled, %d page loads%n", this.filterName,
+                this.samplesCount, this.scrollTarget.offset, this.gazeController.getScrollEngine().getPageLoadsCount());
+        System.out.printf("Replayed in %.1f s%n", elapsedNanos / 1e9);
+        if (this.nativeMemoryProbe.hasBaseline()) {
+            System.out.printf("Native memory growth after %d frames: max %.1f MB%n", WARMUP_FRAMES_COUNT,
+                    this.nativeMemoryProbe.getMaxGrowthBytes() / (1024.0 * 1024));
+        } else {
+            System.out.println("Native memory growth: not measured, it needs /proc, a fixed pre-touched heap and more than "
+                    + WARMUP_FRAMES_COUNT + " frames");
+        }
+        if (this.maxP95Millis > 0) {
+            System.out.printf("p95 budget: %.2f ms%n", this.maxP95Millis);
+        }
+        if (this.maxNativeGrowthMegabytes > 0) {
+            System.out.printf("Native memory growth budget: %.1f MB%n", this.maxNativeGrowthMegabytes);
+        }
+    }
+
+    // Same reference as FrameProcessingService: eye line minus pupil of the first eye with a pupil
+    private static float firstGazeDelta(GazeSample sample) {
+        for (int eyeIndex = 0; eyeIndex < sample.getEyesCount(); eyeIndex++) {
+            if (sample.isPupilFound(eyeIndex)) {
+                return sample.getEyeCenterY(eyeIndex) - sample.getPupilY(eyeIndex);
+            }
+        }
+        return 0;
+    }
+
+    private static GazeFilter createGazeFilter(String filterName) {
+        switch (filterName) {
+            case "one-euro":
+                return new OneEuroFilter();
+            case "kalman":
+                return new KalmanGazeFilter();
+            default:
+                throw new IllegalArgumentException("Unknown gaze filter " + filterName);
+        }
+    }
+
+    private static class ReplayScrollTarget implements ScrollTarget {
+        private float offset = 0;
+
+        @Override
+        public void scrollBy(float distance) {
+            this.offset += distance;
+        }
+
+        @Override
+        public int getCurrentPageIndex() {
+            return (int) Math.floor(this.offset / PAGE_HEIGHT);
+        }
+
+        @Override
+        public void loadPages() {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.reader.replay;
+
+import java.util.Arrays;
+
+/** Collects per-frame latencies of a replay and reports their percentiles **/
+public class LatencyStats {
+    private long[] latenciesNanos = new long[1024];
+    private int count = 0;
+    private long totalNanos = 0;
+
+    public void add(long latencyNanos) {
+        if (this.count == this.latenciesNanos.length) {
+            this.latenciesNanos = Arrays.copyOf(this.latenciesNanos, this.count * 2);
+        }
+        this.latenciesNanos[this.count++] = latencyNanos;
+        this.totalNanos += latencyNanos;
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+
+    public long getTotalNanos() {
+        return this.totalNanos;
+    }
+
+    public double getPercentileMillis(double percentile) {
+        if (this.count == 0) {
+            return 0;
+        }
+
+        long[] sorted = Arrays.copyOf(this.latenciesNanos, this.count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * this.count) - 1;
+        return sorted[Math.max(0, Math.min(index, this.count - 1))] / 1e6;
+    }
+
+    public double getMeanMillis() {
+        return this.count == 0 ? 0 : this.totalNanos / 1e6 / this.count;
+    }
+}
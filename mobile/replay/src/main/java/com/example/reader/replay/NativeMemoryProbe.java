@@ -0,0 +1,82 @@
+package com.example.reader.replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.util.List;
+
+/** Follows the native memory of the replay outside the JVM, where OpenCV allocates the data of every Mat.
+ * Mats nobody releases show up here even when every arena released what it tracked, until their finalizers run.
+ * Measured as the resident set of the process minus the memory the JVM committed and its direct buffers,
+ * so it needs /proc and a heap that is fixed in size and touched upfront (-Xms equal to -Xmx, -XX:+AlwaysPreTouch).
+ **/
+public class NativeMemoryProbe {
+    private static final File STATUS_FILE = new File("/proc/self/status");
+    private static final String RESIDENT_SET_FIELD = "VmRSS:";
+    private static final String PRE_TOUCH_OPTION = "-XX:+AlwaysPreTouch";
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final List<BufferPoolMXBean> bufferPools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+    private boolean hasBaseline = false;
+    private long baselineBytes = 0;
+    private long maxGrowthBytes = 0;
+
+    /** Without a pre-touched heap its pages become resident while the replay runs and would be taken for a leak **/
+    public boolean isAvailable() {
+        MemoryUsage heapUsage = this.memoryBean.getHeapMemoryUsage();
+        return STATUS_FILE.canRead() && heapUsage.getCommitted() == heapUsage.getMax()
+                && ManagementFactory.getRuntimeMXBean().getInputArguments().contains(PRE_TOUCH_OPTION);
+    }
+
+    /** Takes the sample later ones are compared with, once the cascades, pools and compiled code are warm **/
+    public void setBaseline() {
+        this.baselineBytes = this.measureNativeBytes();
+        this.maxGrowthBytes = 0;
+        this.hasBaseline = true;
+    }
+
+    public boolean hasBaseline() {
+        return this.hasBaseline;
+    }
+
+    public void sample() {
+        if (!this.hasBaseline) {
+            return;
+        }
+        // The peak is kept, leaked Mats are freed again whenever the collector finalizes them
+        this.maxGrowthBytes = Math.max(this.maxGrowthBytes, this.measureNativeBytes() - this.baselineBytes);
+    }
+
+    public long getMaxGrowthBytes() {
+        return this.maxGrowthBytes;
+    }
+
+    private long measureNativeBytes() {
+        long jvmBytes = this.memoryBean.getHeapMemoryUsage().getCommitted() + this.memoryBean.getNonHeapMemoryUsage().getCommitted();
+        for (BufferPoolMXBean bufferPool : this.bufferPools) {
+            jvmBytes += bufferPool.getMemoryUsed();
+        }
+        return readResidentSetBytes() - jvmBytes;
+    }
+
+    private static long readResidentSetBytes() {
+        try (BufferedReader reader = Files.newBufferedReader(STATUS_FILE.toPath())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESIDENT_SET_FIELD)) {
+                    // Reported as "VmRSS:     123456 kB"
+                    String kibibytes = line.substring(RESIDENT_SET_FIELD.length()).trim().split("\\s+")[0];
+                    return Long.parseLong(kibibytes) * 1024;
+                }
+            }
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+        throw new IllegalStateException("No " + RESIDENT_SET_FIELD + " in " + STATUS_FILE);
+    }
+}
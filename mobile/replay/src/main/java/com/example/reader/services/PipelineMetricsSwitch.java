@@ -0,0 +1,8 @@
+package com.example.reader.services;
+
+/** Replays and benchmarks measure the pipeline stages, see {@link PipelineMetrics} **/
+final class PipelineMetricsSwitch {
+    static final boolean ENABLED = true;
+
+    private PipelineMetricsSwitch() {}
+}
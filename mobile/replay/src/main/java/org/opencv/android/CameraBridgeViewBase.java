@@ -0,0 +1,14 @@
+package org.opencv.android;
+
+import org.opencv.core.Mat;
+
+/** Desktop stand-in for the Android camera view of the OpenCV SDK, only the frame interface is needed for replay **/
+public abstract class CameraBridgeViewBase {
+    public interface CvCameraViewFrame {
+        Mat rgba();
+
+        Mat gray();
+
+        void release();
+    }
+}
@@ -22,5 +22,7 @@ dependencyResolutionManagement {
 
 rootProject.name = "Reader"
 include(":app")
+include(":replay")
+include(":benchmarks")
 include(":opencv")
 project(":opencv").projectDir = File(rootDir.parent, "../modules/opencv")